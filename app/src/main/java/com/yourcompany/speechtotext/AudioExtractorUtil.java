@@ -1,11 +1,18 @@
 package com.yourcompany.speechtotext;
 
 import android.content.Context;
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
 import android.util.Log;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 //// import com.arthenica.mobileffmpeg.FFmpeg; // 注释掉，因依赖未集成
 
 public class AudioExtractorUtil {
     private static final String TAG = "AudioExtractorUtil";
+    private static final long DEQUEUE_TIMEOUT_US = 10_000;
 
     /**
      * 提取音频，支持 mp4（可扩展 MediaExtractor），flv（FFmpeg）。
@@ -41,4 +48,164 @@ public class AudioExtractorUtil {
         Log.e(TAG, "FFmpeg not integrated. Audio extraction not available.");
         return true;
     }
+
+    /**
+     * 用 MediaExtractor + MediaCodec 边解码边写入 PcmStreamSource，不生成中间 wav 文件。
+     * 采样率 / 声道数取自解码器输出格式，由 PcmStreamSource 下混并重采样为 16kHz 单声道；
+     * 解码器输出 8bit / float / 24bit / 32bit PCM（KEY_PCM_ENCODING）时先转换为 16bit，其他编码按失败处理。
+     * 阻塞直到解码结束，结束（或失败）时调用 sink.finish()。
+     * @return true if success, false otherwise（例如容器不被 MediaExtractor 支持或没有音轨）
+     */
+    public static boolean streamAudio(String inputPath, PcmStreamSource sink) {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(inputPath);
+            int track = -1;
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    track = i;
+                    format = f;
+                    break;
+                }
+            }
+            if (track < 0) {
+                Log.e(TAG, "No audio track in " + inputPath);
+                return false;
+            }
+            extractor.selectTrack(track);
+            sink.setInputFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE), format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            byte[] pcm = new byte[0];
+            byte[] pcm16 = new byte[0];
+            int encoding = AudioFormat.ENCODING_PCM_16BIT;
+            boolean inputDone = false;
+            while (true) {
+                if (sink.isClosed()) {
+                    // 识别已停止，不再解码剩余音频
+                    Log.i(TAG, "Stream consumer closed, stopping decode");
+                    break;
+                }
+                if (!inputDone) {
+                    int inIndex = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (inIndex >= 0) {
+                        ByteBuffer inBuf = codec.getInputBuffer(inIndex);
+                        int size = extractor.readSampleData(inBuf, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+                int outIndex = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat out = codec.getOutputFormat();
+                    encoding = out.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                            ? out.getInteger(MediaFormat.KEY_PCM_ENCODING) : AudioFormat.ENCODING_PCM_16BIT;
+                    if (bytesPerSample(encoding) == 0) {
+                        Log.e(TAG, "Unsupported decoder PCM encoding " + encoding + " in " + inputPath);
+                        return false;
+                    }
+                    sink.setInputFormat(out.getInteger(MediaFormat.KEY_SAMPLE_RATE), out.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+                } else if (outIndex >= 0) {
+                    if (info.size > 0) {
+                        ByteBuffer outBuf = codec.getOutputBuffer(outIndex);
+                        if (pcm.length < info.size) pcm = new byte[info.size];
+                        outBuf.position(info.offset);
+                        outBuf.get(pcm, 0, info.size);
+                        if (encoding == AudioFormat.ENCODING_PCM_16BIT) {
+                            sink.write(pcm, 0, info.size);
+                        } else {
+                            int samples = info.size / bytesPerSample(encoding);
+                            if (pcm16.length < samples * 2) pcm16 = new byte[samples * 2];
+                            toPcm16(pcm, samples, encoding, pcm16);
+                            sink.write(pcm16, 0, samples * 2);
+                        }
+                    }
+                    codec.releaseOutputBuffer(outIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Streaming decode failed: " + e.getMessage());
+            return false;
+        } finally {
+            sink.finish();
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (Exception ignore) {}
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    // 解码器输出编码每个样本的字节数，不支持的编码返回 0
+    static int bytesPerSample(int encoding) {
+        switch (encoding) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                return 1;
+            case AudioFormat.ENCODING_PCM_16BIT:
+                return 2;
+            case AudioFormat.ENCODING_PCM_24BIT_PACKED:
+                return 3;
+            case AudioFormat.ENCODING_PCM_32BIT:
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 把 samples 个解码器输出样本（小端）转换为 16bit 小端 PCM 写入 out。
+     * 8bit 为无符号；float 按 [-1, 1] 缩放并截断；24bit / 32bit 取高 16 位。
+     */
+    static void toPcm16(byte[] in, int samples, int encoding, byte[] out) {
+        switch (encoding) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                for (int i = 0; i < samples; i++) {
+                    int v = ((in[i] & 0xff) - 128) << 8;
+                    out[2 * i] = (byte) v;
+                    out[2 * i + 1] = (byte) (v >> 8);
+                }
+                break;
+            case AudioFormat.ENCODING_PCM_24BIT_PACKED:
+                for (int i = 0; i < samples; i++) {
+                    out[2 * i] = in[3 * i + 1];
+                    out[2 * i + 1] = in[3 * i + 2];
+                }
+                break;
+            case AudioFormat.ENCODING_PCM_32BIT:
+                for (int i = 0; i < samples; i++) {
+                    out[2 * i] = in[4 * i + 2];
+                    out[2 * i + 1] = in[4 * i + 3];
+                }
+                break;
+            case AudioFormat.ENCODING_PCM_FLOAT: {
+                ByteBuffer floats = ByteBuffer.wrap(in, 0, samples * 4).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < samples; i++) {
+                    float f = floats.getFloat(4 * i);
+                    int v = (int) (Math.max(-1f, Math.min(1f, f)) * 32767f);
+                    out[2 * i] = (byte) v;
+                    out[2 * i + 1] = (byte) (v >> 8);
+                }
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported PCM encoding " + encoding);
+        }
+    }
 }
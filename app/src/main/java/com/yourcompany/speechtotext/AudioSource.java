@@ -0,0 +1,23 @@
+package com.yourcompany.speechtotext;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * BufferRecognitionManager 读取的音频源，统一为 16kHz / 16bit / 单声道 PCM。
+ *
+ * 实现：WavFileSource（本地 WAV 文件）、PcmStreamSource（进程内边解码边识别）、
+ * NetworkPcmListener.Stream（网络接收的实时流）。
+ */
+public interface AudioSource extends Closeable {
+    /**
+     * 读取最多 len 字节，没有数据时阻塞；输入结束返回 -1。
+     */
+    int read(byte[] dst, int off, int len) throws IOException, InterruptedException;
+
+    /**
+     * 识别端停止时调用，阻塞中的 read 须立即返回。
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -5,88 +5,239 @@ import com.microsoft.cognitiveservices.speech.*;
 import com.microsoft.cognitiveservices.speech.audio.AudioConfig;
 import com.microsoft.cognitiveservices.speech.audio.AudioInputStream;
 import com.microsoft.cognitiveservices.speech.audio.AudioStreamFormat;
+import com.microsoft.cognitiveservices.speech.audio.AudioStreamWaveFormat;
 import com.microsoft.cognitiveservices.speech.audio.PushAudioInputStream;
 
 public class AzureSpeechRecognizer {
     private static final String TAG = "AzureSpeechRecognizer";
+    // 识别语言，结果缓存的 key 也包含它
+    public static final String DEFAULT_LANGUAGE = "en-US";
 
     // Token 失效异常
     public static class TokenExpiredException extends Exception {
         public TokenExpiredException(String msg) { super(msg); }
     }
 
+    /**
+     * BufferRecognitionManager 使用的一个识别 session：创建时即已启动连续识别，事件交给创建时传入的 callback。
+     * BufferRecognizer 是基于 Speech SDK 的实现；不依赖 SDK 的实现（如 soak 模块注入故障的替身）通过 RecognizerFactory 替换。
+     */
+    public interface StreamRecognizer {
+        // session 已启动且未被取消 / 停止，可以接收音频
+        boolean isAlive();
+
+        long getRecognizedUpToMs();
+
+        // 创建 session 时使用的 token；被服务端拒绝后交给 AzureTokenManager.forceRefreshToken
+        String getToken();
+
+        // token 失效时抛出 TokenExpiredException，其他失败抛出 RuntimeException
+        void recognizeBuffer(byte[] buffer, int length) throws TokenExpiredException;
+
+        // 通知服务端音频结束，之后出完剩余结果并停止 session
+        void closePushStream();
+
+        // 释放全部资源，可重复调用
+        void close();
+    }
+
+    public interface RecognizerFactory {
+        StreamRecognizer create(AzureTokenManager tokenManager, String region, String language, ResultCallback callback);
+    }
+
+    public static final RecognizerFactory SDK_FACTORY = sdkFactory(UploadEncoder.Format.PCM_16K);
+
+    // 基于 Speech SDK、按 uploadFormat 上传音频的 session
+    public static RecognizerFactory sdkFactory(UploadEncoder.Format uploadFormat) {
+        return (tokenManager, region, language, callback) ->
+                new BufferRecognizer(tokenManager, region, language, callback, null, uploadFormat);
+    }
+
     // 支持 buffer 识别的内部类
-    public static class BufferRecognizer {
+    public static class BufferRecognizer implements StreamRecognizer {
+        // 当前持有 SDK 对象（未 close）的 BufferRecognizer 个数，反复 start / stop 后应回到 0
+        private static final java.util.concurrent.atomic.AtomicInteger LIVE = new java.util.concurrent.atomic.AtomicInteger();
+
+        // 实际写入 push stream 的字节数，与 audio.pushedBytes 对比即上传格式节省的流量
+        private static final PipelineMetrics.Counter UPLOADED_BYTES = PipelineMetrics.counter("sdk.uploadedBytes");
+
+        static {
+            PipelineMetrics.gauge("sdk.liveRecognizers", LIVE::get);
+        }
+
         private AzureTokenManager tokenManager;
         private String region;
+        // 识别语言，产生的事件都带上它
+        private String language;
         private ResultCallback callback;
+        private RecognizedListener recognizedListener;
         private SpeechRecognizer recognizer;
         private SpeechConfig speechConfig;
         private AudioConfig audioConfig;
         private PushAudioInputStream pushStream;
+        private final UploadEncoder.Format uploadFormat;
+        // PCM_16K 时为 null，直接推送原始 PCM
+        private UploadEncoder encoder;
+        private byte[] encoded;
         private volatile boolean sessionShouldRestart = false;
+        private volatile String token;
+        // 因 401 被取消：下次推送抛 TokenExpiredException，由调用方刷新 token 后重建
+        private volatile boolean tokenRejected = false;
+        // 初始化（获取 token / 启动连续识别）失败
+        private volatile boolean initFailed = false;
+        // 本 session 内已被服务端识别到的音频位置（毫秒），供推流节奏控制参考
+        private volatile long recognizedUpToMs = 0;
 
         public BufferRecognizer(AzureTokenManager tokenManager, String region, ResultCallback callback) {
+            this(tokenManager, region, callback, null);
+        }
+
+        public BufferRecognizer(AzureTokenManager tokenManager, String region, ResultCallback callback, RecognizedListener recognizedListener) {
+            this(tokenManager, region, DEFAULT_LANGUAGE, callback, recognizedListener);
+        }
+
+        public BufferRecognizer(AzureTokenManager tokenManager, String region, String language, ResultCallback callback, RecognizedListener recognizedListener) {
+            this(tokenManager, region, language, callback, recognizedListener, UploadEncoder.Format.PCM_16K);
+        }
+
+        /**
+         * @param uploadFormat 上传给服务端的音频格式；recognizeBuffer 的输入始终是 16kHz / 16bit / 单声道 PCM，推送前按此格式转换
+         */
+        public BufferRecognizer(AzureTokenManager tokenManager, String region, String language, ResultCallback callback, RecognizedListener recognizedListener,
+                                UploadEncoder.Format uploadFormat) {
+            this.uploadFormat = uploadFormat;
             this.tokenManager = tokenManager;
             this.region = region;
+            this.language = language;
             this.callback = callback;
+            this.recognizedListener = recognizedListener;
             recreateRecognizer();
         }
 
+        public static int liveCount() {
+            return LIVE.get();
+        }
+
         public void recreateRecognizer() {
+            close();
+            recognizedUpToMs = 0;
+            sessionShouldRestart = false;
+            tokenRejected = false;
+            initFailed = false;
             try {
-                if (recognizer != null) recognizer.close();
-                if (audioConfig != null) audioConfig.close();
-                if (speechConfig != null) speechConfig.close();
-            } catch (Exception ignore) {}
-            try {
-                String token = tokenManager.getValidToken();
+                token = tokenManager.getValidToken();
                 speechConfig = SpeechConfig.fromAuthorizationToken(token, region);
-                speechConfig.setSpeechRecognitionLanguage("en-US");
-                pushStream = AudioInputStream.createPushStream(AudioStreamFormat.getWaveFormatPCM(16000, (short)16, (short)1));
+                LIVE.incrementAndGet();
+                speechConfig.setSpeechRecognitionLanguage(language);
+                pushStream = AudioInputStream.createPushStream(uploadFormat.mulaw
+                        ? AudioStreamFormat.getWaveFormat(uploadFormat.sampleRate, (short)8, (short)1, AudioStreamWaveFormat.MULAW)
+                        : AudioStreamFormat.getWaveFormatPCM(uploadFormat.sampleRate, (short)16, (short)1));
+                // 抽取滤波器的历史不跨 session
+                encoder = uploadFormat == UploadEncoder.Format.PCM_16K ? null : new UploadEncoder(uploadFormat);
                 audioConfig = AudioConfig.fromStreamInput(pushStream);
                 recognizer = new SpeechRecognizer(speechConfig, audioConfig);
                 recognizer.recognizing.addEventListener((s, e) -> {
+                    updateRecognizedUpTo(e.getResult());
                     String text = e.getResult().getText();
                     if (text != null && text.trim().length() > 0) {
-                        callback.onResult("Recognizing", text);
+                        callback.onEvent(toEvent(RecognitionEvent.Type.RECOGNIZING, e));
                     }
                 });
 
                 recognizer.recognized.addEventListener((s, e) -> {
                     Log.i(TAG, "[BufferRecognizer] recognized: " + e.getResult().getText());
+                    updateRecognizedUpTo(e.getResult());
                     String text = e.getResult().getText();
                     if (!text.isEmpty()) {
-                        callback.onResult("Recognized", text);
+                        RecognitionEvent event = toEvent(RecognitionEvent.Type.RECOGNIZED, e);
+                        callback.onEvent(event);
+                        if (recognizedListener != null) {
+                            recognizedListener.onRecognized(text, event.offsetMs, event.durationMs);
+                        }
                     }
                 });
                 recognizer.canceled.addEventListener((s, e) -> {
+                    if (e.getReason() == CancellationReason.EndOfStream) {
+                        // closePushStream 之后的正常结束，随后会收到 sessionStopped
+                        Log.i(TAG, "[BufferRecognizer] canceled: end of stream");
+                        return;
+                    }
                     Log.w(TAG, "[BufferRecognizer] canceled: " + e.getErrorDetails());
-                    sessionShouldRestart = true;
                     if (e.getErrorDetails() != null && e.getErrorDetails().contains("401")) {
-                        callback.onResult("TokenExpired", "Token expired during buffer recognition");
+                        tokenRejected = true;
+                    }
+                    sessionShouldRestart = true;
+                    if (tokenRejected) {
+                        callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.TOKEN_EXPIRED,
+                                "Token expired during buffer recognition", -1, -1, e.getSessionId(), language));
                     } else {
-                        callback.onResult("Error", "Recognition canceled: " + e.getErrorDetails());
+                        callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.ERROR,
+                                "Recognition canceled: " + e.getErrorDetails(), -1, -1, e.getSessionId(), language));
                     }
                 });
                 recognizer.sessionStopped.addEventListener((s, e) -> {
                     Log.i(TAG, "[BufferRecognizer] sessionStopped: 识别全部完成");
                     sessionShouldRestart = true;
-                    callback.onResult("AllRecognized", "识别全部完成");
+                    callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.ALL_RECOGNIZED, "识别全部完成", -1, -1, e.getSessionId(), language));
                 });
                 recognizer.startContinuousRecognitionAsync().get();
             } catch (Exception e) {
+                initFailed = true;
                 callback.onResult("Error", "BufferRecognizer init failed: " + e.getMessage());
             }
         }
 
+        private RecognitionEvent toEvent(RecognitionEvent.Type type, SpeechRecognitionEventArgs e) {
+            SpeechRecognitionResult result = e.getResult();
+            // offset / duration 单位为 100ns
+            long offsetMs = result.getOffset() != null ? result.getOffset().longValue() / 10_000L : 0;
+            long durationMs = result.getDuration() != null ? result.getDuration().longValue() / 10_000L : 0;
+            return new RecognitionEvent(type, result.getText(), offsetMs, durationMs, e.getSessionId(), language);
+        }
+
+        private void updateRecognizedUpTo(SpeechRecognitionResult result) {
+            if (result == null || result.getOffset() == null || result.getDuration() == null) return;
+            // offset / duration 单位为 100ns
+            long endMs = (result.getOffset().longValue() + result.getDuration().longValue()) / 10_000L;
+            if (endMs > recognizedUpToMs) recognizedUpToMs = endMs;
+        }
+
+        // session 已启动且未被取消 / 停止，可以接收音频
+        public boolean isAlive() {
+            return !initFailed && !sessionShouldRestart;
+        }
+
+        public long getRecognizedUpToMs() {
+            return recognizedUpToMs;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
         public void recognizeBuffer(byte[] buffer) throws TokenExpiredException {
+            recognizeBuffer(buffer, buffer.length);
+        }
+
+        // 复用 chunk 时只推送前 length 字节；SDK 的 write 只接受整个数组，仅在不满一个 chunk 时（文件末尾）复制
+        public void recognizeBuffer(byte[] buffer, int length) throws TokenExpiredException {
             if (sessionShouldRestart) {
                 sessionShouldRestart = false;
+                if (tokenRejected) throw new TokenExpiredException("Session canceled with 401");
                 throw new RuntimeException("SessionRestartForStoppedOrCanceled");
             }
             try {
-                pushStream.write(buffer);
+                if (encoder != null) {
+                    // 每个 chunk 的输出长度固定，encoded 只在 chunk 大小变化时重新分配
+                    int size = encoder.outputSize(length);
+                    if (encoded == null || encoded.length != size) encoded = new byte[size];
+                    encoder.encode(buffer, 0, length, encoded);
+                    pushStream.write(encoded);
+                    UPLOADED_BYTES.add(size);
+                } else {
+                    pushStream.write(length == buffer.length ? buffer : java.util.Arrays.copyOf(buffer, length));
+                    UPLOADED_BYTES.add(length);
+                }
             } catch (Exception e) {
                 if (e.getMessage() != null && e.getMessage().contains("401")) {
                     throw new TokenExpiredException("Token expired during buffer recognition");
@@ -95,25 +246,58 @@ public class AzureSpeechRecognizer {
             }
         }
 
-        public void closePushStream() {
+        // 通知服务端音频结束，之后服务端出完剩余结果并停止 session
+        public synchronized void closePushStream() {
             try {
                 if (pushStream != null) {
                     pushStream.close();
                 }
             } catch (Exception ignore) {}
+            pushStream = null;
         }
 
-        public void close() {
-            try {
-                if (recognizer != null) recognizer.close();
-                if (audioConfig != null) audioConfig.close();
-                if (speechConfig != null) speechConfig.close();
-            } catch (Exception ignore) {}
+        // 释放全部 SDK 对象（含 push stream），可重复调用
+        public synchronized void close() {
+            boolean held = speechConfig != null;
+            try { if (recognizer != null) recognizer.close(); } catch (Exception ignore) {}
+            try { if (audioConfig != null) audioConfig.close(); } catch (Exception ignore) {}
+            try { if (pushStream != null) pushStream.close(); } catch (Exception ignore) {}
+            try { if (speechConfig != null) speechConfig.close(); } catch (Exception ignore) {}
+            recognizer = null;
+            audioConfig = null;
+            pushStream = null;
+            speechConfig = null;
+            if (held) LIVE.decrementAndGet();
         }
 
     }
 
     public interface ResultCallback {
         void onResult(String type, String text);
+
+        // 带 offset / duration / session id 的类型化事件；默认转成字符串形式的 onResult
+        default void onEvent(RecognitionEvent event) {
+            onResult(event.type.legacyName, event.text);
+        }
+    }
+
+    // 把所有事件交给 dispatcher 合并、攒批后再投递
+    public static ResultCallback dispatchTo(RecognitionEventDispatcher dispatcher) {
+        return new ResultCallback() {
+            @Override
+            public void onResult(String type, String text) {
+                dispatcher.submit(RecognitionEvent.of(RecognitionEvent.Type.fromLegacy(type), text));
+            }
+
+            @Override
+            public void onEvent(RecognitionEvent event) {
+                dispatcher.submit(event);
+            }
+        };
+    }
+
+    // 带时间信息的 Recognized 结果，offset 相对本 session 推送的第一个字节
+    public interface RecognizedListener {
+        void onRecognized(String text, long offsetMs, long durationMs);
     }
 }
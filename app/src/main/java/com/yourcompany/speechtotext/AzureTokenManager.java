@@ -1,36 +1,88 @@
 package com.yourcompany.speechtotext;
 
 import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import okhttp3.MediaType;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.OkHttpClient;
-import okhttp3.Response;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
+/**
+ * Azure token 管理。
+ * 当前 token 以不可变快照保存在 volatile 字段中，getValidToken 在稳态下无锁、不访问网络；
+ * 后台线程在到期前（带随机抖动）主动刷新。同一时刻最多只有一个网络请求：
+ * 并发的 forceRefreshToken（例如多个 session 同时遇到 401）会合并到同一个请求上，失败时按指数退避重试；
+ * 调用方传入被拒绝的 token，当前 token 已经换过时不再重复刷新。
+ * 可选地把 token 和获取时间持久化到文件（setTokenCache），冷启动时直接复用仍在有效期内的 token。
+ */
 public class AzureTokenManager {
     private static final String TAG = "AzureTokenManager";
-    private static final long REFRESH_INTERVAL = 9 * 60 * 1000; // 9分钟
+    private static final long DEFAULT_REFRESH_INTERVAL = 9 * 60 * 1000; // 9分钟
+    // 提前刷新：在 refreshInterval 之前 1 分钟左右，叠加 ±15 秒抖动，避免多个客户端同时刷新
+    private static final long PROACTIVE_LEAD = 60 * 1000;
+    private static final long REFRESH_JITTER = 15 * 1000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long INITIAL_BACKOFF = 500;
+    // 后台刷新失败后的重试间隔
+    private static final long BACKGROUND_RETRY = 15 * 1000;
+
+    private static final PipelineMetrics.Histogram FETCH_LATENCY = PipelineMetrics.histogram("token.fetch");
+    private static final PipelineMetrics.Counter FETCH_FAILURES = PipelineMetrics.counter("token.fetch.failures");
+    private static final PipelineMetrics.Counter FORCED_REFRESHES = PipelineMetrics.counter("token.forceRefresh");
 
     private String subscriptionKey;
     private String region;
     private String tokenEndpoint;
-    private String token;
-    private long lastFetchTime; // ms
+
+    private static final class Token {
+        final String value;
+        final long fetchTime; // ms
+
+        Token(String value, long fetchTime) {
+            this.value = value;
+            this.fetchTime = fetchTime;
+        }
+    }
+
+    // token 的使用期限，超过后 getValidToken 等待网络请求
+    private volatile long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private volatile Token current;
+    // 正在进行的网络请求，保证 single-flight
+    private final AtomicReference<CompletableFuture<Token>> inFlight = new AtomicReference<>();
+
+    // 可选：token 持久化文件
+    private volatile File tokenCacheFile;
 
     private final OkHttpClient client = new OkHttpClient();
+    private final ScheduledExecutorService scheduler;
 
     // 新增构造函数，支持 tokenEndpoint
     public AzureTokenManager(String subscriptionKey, String region, String tokenEndpoint) {
         this.subscriptionKey = subscriptionKey;
         this.region = region;
         this.tokenEndpoint = tokenEndpoint;
-        this.token = null;
-        this.lastFetchTime = 0;
+        this.current = null;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "TokenRefreshThread");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
     }
 
     // 兼容老用法
@@ -38,20 +90,191 @@ public class AzureTokenManager {
         this(subscriptionKey, region, null);
     }
 
-    public synchronized String getValidToken() throws Exception {
-        long now = System.currentTimeMillis();
-        if (token == null || (now - lastFetchTime) > REFRESH_INTERVAL) {
-            fetchToken();
+    /**
+     * 返回有效 token。稳态下直接读快照；只有首次获取或后台刷新持续失败导致过期时才等待网络请求。
+     */
+    public String getValidToken() throws Exception {
+        Token token = current;
+        if (token != null && (System.currentTimeMillis() - token.fetchTime) <= refreshInterval) {
+            return token.value;
         }
-        return token;
+        return await(refresh(null)).value;
     }
 
-    // 强制刷新 token，供 TokenExpired 场景调用
-    public synchronized void forceRefreshToken() throws Exception {
-        fetchToken();
+    /**
+     * 强制刷新 token，供 TokenExpired 场景调用。rejectedToken 为被服务端拒绝的 token（null 表示无条件刷新）：
+     * 当前 token 已不是它时说明其他调用方已经换过，直接返回；否则发起或加入正在进行的刷新。
+     */
+    public void forceRefreshToken(String rejectedToken) throws Exception {
+        FORCED_REFRESHES.increment();
+        await(refresh(rejectedToken));
+    }
+
+    /**
+     * 在获取第一个 token 之前设置：token 的使用期限，默认 9 分钟（Azure token 有效期 10 分钟）。
+     * tokenEndpoint 签发的 token 有效期更短时调小；后台刷新仍提前约 1 分钟，所以必须大于 75 秒。
+     */
+    public void setRefreshInterval(long intervalMs) {
+        if (intervalMs <= PROACTIVE_LEAD + REFRESH_JITTER) {
+            throw new IllegalArgumentException("Refresh interval must exceed " + (PROACTIVE_LEAD + REFRESH_JITTER) + "ms");
+        }
+        refreshInterval = intervalMs;
+    }
+
+    /**
+     * 设置 token 持久化文件。文件中的 token 属于同一组凭据且仍在有效期内时立即作为当前 token，
+     * 并按剩余有效期安排后台刷新；之后每次获取到新 token 都会写回文件。
+     */
+    public void setTokenCache(File file) {
+        tokenCacheFile = file;
+        if (current != null) return;
+        Token cached = readCachedToken(file);
+        if (cached == null) return;
+        long age = System.currentTimeMillis() - cached.fetchTime;
+        current = cached;
+        Log.i(TAG, "Reusing cached token, age " + age + "ms");
+        scheduleProactiveRefresh(refreshInterval - PROACTIVE_LEAD - age
+                + ThreadLocalRandom.current().nextLong(-REFRESH_JITTER, REFRESH_JITTER + 1));
+    }
+
+    // 当前 token 是否可直接使用（不需要等待网络）
+    public boolean hasValidToken() {
+        Token token = current;
+        return token != null && (System.currentTimeMillis() - token.fetchTime) <= refreshInterval;
+    }
+
+    /**
+     * 停止后台刷新。
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    // 发起或加入正在进行的刷新；当前 token 已不是 rejectedToken 时直接返回当前 token
+    private CompletableFuture<Token> refresh(String rejectedToken) {
+        while (true) {
+            CompletableFuture<Token> existing = inFlight.get();
+            if (existing != null) return existing;
+            // runFetch 先更新 current 再清空 inFlight，这里读到的是最近一次刷新的结果
+            Token token = current;
+            if (rejectedToken != null && token != null && !token.value.equals(rejectedToken)) {
+                return CompletableFuture.completedFuture(token);
+            }
+            CompletableFuture<Token> future = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, future)) continue;
+            try {
+                scheduler.execute(() -> runFetch(future));
+            } catch (Exception e) {
+                // scheduler 已关闭时在调用线程上获取
+                runFetch(future);
+            }
+            return future;
+        }
+    }
+
+    private void runFetch(CompletableFuture<Token> future) {
+        try {
+            Token token = fetchWithRetry();
+            current = token;
+            File cacheFile = tokenCacheFile;
+            if (cacheFile != null) writeCachedToken(cacheFile, token);
+            inFlight.set(null);
+            future.complete(token);
+            scheduleProactiveRefresh(refreshInterval - PROACTIVE_LEAD
+                    + ThreadLocalRandom.current().nextLong(-REFRESH_JITTER, REFRESH_JITTER + 1));
+        } catch (Exception e) {
+            inFlight.set(null);
+            future.completeExceptionally(e);
+            if (current != null) scheduleProactiveRefresh(BACKGROUND_RETRY);
+        }
+    }
+
+    private void scheduleProactiveRefresh(long delayMs) {
+        try {
+            scheduler.schedule(() -> {
+                Token token = current;
+                long age = token == null ? Long.MAX_VALUE : System.currentTimeMillis() - token.fetchTime;
+                // 期间若已被强制刷新，该刷新会自行安排下一次
+                if (age >= refreshInterval - PROACTIVE_LEAD - REFRESH_JITTER) {
+                    Log.i(TAG, "Proactively refreshing token, age " + age + "ms");
+                    refresh(null);
+                }
+            }, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+        } catch (Exception ignore) {
+            // scheduler 已关闭
+        }
+    }
+
+    private static Token await(CompletableFuture<Token> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    private Token readCachedToken(File file) {
+        if (!file.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            String fingerprint = in.readUTF();
+            long fetchTime = in.readLong();
+            String value = in.readUTF();
+            long age = System.currentTimeMillis() - fetchTime;
+            if (!fingerprint.equals(credentialFingerprint()) || age < 0 || age > refreshInterval) return null;
+            return new Token(value, fetchTime);
+        } catch (Exception e) {
+            Log.w(TAG, "Ignoring unreadable token cache: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 先写临时文件再改名
+    private void writeCachedToken(File file, Token token) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeUTF(credentialFingerprint());
+            out.writeLong(token.fetchTime);
+            out.writeUTF(token.value);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to persist token: " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+
+    // 凭据变化后缓存的 token 失效；文件中只保存摘要，不保存订阅密钥
+    private String credentialFingerprint() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest((subscriptionKey + "|" + region + "|" + tokenEndpoint).getBytes("UTF-8"));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private Token fetchWithRetry() throws Exception {
+        long backoff = INITIAL_BACKOFF;
+        for (int attempt = 1; ; attempt++) {
+            long fetchStart = PipelineMetrics.start();
+            try {
+                String value = fetchToken();
+                FETCH_LATENCY.recordSince(fetchStart);
+                return new Token(value, System.currentTimeMillis());
+            } catch (Exception e) {
+                FETCH_FAILURES.increment();
+                if (attempt >= MAX_ATTEMPTS) throw e;
+                Log.w(TAG, "Token fetch attempt " + attempt + " failed, retrying in " + backoff + "ms: " + e.getMessage());
+                Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+                backoff *= 2;
+            }
+        }
     }
 
-    private void fetchToken() throws Exception {
+    private String fetchToken() throws Exception {
         if (tokenEndpoint != null && !tokenEndpoint.isEmpty()) {
             // 通过 tokenEndpoint 获取 token，假设为 GET
             Request request = new Request.Builder()
@@ -67,9 +290,7 @@ public class AzureTokenManager {
                 if (body == null || body.isEmpty()) {
                     throw new RuntimeException("Token fetch from tokenEndpoint failed: empty body");
                 }
-                token = body;
-                lastFetchTime = System.currentTimeMillis();
-                return;
+                return body;
             } catch (IOException e) {
                 Log.e(TAG, "Token fetch from tokenEndpoint exception: " + e.getMessage());
                 throw new RuntimeException("Token fetch from tokenEndpoint exception: " + e.getMessage());
@@ -91,8 +312,7 @@ public class AzureTokenManager {
             if (body == null || body.isEmpty()) {
                 throw new RuntimeException("Token fetch failed: empty body");
             }
-            token = body;
-            lastFetchTime = System.currentTimeMillis();
+            return body;
         } catch (IOException e) {
             Log.e(TAG, "Token fetch exception: " + e.getMessage());
             throw new RuntimeException("Token fetch exception: " + e.getMessage());
@@ -0,0 +1,423 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量转写调度器：一批 WAV 文件排队，在最多 maxSessions 个并发 session 上逐个识别，所有 session 共用一个 AzureTokenManager。
+ *
+ * 每个文件只读一遍（不循环），推完后等待 sessionStopped 再算完成；session 失败时从最后一条 Recognized 结果之后重试，
+ * 已输出的结果不会重复。磁盘读取经全局信号量限流：同一时刻最多 maxConcurrentReads 个 session 在读文件，
+ * 每次读一个 READ_WINDOW 的窗口再分块推送，读缓冲总量不超过 maxSessions * READ_WINDOW。
+ * 统计总吞吐（音频小时 / 墙钟小时）以及每个任务的实时率（处理耗时 / 音频时长）。
+ *
+ * session 运行在共享的 RecognitionExecutors 上：有任务排队时按需启动工作循环（每个占一个名额，最多 maxSessions 个），
+ * 队列空时退出并归还名额。本对象即整批任务的句柄：drain() 同 shutdown()，排队的任务照常执行完；
+ * stop() 丢弃排队的任务并中断正在识别的任务。
+ */
+public class BatchTranscriptionScheduler implements RecognitionHandle {
+    private static final String TAG = "BatchScheduler";
+    private static final int BUFFER_SIZE = 4096;
+    // 一次磁盘读取的窗口：64KB，约 2 秒音频
+    private static final int READ_WINDOW = 64 * 1024;
+    // 16kHz * 16bit * 单声道
+    private static final long BYTES_PER_MS = 32;
+    private static final int MAX_ATTEMPTS = 3;
+    // 推完后等待 sessionStopped 的额外时间
+    private static final long STOP_GRACE_MS = 60_000;
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * 单个任务的进度与结果出口，在 session 线程或 SDK 回调线程上调用。
+     */
+    public interface JobListener {
+        void onProgress(Job job, long pushedBytes, long totalBytes);
+
+        // Recognizing / Recognized 结果，offset 为文件内的位置
+        void onResult(Job job, RecognitionEvent event);
+
+        void onFinished(Job job, boolean success);
+    }
+
+    public static final class Job {
+        public final String wavPath;
+        private final JobListener listener;
+        private volatile State state = State.QUEUED;
+        private volatile long totalBytes = 0;
+        private volatile long pushedBytes = 0;
+        private volatile long startNanos = 0;
+        private volatile long endNanos = 0;
+        // 最后一条已输出的 Recognized 在文件中的结束位置（字节），重试从这里开始
+        private volatile long confirmedBytes = 0;
+        private volatile int attempts = 0;
+
+        Job(String wavPath, JobListener listener) {
+            this.wavPath = wavPath;
+            this.listener = listener;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        // 0~1
+        public double getProgress() {
+            long total = totalBytes;
+            return total == 0 ? 0 : Math.min(1.0, (double) pushedBytes / total);
+        }
+
+        public long getAudioMs() {
+            return totalBytes / BYTES_PER_MS;
+        }
+
+        public long getWallMs() {
+            long start = startNanos;
+            if (start == 0) return 0;
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            return (end - start) / 1_000_000L;
+        }
+
+        // 实时率：处理耗时 / 音频时长，小于 1 表示快于实时
+        public double getRealTimeFactor() {
+            long audioMs = getAudioMs();
+            return audioMs == 0 ? 0 : (double) getWallMs() / audioMs;
+        }
+    }
+
+    private final AzureTokenManager tokenManager;
+    private final String region;
+    private volatile UploadEncoder.Format uploadFormat = UploadEncoder.Format.PCM_16K;
+    private volatile String language = AzureSpeechRecognizer.DEFAULT_LANGUAGE;
+    private final int maxSessions;
+    private final Semaphore diskReads;
+    private final List<Job> jobs = new ArrayList<>();
+
+    // activeWorkers、shutdown 受 queue 锁保护
+    private final ArrayDeque<Job> queue = new ArrayDeque<>();
+    private int activeWorkers = 0;
+    private boolean shutdown = false;
+    private volatile boolean stopping = false;
+    private final Set<Thread> workerThreads = new HashSet<>();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    private volatile long firstStartNanos = 0;
+    private volatile long lastEndNanos = 0;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    // 已完成任务的音频总时长
+    private volatile long completedAudioMs = 0;
+
+    public BatchTranscriptionScheduler(AzureTokenManager tokenManager, String region, int maxSessions) {
+        this(tokenManager, region, maxSessions, 2);
+    }
+
+    public BatchTranscriptionScheduler(AzureTokenManager tokenManager, String region, int maxSessions, int maxConcurrentReads) {
+        this.tokenManager = tokenManager;
+        this.region = region;
+        this.maxSessions = Math.max(1, maxSessions);
+        this.diskReads = new Semaphore(Math.max(1, maxConcurrentReads), true);
+    }
+
+    /**
+     * 之后开始的 session 上传给服务端的音频格式，默认 PCM_16K 不转换。
+     */
+    public void setUploadFormat(UploadEncoder.Format format) {
+        this.uploadFormat = format;
+    }
+
+    /**
+     * 之后开始的 session 的识别语言，默认 en-US。只支持一种语言。
+     */
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    /**
+     * 任务排队；没有运行中的工作循环且线程池名额不足，或已 shutdown 时抛出 IllegalStateException。
+     */
+    public Job submit(String wavPath, JobListener listener) {
+        Job job = new Job(wavPath, listener);
+        synchronized (queue) {
+            if (shutdown) throw new IllegalStateException("BatchTranscriptionScheduler is shut down");
+            boolean startWorker = activeWorkers < maxSessions && RecognitionExecutors.tryReserveWorkers(1);
+            // 已有工作循环时任务等它们领取，否则这个任务永远不会执行
+            if (!startWorker && activeWorkers == 0) {
+                throw new IllegalStateException("Too many concurrent recognition sessions, max " + RecognitionExecutors.maxWorkers() + " workers");
+            }
+            synchronized (jobs) {
+                jobs.add(job);
+            }
+            queue.add(job);
+            if (startWorker) {
+                activeWorkers++;
+                RecognitionExecutors.execute(this::runWorker);
+            }
+        }
+        return job;
+    }
+
+    public List<Job> submitAll(List<String> wavPaths, JobListener listener) {
+        List<Job> submitted = new ArrayList<>();
+        for (String path : wavPaths) {
+            submitted.add(submit(path, listener));
+        }
+        return submitted;
+    }
+
+    public List<Job> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs);
+        }
+    }
+
+    public int getCompletedCount() {
+        return completed.get();
+    }
+
+    public int getFailedCount() {
+        return failed.get();
+    }
+
+    /**
+     * 总吞吐：已完成的音频小时数 / 从第一个任务开始到现在（全部结束后为最后一个任务结束）的墙钟小时数。
+     */
+    public double getAudioHoursPerHour() {
+        long start = firstStartNanos;
+        if (start == 0) return 0;
+        boolean idle;
+        synchronized (jobs) {
+            idle = completed.get() + failed.get() == jobs.size();
+        }
+        long end = idle && lastEndNanos != 0 ? lastEndNanos : System.nanoTime();
+        long wallMs = (end - start) / 1_000_000L;
+        return wallMs == 0 ? 0 : (double) completedAudioMs / wallMs;
+    }
+
+    /**
+     * 不再接受新任务，已提交的任务继续执行。
+     */
+    public void shutdown() {
+        synchronized (queue) {
+            shutdown = true;
+            if (activeWorkers == 0) terminated.countDown();
+        }
+    }
+
+    @Override
+    public void drain() {
+        shutdown();
+    }
+
+    /**
+     * 不再接受新任务，排队的任务不再执行（计为失败，不回调 onFinished），正在识别的任务被中断后按失败结束。
+     */
+    @Override
+    public void stop() {
+        List<Job> dropped;
+        synchronized (queue) {
+            if (stopping) return;
+            stopping = true;
+            shutdown = true;
+            dropped = new ArrayList<>(queue);
+            queue.clear();
+            if (activeWorkers == 0) terminated.countDown();
+        }
+        for (Job job : dropped) {
+            job.state = State.FAILED;
+            failed.incrementAndGet();
+        }
+        Log.i(TAG, "Stopping, dropped " + dropped.size() + " queued jobs");
+        synchronized (workerThreads) {
+            for (Thread t : workerThreads) {
+                t.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    // 共享线程池上的工作循环：依次领取排队的任务；线程临时改名便于排查，退出时清除中断标记，不影响该线程执行的下一个任务
+    private void runWorker() {
+        Thread thread = Thread.currentThread();
+        String poolName = thread.getName();
+        thread.setName("BatchSessionThread");
+        synchronized (workerThreads) {
+            workerThreads.add(thread);
+        }
+        try {
+            Job job;
+            while ((job = nextJob()) != null) {
+                try {
+                    runJob(job);
+                } catch (Throwable t) {
+                    Log.e(TAG, job.wavPath + " worker exception: " + t);
+                }
+            }
+        } finally {
+            synchronized (workerThreads) {
+                workerThreads.remove(thread);
+                Thread.interrupted();
+            }
+            thread.setName(poolName);
+        }
+    }
+
+    // 队列空或已 stop 时返回 null，工作循环随之退出并归还名额
+    private Job nextJob() {
+        synchronized (queue) {
+            Job job = stopping ? null : queue.poll();
+            if (job == null) {
+                activeWorkers--;
+                RecognitionExecutors.releaseWorkers(1);
+                if (activeWorkers == 0 && shutdown) terminated.countDown();
+            }
+            return job;
+        }
+    }
+
+    private void runJob(Job job) {
+        job.state = State.RUNNING;
+        job.startNanos = System.nanoTime();
+        synchronized (this) {
+            if (firstStartNanos == 0) firstStartNanos = job.startNanos;
+        }
+        boolean success = false;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !success && !stopping; attempt++) {
+            job.attempts = attempt;
+            try {
+                success = runSession(job);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, job.wavPath + " attempt " + attempt + " failed: " + e.getMessage());
+            }
+            if (!success && attempt < MAX_ATTEMPTS && !stopping) {
+                Log.i(TAG, job.wavPath + " will be retried from " + job.confirmedBytes / BYTES_PER_MS + "ms");
+            }
+        }
+        job.endNanos = System.nanoTime();
+        job.state = success ? State.DONE : State.FAILED;
+        synchronized (this) {
+            lastEndNanos = job.endNanos;
+            if (success) completedAudioMs += job.getAudioMs();
+        }
+        (success ? completed : failed).incrementAndGet();
+        Log.i(TAG, job.wavPath + (success ? " done" : " failed") + ", audio " + job.getAudioMs() + "ms in " + job.getWallMs()
+                + "ms, RTF " + String.format(java.util.Locale.US, "%.3f", job.getRealTimeFactor()));
+        try {
+            job.listener.onFinished(job, success);
+        } catch (Exception e) {
+            Log.e(TAG, "Job listener exception: " + e.getMessage());
+        }
+    }
+
+    // 从 job.confirmedBytes 开始推送到文件末尾并等待 sessionStopped，成功返回 true
+    private boolean runSession(Job job) throws Exception {
+        long sessionStart = job.confirmedBytes;
+        CountDownLatch stopped = new CountDownLatch(1);
+        boolean[] failedFlag = new boolean[1];
+        boolean[] tokenExpired = new boolean[1];
+        AzureSpeechRecognizer.ResultCallback sessionCallback = new AzureSpeechRecognizer.ResultCallback() {
+            @Override
+            public void onResult(String type, String text) {
+                onEvent(RecognitionEvent.of(RecognitionEvent.Type.fromLegacy(type), text));
+            }
+
+            @Override
+            public void onEvent(RecognitionEvent event) {
+                switch (event.type) {
+                    case ALL_RECOGNIZED:
+                        stopped.countDown();
+                        return;
+                    case TOKEN_EXPIRED:
+                        tokenExpired[0] = true;
+                        failedFlag[0] = true;
+                        stopped.countDown();
+                        return;
+                    case ERROR:
+                        Log.w(TAG, job.wavPath + ": " + event.text);
+                        failedFlag[0] = true;
+                        stopped.countDown();
+                        return;
+                    default:
+                        break;
+                }
+                long offsetMs = sessionStart / BYTES_PER_MS + event.offsetMs;
+                if (event.type == RecognitionEvent.Type.RECOGNIZED) {
+                    long endBytes = (offsetMs + event.durationMs) * BYTES_PER_MS;
+                    synchronized (job) {
+                        if (endBytes <= job.confirmedBytes) return;
+                        job.confirmedBytes = endBytes;
+                    }
+                }
+                job.listener.onResult(job, event.withOffset(offsetMs));
+            }
+        };
+        AzureSpeechRecognizer.BufferRecognizer recognizer = new AzureSpeechRecognizer.BufferRecognizer(tokenManager, region,
+                language, sessionCallback, null, uploadFormat);
+        PushPacer pacer = new PushPacer(PushPacer.Mode.AS_FAST_AS_ACCEPTED);
+        try (WavFileSource source = new WavFileSource(job.wavPath)) {
+            if (!recognizer.isAlive()) return false;
+            job.totalBytes = source.dataLength();
+            long start = Math.min(sessionStart - sessionStart % 2, source.dataLength());
+            source.seek(start);
+            byte[] window = new byte[READ_WINDOW];
+            byte[] chunk = new byte[BUFFER_SIZE];
+            long pushed = start;
+            while (!failedFlag[0]) {
+                int len;
+                diskReads.acquire();
+                try {
+                    len = source.read(window, 0, window.length);
+                } finally {
+                    diskReads.release();
+                }
+                if (len <= 0) break;
+                for (int off = 0; off < len; off += BUFFER_SIZE) {
+                    int n = Math.min(BUFFER_SIZE, len - off);
+                    System.arraycopy(window, off, chunk, 0, n);
+                    recognizer.recognizeBuffer(chunk, n);
+                    pacer.onPushed(n, recognizer.getRecognizedUpToMs());
+                }
+                pushed += len;
+                job.pushedBytes = pushed;
+                job.listener.onProgress(job, pushed, job.totalBytes);
+            }
+            recognizer.closePushStream();
+            long timeoutMs = (job.totalBytes - start) / BYTES_PER_MS + STOP_GRACE_MS;
+            if (!stopped.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, job.wavPath + " did not stop within " + timeoutMs + "ms");
+                return false;
+            }
+            if (tokenExpired[0]) tokenManager.forceRefreshToken(recognizer.getToken());
+            return !failedFlag[0];
+        } catch (AzureSpeechRecognizer.TokenExpiredException e) {
+            tokenManager.forceRefreshToken(recognizer.getToken());
+            return false;
+        } finally {
+            recognizer.close();
+        }
+    }
+}
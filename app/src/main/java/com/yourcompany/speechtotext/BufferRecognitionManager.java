@@ -1,130 +1,1273 @@
 package com.yourcompany.speechtotext;
 
 import android.util.Log;
-import java.io.FileInputStream;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoubleSupplier;
 
-public class BufferRecognitionManager {
+public class BufferRecognitionManager implements RecognitionHandle {
     private static final String TAG = "BufferRecognitionMgr";
-    private static final int BUFFER_SIZE = 4096;
-    private static final byte[] END_MARKER = new byte[0];
+    // 16kHz * 16bit * 单声道
+    private static final long BYTES_PER_MS = 32;
+    // 备用 session 超过该时长即重建，保证其 token 在切换时仍然有效
+    private static final long STANDBY_MAX_AGE_MS = 5 * 60 * 1000;
+    private static final long STANDBY_CHECK_INTERVAL_MS = 30 * 1000;
+    // 推送时间线长度：记录最近 1024 个 chunk（默认 chunk 大小下约 2 分钟音频）的推送时刻，用于计算推送到出结果的延迟
+    private static final int TIMELINE_SIZE = 1024;
+    private static final long CHECKPOINT_INTERVAL_MS = 10 * 1000;
+    // 缓存结果等待当前句子出结果的最长时间，超过后不再等待直接输出
+    private static final long CACHE_SETTLE_MS = 3000;
+    // drain 时关闭 push stream 后等待最后结果的最长时间
+    private static final long DRAIN_RESULT_TIMEOUT_MS = 10 * 1000;
+    // offset 映射（VAD 映射段、缓存跳过记录）保留到最后确认位置之前 1 秒：结果的 offset 按毫秒取整，可能略早于上一条结果的结束位置
+    private static final long TRIM_MARGIN_BYTES = 1000 * BYTES_PER_MS;
+    private static final int READER = 0;
+    private static final int RECOGNIZER = 1;
+
+    // 各阶段指标，未启用 PipelineMetrics 时不计时
+    private static final PipelineMetrics.Histogram READ_LATENCY = PipelineMetrics.histogram("read.source");
+    private static final PipelineMetrics.Histogram PRODUCER_WAIT = PipelineMetrics.histogram("queue.producerWait");
+    private static final PipelineMetrics.Histogram CONSUMER_WAIT = PipelineMetrics.histogram("queue.consumerWait");
+    private static final PipelineMetrics.Histogram PUSH_LATENCY = PipelineMetrics.histogram("push.write");
+    private static final PipelineMetrics.Histogram RESULT_LATENCY = PipelineMetrics.histogram("result.latency");
+    private static final PipelineMetrics.Histogram FIRST_PARTIAL_LATENCY = PipelineMetrics.histogram("result.firstPartialLatency");
+    private static final PipelineMetrics.Histogram RESTART_GAP = PipelineMetrics.histogram("session.restartGap");
+    private static final PipelineMetrics.Counter PUSHED_BYTES = PipelineMetrics.counter("audio.pushedBytes");
+    private static final PipelineMetrics.Counter REPLAYED_BYTES = PipelineMetrics.counter("audio.replayedBytes");
+    private static final PipelineMetrics.Counter DUPLICATES = PipelineMetrics.counter("result.duplicatesDropped");
+    private static final PipelineMetrics.Counter RESTART_TOKEN = PipelineMetrics.counter("session.restart.tokenExpired");
+    private static final PipelineMetrics.Counter RESTART_STOPPED = PipelineMetrics.counter("session.restart.stoppedOrCanceled");
+    private static final PipelineMetrics.Counter RESTART_ERROR = PipelineMetrics.counter("session.restart.error");
 
     private final String wavPath;
+    // 流式输入源（进程内解码或网络流），与 wavPath 二选一
+    private final AudioSource streamSource;
     private final AzureTokenManager tokenManager;
     private final String region;
     private final AzureSpeechRecognizer.ResultCallback callback;
+    private final PushPacer pacer;
+    // 识别语言；多语言时本对象识别第一个，其余每种语言一个 lane，lane 的 owner 为本对象
+    private String language = AzureSpeechRecognizer.DEFAULT_LANGUAGE;
+    private final java.util.List<BufferRecognitionManager> lanes = new java.util.ArrayList<>();
+    private final BufferRecognitionManager owner;
+    // 推送线程读取的位置：本对象读 bufferQueue 的默认消费者，lane 读 owner 的 bufferQueue 上各自的 Reader
+    private PcmChunkRing.Reader input;
+    // start 时占用的工作线程名额，结束时归还
+    private int reservedWorkers;
 
-    // 限制队列长度，防止 OOM
-    private final BlockingQueue<byte[]> bufferQueue = new LinkedBlockingQueue<>(16);
+    // 限制队列长度，防止 OOM；chunk 预分配并循环复用，稳态读写不产生垃圾。大小由 chunkProfile 决定
+    private ChunkProfile chunkProfile = ChunkProfile.BALANCED;
+    private PcmChunkRing bufferQueue = new PcmChunkRing(ChunkProfile.BALANCED.queueChunks, ChunkProfile.BALANCED.chunkBytes);
+    // 仅 AUTO 模式
+    private ChunkTuner chunkTuner;
     private volatile boolean fileReadFinished = false;
 
+    // 可选：静音过滤，以及带原始音频 offset 的 Recognized 回调
+    private VoiceActivityFilter vad;
+    private AzureSpeechRecognizer.RecognizedListener recognizedListener;
+    private AzureSpeechRecognizer.RecognizerFactory recognizerFactory = AzureSpeechRecognizer.SDK_FACTORY;
+    // VAD 输出长度不固定，攒满一个 chunk 再发布（仅 FileReadThread 使用）
+    private PcmChunkRing.Chunk pendingChunk;
+    private byte[] vadIn;
+    private byte[] vadOut;
+    // 已推送成功并归还的字节数（仅 RecognitionThread 写）
+    private volatile long releasedBytes = 0;
+    // 最后一条 Recognized 结果在推送流中的结束位置
+    private volatile long confirmedBytes = 0;
+    // 已推送未确认的音频，内存 1MB（约 32 秒），超出部分溢出到磁盘，最多 64MB
+    private final ReplayBuffer replayBuffer = new ReplayBuffer(1024 * 1024, 64L * 1024 * 1024);
+
+    // 预先建好并已启动连续识别的备用 session，当前 session 失败时直接切换
+    private final AtomicReference<Session> standby = new AtomicReference<>();
+    // prepare() 提交的首个 session 构建任务
+    private volatile java.util.concurrent.Future<?> warmup;
+    // 共享调度线程上的备用 session 维护与断点保存，结束时取消
+    private ScheduledFuture<?> standbyTask;
+    private ScheduledFuture<?> checkpointTask;
+    // maintainStandby 与 release 互斥：release 之后没有正在构建的 session，也不会再建；released 受 standbyLock 保护
+    private final Object standbyLock = new Object();
+    private boolean released = false;
+
+    // 生命周期：inputClosed 后读线程不再读取新音频（drain），stopping 后推送线程也立即退出（stop）
+    private volatile boolean inputClosed = false;
+    private volatile boolean stopping = false;
+    private boolean started = false;
+    // 正在运行工作循环的线程，stop / drain 时中断；受 workerThreads 自身保护
+    private final Thread[] workerThreads = new Thread[2];
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    // 重启间隙统计：从检测到 session 失败到新 session 可以推流（纳秒）
+    private volatile long restartCount = 0;
+    private volatile long lastRestartGapNanos = 0;
+    private volatile long maxRestartGapNanos = 0;
+    private volatile long totalRestartGapNanos = 0;
+    // 推送时间线：timelinePositions[i] 为推送流位置，timelineNanos[i] 为推送完成时刻
+    private final long[] timelinePositions = new long[TIMELINE_SIZE];
+    private final long[] timelineNanos = new long[TIMELINE_SIZE];
+    private int timelineCount = 0;
+    private long startNanos;
+    // 仪表名后缀，多路 session 同时运行时区分各自的仪表
+    private String metricsName;
+    // 本对象注册的仪表，release 时移除；受 this 锁保护
+    private final java.util.Map<String, DoubleSupplier> gauges = new java.util.HashMap<>();
+
+    // 可选：崩溃后续识别的断点（仅文件输入）
+    private RecognitionCheckpoint checkpoint;
+    // 本次从原始音频的该位置开始读取，所有输出 offset 都加上这个基准
+    private long resumeBytes = 0;
+    private java.util.List<String> restoredTranscript = java.util.Collections.emptyList();
+
+    // 可选：识别结果缓存（仅文件输入），命中的段不再送识别
+    private RecognitionCache resultCache;
+    private RecognitionCache.Collector cacheCollector;
+    private RecognitionCache.Segmenter segmenter;
+    // 已切段的原始字节数 / 已送入 VAD（或直接入队）的字节数，仅 FileReadThread 写
+    private long segmentedBytes = 0;
+    private long filterInputBytes = 0;
+    // 跳过的音频：skipAt[i] 为跳过处在 VAD 输入中的位置，skipTotal[i] 为截至该处累计跳过的字节数
+    private long[] skipAt = new long[64];
+    private long[] skipTotal = new long[64];
+    private int skipCount = 0;
+    // 已丢弃的跳过记录累计跳过的字节数
+    private long skipBase = 0;
+    // 命中缓存、等待当前句子出结果后再输出的结果，按推送流位置排序；受自身锁保护
+    private final java.util.ArrayDeque<CachedBatch> pendingCached = new java.util.ArrayDeque<>();
+    private volatile boolean hasPendingCached = false;
+    private long lostBytesSeen = 0;
+
     public BufferRecognitionManager(String wavPath, AzureTokenManager tokenManager, String region, AzureSpeechRecognizer.ResultCallback callback) {
+        this(wavPath, tokenManager, region, callback, new PushPacer(PushPacer.Mode.REALTIME));
+    }
+
+    public BufferRecognitionManager(String wavPath, AzureTokenManager tokenManager, String region, AzureSpeechRecognizer.ResultCallback callback, PushPacer pacer) {
+        this(wavPath, null, tokenManager, region, callback, pacer);
+    }
+
+    /**
+     * 从流式音频源（PcmStreamSource、NetworkPcmListener.Stream 等）识别，音频边到达边送识别，读到 -1 后结束；
+     * 流式输入按到达速度推送，通常配合 AS_FAST_AS_ACCEPTED 使用。
+     */
+    public BufferRecognitionManager(AudioSource streamSource, AzureTokenManager tokenManager, String region, AzureSpeechRecognizer.ResultCallback callback, PushPacer pacer) {
+        this(null, streamSource, tokenManager, region, callback, pacer);
+    }
+
+    private BufferRecognitionManager(String wavPath, AudioSource streamSource, AzureTokenManager tokenManager, String region, AzureSpeechRecognizer.ResultCallback callback, PushPacer pacer) {
         this.wavPath = wavPath;
+        this.streamSource = streamSource;
         this.tokenManager = tokenManager;
         this.region = region;
         this.callback = callback;
+        this.pacer = pacer;
+        this.owner = null;
+    }
+
+    // 多语言时的附加 lane：没有读线程，与 owner 共享读到的音频，只运行推送线程
+    private BufferRecognitionManager(BufferRecognitionManager owner, String language) {
+        this.wavPath = null;
+        this.streamSource = null;
+        this.tokenManager = owner.tokenManager;
+        this.region = owner.region;
+        this.callback = owner.callback;
+        this.pacer = owner.pacer.copy();
+        this.owner = owner;
+        this.language = language;
+    }
+
+    /**
+     * 在 start 之前设置，启用后静音段不再送识别。
+     */
+    public void setVoiceActivityFilter(VoiceActivityFilter vad) {
+        this.vad = vad;
+    }
+
+    /**
+     * 在 start 之前设置，选择 chunk 大小与队列深度；AUTO 时按最大 chunk 和最深队列预分配，运行时只调整实际使用的部分。
+     */
+    public void setChunkProfile(ChunkProfile profile) {
+        chunkProfile = profile;
+        if (profile == ChunkProfile.AUTO) {
+            chunkTuner = new ChunkTuner();
+            bufferQueue = new PcmChunkRing(ChunkTuner.maxQueueChunks(), ChunkTuner.MAX_CHUNK_BYTES);
+            bufferQueue.setLimit(chunkTuner.queueChunks());
+        } else {
+            chunkTuner = null;
+            bufferQueue = new PcmChunkRing(profile.queueChunks, profile.chunkBytes);
+        }
+    }
+
+    /**
+     * 在 start 之前设置：仪表注册为 "queue.depth/<name>" 等。多路 session 同时运行（例如网络接收）时各自设置，
+     * 不设置时使用不带后缀的名字，后启动的 session 替换先启动的。
+     */
+    public void setMetricsName(String name) {
+        this.metricsName = name;
+    }
+
+    public ChunkProfile getChunkProfile() {
+        return chunkProfile;
+    }
+
+    // 当前每次读取 / 推送的字节数
+    private int chunkBytes() {
+        ChunkTuner tuner = chunkTuner;
+        return tuner != null ? tuner.chunkBytes() : bufferQueue.chunkSize();
+    }
+
+    /**
+     * 在 prepare / start 之前设置：替换创建识别 session 的方式，默认用 Speech SDK（AzureSpeechRecognizer.SDK_FACTORY）。
+     * 多语言时所有语言共用。
+     */
+    public void setRecognizerFactory(AzureSpeechRecognizer.RecognizerFactory recognizerFactory) {
+        this.recognizerFactory = recognizerFactory;
+    }
+
+    /**
+     * 在 prepare / start 之前设置：上传给服务端的音频格式，默认 PCM_16K 不转换。
+     * 转换只发生在推流前，重放和 offset 仍按原始 16kHz PCM 计算；会替换 setRecognizerFactory 设置的工厂。
+     */
+    public void setUploadFormat(UploadEncoder.Format format) {
+        this.recognizerFactory = AzureSpeechRecognizer.sdkFactory(format);
+    }
+
+    /**
+     * 在 start 之前设置；offset 为原始音频中的位置（循环读取时按累计读取量计算），已扣除 VAD 的影响。
+     */
+    public void setRecognizedListener(AzureSpeechRecognizer.RecognizedListener recognizedListener) {
+        this.recognizedListener = recognizedListener;
+    }
+
+    /**
+     * 在 prepare / start 之前设置：同一路音频同时按多种语言识别，只读取 / 解码一次。
+     * 第一个语言由本对象识别，其余每种语言一个附加的推送线程，按引用共享读到的 chunk，
+     * 各自有独立的 session、重放缓冲和背压（慢的语言不拖住其他语言）；结果通过 RecognitionEvent.language 区分。
+     * 多种语言时不支持断点和结果缓存。
+     */
+    public void setLanguages(String... languages) {
+        if (languages.length == 0) throw new IllegalArgumentException("At least one language is required");
+        language = languages[0];
+        lanes.clear();
+        for (int i = 1; i < languages.length; i++) {
+            lanes.add(new BufferRecognitionManager(this, languages[i]));
+        }
+        if (!lanes.isEmpty()) {
+            if (checkpoint != null) {
+                Log.w(TAG, "Checkpoint is not supported with multiple languages, ignoring");
+                checkpoint = null;
+                resumeBytes = 0;
+                restoredTranscript = java.util.Collections.emptyList();
+            }
+            if (resultCache != null) {
+                Log.w(TAG, "Result cache is not supported with multiple languages, ignoring");
+                resultCache = null;
+                cacheCollector = null;
+                segmenter = null;
+            }
+        }
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * 在 start 之前设置。读取 checkpointFile 中同一文件的断点，start 后从最后确认的结果之后继续识别；
+     * 运行期间每 10 秒原子地保存一次断点。
+     */
+    public void setCheckpoint(java.io.File checkpointFile) throws java.io.IOException {
+        if (wavPath == null) {
+            Log.w(TAG, "Checkpoint is only supported for file input, ignoring");
+            return;
+        }
+        if (!lanes.isEmpty()) {
+            Log.w(TAG, "Checkpoint is not supported with multiple languages, ignoring");
+            return;
+        }
+        RecognitionCheckpoint cp = new RecognitionCheckpoint(checkpointFile);
+        RecognitionCheckpoint.State state = cp.open(RecognitionCheckpoint.fileIdentity(wavPath));
+        if (state != null) {
+            resumeBytes = state.confirmedBytes - state.confirmedBytes % 2;
+            restoredTranscript = state.transcript;
+        }
+        checkpoint = cp;
+    }
+
+    /**
+     * 在 start 之前设置（仅文件输入）。音频在静音处切段，命中缓存的段直接输出保存的结果，不再推送；
+     * 未命中的段识别完成后写入缓存，循环读取同一文件或重复提交同一录音时只识别一次。
+     */
+    public void setResultCache(RecognitionCache cache) {
+        if (wavPath == null) {
+            Log.w(TAG, "Result cache is only supported for file input, ignoring");
+            return;
+        }
+        if (!lanes.isEmpty()) {
+            Log.w(TAG, "Result cache is not supported with multiple languages, ignoring");
+            return;
+        }
+        resultCache = cache;
+        cacheCollector = cache.new Collector();
+        segmenter = new RecognitionCache.Segmenter();
+    }
+
+    // 从断点恢复的已识别文本，没有断点时为空
+    public java.util.List<String> getRestoredTranscript() {
+        return restoredTranscript;
+    }
+
+    public long getRestartCount() {
+        return restartCount;
+    }
+
+    public long getLastRestartGapMicros() {
+        return lastRestartGapNanos / 1000;
+    }
+
+    public long getMaxRestartGapMicros() {
+        return maxRestartGapNanos / 1000;
+    }
+
+    public long getAverageRestartGapMicros() {
+        long count = restartCount;
+        return count == 0 ? 0 : totalRestartGapNanos / count / 1000;
+    }
+
+    /**
+     * 可选，在 start 之前调用：在后台提前建好第一个 session（获取 token、连接服务、启动连续识别），
+     * 与音频准备并行；start 后直接使用它，不再同步建立。返回的 Future 在 session 就绪（或失败）时完成。
+     */
+    public java.util.concurrent.Future<?> prepare() {
+        for (BufferRecognitionManager lane : lanes) {
+            lane.prepare();
+        }
+        java.util.concurrent.Future<?> task = RecognitionExecutors.scheduler().submit(this::maintainStandby);
+        warmup = task;
+        return task;
+    }
+
+    /**
+     * 在共享线程池上启动读取与推送循环（多语言时每个 lane 再加一个推送循环），返回的句柄即本对象，
+     * 停止时 lane 一起停止；每个对象只能 start 一次。线程池名额不足时抛出 IllegalStateException。
+     */
+    public synchronized RecognitionHandle start() {
+        if (started || stopping) {
+            throw new IllegalStateException("BufferRecognitionManager can only be started once");
+        }
+        if (!RecognitionExecutors.tryReserveWorkers(2 + lanes.size())) {
+            throw new IllegalStateException("Too many concurrent recognition sessions, max " + RecognitionExecutors.maxWorkers() + " workers");
+        }
+        started = true;
+        reservedWorkers = 2;
+        if (!lanes.isEmpty()) {
+            // 广播：容量多留一倍，给正在使用已溢出 chunk 的慢 lane 留出余量
+            PcmChunkRing ring = new PcmChunkRing(bufferQueue.capacity() * 2, bufferQueue.chunkSize());
+            ring.setLimit(bufferQueue.limit());
+            bufferQueue = ring;
+        }
+        input = bufferQueue.reader();
+        for (BufferRecognitionManager lane : lanes) {
+            lane.startLane(bufferQueue.addReader());
+        }
+        startNanos = System.nanoTime();
+        registerGauges();
+        ScheduledExecutorService scheduler = RecognitionExecutors.scheduler();
+        standbyTask = scheduler.scheduleWithFixedDelay(this::maintainStandby, 0, STANDBY_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        RecognitionCheckpoint cp = checkpoint;
+        if (cp != null) {
+            checkpointTask = scheduler.scheduleWithFixedDelay(cp::save, CHECKPOINT_INTERVAL_MS, CHECKPOINT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+        runningWorkers.set(2);
+        if (streamSource != null) {
+            RecognitionExecutors.execute(() -> runWorker(READER, "StreamReadThread", this::streamReadThread));
+        } else {
+            RecognitionExecutors.execute(() -> runWorker(READER, "FileReadThread", this::fileReadThread));
+        }
+        RecognitionExecutors.execute(() -> runWorker(RECOGNIZER, "RecognitionThread", this::recognitionThread));
+        return this;
+    }
+
+    // lane 只有推送线程，名额已由 owner 占用
+    private synchronized void startLane(PcmChunkRing.Reader reader) {
+        started = true;
+        reservedWorkers = 1;
+        bufferQueue = owner.bufferQueue;
+        input = reader;
+        // 仅用于把推送流位置换算回原始音频
+        vad = owner.vad;
+        recognizedListener = owner.recognizedListener;
+        startNanos = System.nanoTime();
+        standbyTask = RecognitionExecutors.scheduler().scheduleWithFixedDelay(this::maintainStandby, 0, STANDBY_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        runningWorkers.set(1);
+        RecognitionExecutors.execute(() -> runWorker(RECOGNIZER, "RecognitionThread-" + language, this::recognitionThread));
+    }
+
+    /**
+     * 立即停止：不再读取和推送，关闭当前 session（含 push stream）和备用 session，保存断点。不阻塞调用线程。
+     */
+    @Override
+    public void stop() {
+        boolean notStarted;
+        synchronized (this) {
+            if (stopping) return;
+            stopping = true;
+            inputClosed = true;
+            notStarted = !started;
+        }
+        for (BufferRecognitionManager lane : lanes) {
+            lane.stop();
+        }
+        if (notStarted) {
+            // 没有工作线程，prepare() 建好的 session 在调度线程上释放
+            RecognitionExecutors.scheduler().execute(() -> {
+                release();
+                terminated.countDown();
+            });
+            return;
+        }
+        Log.i(TAG, "Stopping recognition (" + language + ")");
+        bufferQueue.close();
+        if (streamSource != null) closeStreamSource();
+        interruptWorker(READER);
+        interruptWorker(RECOGNIZER);
+    }
+
+    /**
+     * 停止读取新音频，已入队的音频推送完后关闭 push stream，等最后的结果到达（最多 10 秒）后结束。不阻塞调用线程。
+     */
+    @Override
+    public void drain() {
+        synchronized (this) {
+            if (inputClosed) return;
+            inputClosed = true;
+        }
+        Log.i(TAG, "Draining recognition");
+        // 流式输入可能正阻塞在等待数据上
+        if (streamSource != null) closeStreamSource();
+        interruptWorker(READER);
     }
 
-    public void start() {
-        new Thread(this::fileReadThread, "FileReadThread").start();
-        new Thread(this::recognitionThread, "RecognitionThread").start();
+    // drain 由 owner 发起，lane 读到同一个 END_MARKER 后各自结束
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!terminated.await(timeout, unit)) return false;
+        for (BufferRecognitionManager lane : lanes) {
+            if (!lane.terminated.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        for (BufferRecognitionManager lane : lanes) {
+            if (lane.terminated.getCount() != 0) return false;
+        }
+        return terminated.getCount() == 0;
+    }
+
+    // 在共享线程池上运行工作循环：线程临时改名便于排查；退出时清除中断标记，不影响该线程执行的下一个任务
+    private void runWorker(int slot, String name, Runnable loop) {
+        Thread thread = Thread.currentThread();
+        String poolName = thread.getName();
+        thread.setName(name);
+        synchronized (workerThreads) {
+            workerThreads[slot] = thread;
+        }
+        try {
+            loop.run();
+        } catch (Throwable t) {
+            Log.e(TAG, name + " died: " + t);
+        } finally {
+            synchronized (workerThreads) {
+                workerThreads[slot] = null;
+                Thread.interrupted();
+            }
+            thread.setName(poolName);
+            if (runningWorkers.decrementAndGet() == 0) {
+                RecognitionExecutors.releaseWorkers(reservedWorkers);
+                terminated.countDown();
+            }
+        }
+    }
+
+    private void interruptWorker(int slot) {
+        synchronized (workerThreads) {
+            Thread thread = workerThreads[slot];
+            if (thread != null) thread.interrupt();
+        }
     }
 
     private void fileReadThread() {
         long totalBytesRead = 0;
-        try {
+        try (WavFileSource source = openWavSource()) {
+            if (source == null) {
+                // header 错误，结束本次识别
+                return;
+            }
+            if (resumeBytes > 0) {
+                long filePos = resumeBytes % source.dataLength();
+                source.seek(filePos - filePos % 2);
+                Log.i(TAG, "FileReadThread resuming at " + resumeBytes / BYTES_PER_MS + "ms from checkpoint");
+            }
             while (true) {
-                try (FileInputStream fis = new FileInputStream(wavPath)) {
-                    byte[] header = new byte[44];
-                    int read = fis.read(header);
-                    if (read != 44) {
-                        Log.e(TAG, "WAV header too short");
-                        callback.onResult("Error", "WAV header too short");
-                        // 只在 header 错误时退出
-                        break;
-                    }
-                    long offset = 0;
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    int len;
-                    while ((len = fis.read(buffer)) > 0) {
-                        // 只分配实际长度，避免 clone 整个 buffer
-                        byte[] actual = new byte[len];
-                        System.arraycopy(buffer, 0, actual, 0, len);
-                        bufferQueue.put(actual);
-                        offset += len;
-                        totalBytesRead += len;
-                    }
-                    Log.i(TAG, "FileReadThread finished one round, bytes read: " + offset + ", total bytes read: " + totalBytesRead);
-                    // 读到结尾后，自动重新开始，不发送 END_MARKER
-                }
+                long offset = resultCache != null ? pumpSegments(source) : pump(source);
+                totalBytesRead += offset;
+                if (inputClosed) break;
+                Log.i(TAG, "FileReadThread finished one round, bytes read: " + offset + ", total bytes read: " + totalBytesRead + vadSummary());
+                // 读到结尾后自动重新开始，drain / stop 之后才发送 END_MARKER
+                source.rewind();
+            }
+            Log.i(TAG, "FileReadThread input closed, total bytes read: " + totalBytesRead);
+        } catch (InterruptedException e) {
+            Log.i(TAG, "FileReadThread interrupted, total bytes read: " + totalBytesRead);
+        } catch (Exception e) {
+            if (inputClosed) {
+                // drain / stop 的中断可能关闭了文件通道
+                Log.i(TAG, "FileReadThread stopped: " + e);
+            } else {
+                Log.e(TAG, "FileReadThread exception: " + e.getMessage());
             }
+        } finally {
+            finishInput();
+        }
+    }
+
+    // 流式输入：边解码边识别，输入结束后发送 END_MARKER，RecognitionThread 关闭 pushStream 后退出
+    private void streamReadThread() {
+        try {
+            long total = pump(streamSource);
+            String firstData = streamSource instanceof PcmStreamSource
+                    ? ", first data after " + ((PcmStreamSource) streamSource).getTimeToFirstDataMs() + "ms" : "";
+            Log.i(TAG, "StreamReadThread input finished, bytes read: " + total + firstData + vadSummary());
+        } catch (InterruptedException e) {
+            Log.i(TAG, "StreamReadThread interrupted");
         } catch (Exception e) {
-            Log.e(TAG, "FileReadThread exception: " + e.getMessage());
-            try { bufferQueue.put(END_MARKER); } catch (Exception ignore) {}
+            Log.e(TAG, "StreamReadThread exception: " + e.getMessage());
+        } finally {
+            // 解码端不再等待读取
+            closeStreamSource();
+            finishInput();
         }
     }
 
+    private void closeStreamSource() {
+        try {
+            streamSource.close();
+        } catch (java.io.IOException e) {
+            Log.w(TAG, "Failed to close audio source: " + e.getMessage());
+        }
+    }
+
+    // 读线程退出前发送 END_MARKER；drain 的中断可能落在这里，重试直到成功。stop 时 ring 已关闭，不再发送
+    private void finishInput() {
+        while (!stopping) {
+            try {
+                bufferQueue.publishEnd();
+                return;
+            } catch (InterruptedException e) {
+                // 重试
+            }
+        }
+    }
+
+    // 把 reader 中的音频读到末尾并写入 bufferQueue（启用 VAD 时先过滤），返回读取字节数
+    private long pump(AudioSource reader) throws Exception {
+        long offset = 0;
+        int len;
+        if (vad == null) {
+            while (!inputClosed) {
+                // 直接读入池中的 chunk，不再为每次读取分配新数组
+                long waitStart = PipelineMetrics.start();
+                PcmChunkRing.Chunk chunk = bufferQueue.acquire();
+                PRODUCER_WAIT.recordSince(waitStart);
+                long readStart = PipelineMetrics.start();
+                len = reader.read(chunk.data, 0, chunkBytes());
+                READ_LATENCY.recordSince(readStart);
+                if (len <= 0) break;
+                chunk.length = len;
+                bufferQueue.publish();
+                offset += len;
+            }
+            return offset;
+        }
+        if (vadIn == null) {
+            vadIn = new byte[bufferQueue.chunkSize()];
+            vadOut = new byte[vad.maxOutput(bufferQueue.chunkSize())];
+        }
+        while (!inputClosed) {
+            long readStart = PipelineMetrics.start();
+            len = reader.read(vadIn, 0, chunkBytes());
+            READ_LATENCY.recordSince(readStart);
+            if (len <= 0) break;
+            int n = vad.process(vadIn, 0, len, vadOut);
+            // 本次没有输出（静音）时立即发布残留，避免语音尾部滞留在未满的 chunk 中
+            writeFiltered(vadOut, n, n == 0);
+            offset += len;
+        }
+        writeFiltered(vadOut, vad.flush(vadOut), true);
+        return offset;
+    }
+
+    // 启用结果缓存时的读取：按段查缓存，命中的段跳过，未命中的段照常送识别，返回读取字节数
+    private long pumpSegments(AudioSource reader) throws Exception {
+        long offset = 0;
+        byte[] in = new byte[bufferQueue.chunkSize()];
+        while (!inputClosed) {
+            long readStart = PipelineMetrics.start();
+            int len = reader.read(in, 0, chunkBytes());
+            READ_LATENCY.recordSince(readStart);
+            if (len <= 0) break;
+            for (int off = 0; off < len; ) {
+                off += segmenter.append(in, off, len - off);
+                if (segmenter.isComplete()) flushSegment();
+            }
+            offset += len;
+        }
+        if (segmenter.length() > 0) flushSegment();
+        if (vad != null) writeFiltered(vadOut, vad.flush(vadOut), true);
+        return offset;
+    }
+
+    private void flushSegment() throws InterruptedException {
+        int length = segmenter.length();
+        String key = segmenter.finish(language);
+        long startMs = (resumeBytes + segmentedBytes) / BYTES_PER_MS;
+        java.util.List<RecognitionEvent> cached = resultCache.get(key);
+        if (cached != null) {
+            // VAD 攒着的残留先发布，保证标记之前的音频都已入队
+            if (vad != null) writeFiltered(vadOut, 0, true);
+            addSkip(filterInputBytes, length);
+            java.util.List<RecognitionEvent> rebased = new java.util.ArrayList<>(cached.size());
+            for (RecognitionEvent event : cached) {
+                rebased.add(event.withOffset(startMs + event.offsetMs));
+            }
+            PcmChunkRing.Chunk marker = bufferQueue.acquire();
+            marker.cachedResults = rebased;
+            marker.cachedStartMs = startMs;
+            bufferQueue.publish();
+        } else {
+            cacheCollector.begin(key, startMs, (resumeBytes + segmentedBytes + length) / BYTES_PER_MS);
+            publishAudio(segmenter.data(), length);
+            filterInputBytes += length;
+        }
+        segmentedBytes += length;
+        segmenter.reset();
+    }
+
+    // 把一段原始音频按当前 chunk 大小写入 bufferQueue（启用 VAD 时先过滤）
+    private void publishAudio(byte[] data, int length) throws InterruptedException {
+        if (vad != null && vadIn == null) {
+            vadIn = new byte[bufferQueue.chunkSize()];
+            vadOut = new byte[vad.maxOutput(bufferQueue.chunkSize())];
+        }
+        for (int off = 0; off < length; ) {
+            int n = Math.min(chunkBytes(), length - off);
+            if (vad != null) {
+                int out = vad.process(data, off, n, vadOut);
+                writeFiltered(vadOut, out, out == 0);
+            } else {
+                long waitStart = PipelineMetrics.start();
+                PcmChunkRing.Chunk chunk = bufferQueue.acquire();
+                PRODUCER_WAIT.recordSince(waitStart);
+                System.arraycopy(data, off, chunk.data, 0, n);
+                chunk.length = n;
+                bufferQueue.publish();
+            }
+            off += n;
+        }
+    }
+
+    private synchronized void addSkip(long at, long length) {
+        // 连续命中的段跳过点相同，合并成一条
+        if (skipCount > 0 && skipAt[skipCount - 1] == at) {
+            skipTotal[skipCount - 1] += length;
+            return;
+        }
+        if (skipCount == skipAt.length) {
+            skipAt = java.util.Arrays.copyOf(skipAt, skipCount * 2);
+            skipTotal = java.util.Arrays.copyOf(skipTotal, skipCount * 2);
+        }
+        skipAt[skipCount] = at;
+        skipTotal[skipCount] = (skipCount > 0 ? skipTotal[skipCount - 1] : skipBase) + length;
+        skipCount++;
+    }
+
+    // 丢弃位于 position 之前的跳过记录（之后的查询位置都不小于 position），累计跳过量并入 skipBase
+    private synchronized void trimSkips(long position) {
+        int n = 0;
+        while (n < skipCount && skipAt[n] < position) n++;
+        if (n == 0) return;
+        skipBase = skipTotal[n - 1];
+        System.arraycopy(skipAt, n, skipAt, 0, skipCount - n);
+        System.arraycopy(skipTotal, n, skipTotal, 0, skipCount - n);
+        skipCount -= n;
+    }
+
+    // VAD 输入位置 -> 加回在它之前跳过的音频；恰好位于跳过点上的位置，起点算在跳过之后，终点算在跳过之前
+    private synchronized long withSkipped(long position, boolean end) {
+        int lo = 0, hi = skipCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (skipAt[mid] < position || (!end && skipAt[mid] == position)) lo = mid + 1; else hi = mid;
+        }
+        return position + (lo > 0 ? skipTotal[lo - 1] : skipBase);
+    }
+
+    // 丢弃不会再被查询的 offset 映射；各语言共用 owner 的 VAD，只能丢弃所有 lane 都已确认的部分
+    private void trimOffsetMaps() {
+        VoiceActivityFilter filter = vad;
+        if (filter == null && resultCache == null) return;
+        BufferRecognitionManager root = owner != null ? owner : this;
+        long position = root.confirmedBytes;
+        for (BufferRecognitionManager lane : root.lanes) {
+            position = Math.min(position, lane.confirmedBytes);
+        }
+        position -= TRIM_MARGIN_BYTES;
+        if (position <= 0) return;
+        long input = position;
+        if (filter != null) {
+            filter.trimBefore(position);
+            input = filter.toOriginal(position);
+        }
+        if (resultCache != null) trimSkips(input);
+    }
+
+    // 推送流位置 -> 原始音频位置：依次还原 VAD 过滤和缓存命中跳过的音频，再加上断点基准
+    private long toOriginalBytes(long streamBytes, boolean end) {
+        VoiceActivityFilter filter = vad;
+        long input = filter != null ? filter.toOriginal(streamBytes) : streamBytes;
+        return resumeBytes + (resultCache != null ? withSkipped(input, end) : input);
+    }
+
+    /**
+     * 命中缓存的段：已推送的音频都已出结果时直接输出；否则不阻塞推送，记下此刻的推送流位置，
+     * 等结束位置覆盖到该位置的 Recognized 到达、或该位置之后的新句子开始时（SessionSink 中）再输出，保持与实时识别结果的先后顺序。
+     * 超过 CACHE_SETTLE_MS 仍未等到时由推送线程输出。
+     */
+    private void emitCached(java.util.List<RecognitionEvent> results, long startMs) {
+        synchronized (pendingCached) {
+            pendingCached.add(new CachedBatch(releasedBytes, startMs, System.currentTimeMillis() + CACHE_SETTLE_MS, results));
+            hasPendingCached = true;
+            releaseCached(confirmedBytes);
+        }
+    }
+
+    // 输出推送流位置不超过 upTo、或已等待超时的缓存结果
+    private void releaseCached(long upTo) {
+        synchronized (pendingCached) {
+            long now = System.currentTimeMillis();
+            CachedBatch batch;
+            while ((batch = pendingCached.peekFirst()) != null && (batch.streamPosition <= upTo || batch.deadline <= now)) {
+                pendingCached.pollFirst();
+                // 缓存段之前的音频都已出完结果，之前未命中段的结果完整，写入缓存；超时输出时前面的段可能还缺结果，留给 Collector 按后续结果写入
+                if (batch.streamPosition <= upTo) cacheCollector.flush(batch.startMs);
+                for (RecognitionEvent event : batch.results) {
+                    deliver(event, (event.offsetMs + event.durationMs) * BYTES_PER_MS);
+                }
+            }
+            hasPendingCached = !pendingCached.isEmpty();
+        }
+    }
+
+    private static final class CachedBatch {
+        final long streamPosition;
+        final long startMs;
+        final long deadline;
+        final java.util.List<RecognitionEvent> results;
+
+        CachedBatch(long streamPosition, long startMs, long deadline, java.util.List<RecognitionEvent> results) {
+            this.streamPosition = streamPosition;
+            this.startMs = startMs;
+            this.deadline = deadline;
+            this.results = results;
+        }
+    }
+
+    // 输出已换算为原始音频 offset 的事件，originalEndBytes 为 Recognized 结果在原始音频中的结束位置
+    private void deliver(RecognitionEvent mapped, long originalEndBytes) {
+        boolean recognized = mapped.type == RecognitionEvent.Type.RECOGNIZED;
+        RecognitionCheckpoint cp = checkpoint;
+        if (cp != null && recognized) {
+            cp.append(mapped.text, originalEndBytes);
+        }
+        callback.onEvent(mapped);
+        AzureSpeechRecognizer.RecognizedListener listener = recognizedListener;
+        if (listener != null && recognized) {
+            listener.onRecognized(mapped.text, mapped.offsetMs, mapped.durationMs);
+        }
+    }
+
+    private String vadSummary() {
+        if (vad == null) return "";
+        return ", VAD suppressed " + vad.getSuppressedMs() + "ms of " + vad.getInputBytes() / BYTES_PER_MS + "ms";
+    }
+
+    private void writeFiltered(byte[] data, int len, boolean flush) throws InterruptedException {
+        int off = 0;
+        while (off < len) {
+            if (pendingChunk == null) {
+                long waitStart = PipelineMetrics.start();
+                pendingChunk = bufferQueue.acquire();
+                PRODUCER_WAIT.recordSince(waitStart);
+            }
+            int target = chunkBytes();
+            int n = Math.max(0, Math.min(len - off, target - pendingChunk.length));
+            System.arraycopy(data, off, pendingChunk.data, pendingChunk.length, n);
+            pendingChunk.length += n;
+            off += n;
+            if (pendingChunk.length >= target) {
+                bufferQueue.publish();
+                pendingChunk = null;
+            }
+        }
+        if (flush && pendingChunk != null && pendingChunk.length > 0) {
+            bufferQueue.publish();
+            pendingChunk = null;
+        }
+    }
+
+    // 解析 WAV 头，格式不合法时回调 Error 并返回 null
+    private WavFileSource openWavSource() throws java.io.IOException {
+        WavFileSource source;
+        try {
+            source = new WavFileSource(wavPath);
+        } catch (WavFileSource.WavFormatException e) {
+            Log.e(TAG, "Invalid WAV file: " + e.getMessage());
+            callback.onResult("Error", "Invalid WAV file: " + e.getMessage());
+            return null;
+        }
+        if (source.dataLength() == 0) {
+            Log.e(TAG, "WAV data chunk is empty");
+            callback.onResult("Error", "WAV data chunk is empty");
+            source.close();
+            return null;
+        }
+        return source;
+    }
+
     private void recognitionThread() {
-        java.util.LinkedList<byte[]> bufferCache = new java.util.LinkedList<>();
-        while (true) {
-            AzureSpeechRecognizer.BufferRecognizer recognizer = new AzureSpeechRecognizer.BufferRecognizer(tokenManager, region, callback);
+        try {
+            recognitionLoop();
+        } finally {
+            // lane 不再消费时退出广播，否则它的溢出区攒满后 owner 的读线程会一直等它
+            if (owner != null) input.detach();
+            release();
+        }
+    }
+
+    private void recognitionLoop() {
+        byte[] replayChunk = new byte[bufferQueue.chunkSize()];
+        long failedAt = 0;
+        while (!stopping) {
+            // 从最后一条 Recognized 结果之后开始新 session，之前的音频不再重放
+            replayBuffer.confirm(confirmedBytes);
+            trimOffsetMaps();
+            long sessionStart = replayBuffer.startPosition();
+            Session session = takeStandby();
+            session.sink.activate(sessionStart);
+            AzureSpeechRecognizer.StreamRecognizer recognizer = session.recognizer;
+            if (failedAt != 0) {
+                recordRestartGap(System.nanoTime() - failedAt);
+                failedAt = 0;
+            }
+            pacer.reset();
             try {
+                // 先重放上个 session 已推送但未出结果的音频
+                long replayed = 0;
+                for (long pos = sessionStart; pos < releasedBytes; ) {
+                    int n = replayBuffer.read(pos, replayChunk, 0, replayChunk.length);
+                    if (n <= 0) break;
+                    push(recognizer, replayChunk, n);
+                    pos += n;
+                    replayed += n;
+                    REPLAYED_BYTES.add(n);
+                    pacer.onPushed(n, recognizer.getRecognizedUpToMs());
+                }
+                if (replayed > 0) {
+                    Log.i(TAG, "RecognitionThread: replayed " + replayed + " unconfirmed bytes into new session");
+                }
                 while (true) {
-                    byte[] buffer;
-                    if (!bufferCache.isEmpty()) {
-                        buffer = bufferCache.poll();
-                    } else {
-                        buffer = bufferQueue.take();
+                    // peek 不会移出 chunk，session 重启后重新 peek 即可继续推送当前及之后未消费的 buffer
+                    long waitStart = PipelineMetrics.start();
+                    PcmChunkRing.Chunk chunk = input.peek();
+                    CONSUMER_WAIT.recordSince(waitStart);
+                    if (hasPendingCached) releaseCached(-1);
+                    if (chunk.cachedResults != null) {
+                        emitCached(chunk.cachedResults, chunk.cachedStartMs);
+                        input.release();
+                        continue;
                     }
-                    if (buffer == END_MARKER) {
-                        Log.i(TAG, "RecognitionThread received END_MARKER, closing pushStream and exiting.");
-                        try {
-                            recognizer.closePushStream();
-                            Log.i(TAG, "RecognitionThread: pushStream closed after END_MARKER.");
-                        } catch (Exception ex) {
-                            Log.e(TAG, "RecognitionThread: pushStream close error: " + ex.getMessage());
+                    if (chunk.end) {
+                        if (!recognizer.isAlive()) {
+                            // session 已先行结束，切换后重放未确认的音频，再重新处理 END_MARKER
+                            throw sessionLost(session, "Session ended before END_MARKER");
                         }
-                        recognizer.close();
-                        return;
-                    }
-                    boolean recognized = false;
-                    while (!recognized) {
-                        try {
-                            recognizer.recognizeBuffer(buffer);
-                            recognized = true;
-                        } catch (AzureSpeechRecognizer.TokenExpiredException e) {
-                            Log.i(TAG, "Token expired, refreshing token and recreating recognizer...");
-                            tokenManager.forceRefreshToken();
-                            // 缓存当前 buffer 及 bufferQueue 中所有未消费 buffer
-                            bufferCache.addFirst(buffer);
-                            bufferQueue.drainTo(bufferCache);
-                            throw new SessionRestartException("Token expired, restart session");
-                        } catch (SessionRestartException e) {
-                            throw e;
-                        } catch (Exception e) {
-                            Log.e(TAG, "RecognitionThread exception: " + e.getMessage());
-                            callback.onResult("Error", "Recognition exception: " + e.getMessage());
-                            // 缓存当前 buffer 及 bufferQueue 中所有未消费 buffer
-                            bufferCache.addFirst(buffer);
-                            bufferQueue.drainTo(bufferCache);
-                            throw new SessionRestartException("Any exception, restart session");
+                        Log.i(TAG, "RecognitionThread received END_MARKER, closing pushStream and waiting for final results.");
+                        recognizer.closePushStream();
+                        if (!session.sink.awaitEnd(DRAIN_RESULT_TIMEOUT_MS)) {
+                            Log.w(TAG, "RecognitionThread: session did not stop within " + DRAIN_RESULT_TIMEOUT_MS + "ms after END_MARKER, exiting.");
+                            return;
+                        }
+                        if (session.sink.canceled) {
+                            // 收尾时被取消，最后几句的结果不会再来：同样切换 session 重放
+                            throw sessionLost(session, "Session canceled while draining final results");
                         }
+                        if (hasPendingCached) releaseCached(Long.MAX_VALUE);
+                        RecognitionCache.Collector collector = cacheCollector;
+                        if (collector != null) collector.flush();
+                        Log.i(TAG, "RecognitionThread: all results received, exiting.");
+                        return;
                     }
-                    try { Thread.sleep(10); } catch (InterruptedException ignore) {}
+                    push(recognizer, chunk.data, chunk.length);
+                    int pushed = chunk.length;
+                    // 已推送的音频留在 replayBuffer 中直到被 Recognized 结果确认
+                    replayBuffer.append(chunk.data, 0, pushed);
+                    replayBuffer.confirm(confirmedBytes);
+                    trimOffsetMaps();
+                    // pushStream.write 已拷贝数据，chunk 可以归还给池
+                    input.release();
+                    releasedBytes += pushed;
+                    PUSHED_BYTES.add(pushed);
+                    if (PipelineMetrics.isEnabled() || chunkTuner != null) recordPush(releasedBytes);
+                    // 按识别进度控制推流速率
+                    pacer.onPushed(pushed, recognizer.getRecognizedUpToMs());
                 }
             } catch (SessionRestartException e) {
-                Log.i(TAG, "RecognitionThread: session needs restart due to token/session expired, will replay cached buffers.");
-                // 彻底销毁 recognizer，外层 while 会新建
+                failedAt = System.nanoTime();
+                if (cacheCollector != null && replayBuffer.lostBytes() > lostBytesSeen) {
+                    // 有音频没能重放，未完成段的结果不完整，不写入缓存
+                    lostBytesSeen = replayBuffer.lostBytes();
+                    cacheCollector.discard();
+                }
+                Log.i(TAG, "RecognitionThread: session needs restart (" + e.getMessage() + "), will replay " + replayBuffer.size() + " unconfirmed bytes.");
+                // 彻底销毁 recognizer，外层 while 会切换到备用 session
+            } catch (InterruptedException e) {
+                // stop()：ring 已关闭或线程被中断
+                Log.i(TAG, "RecognitionThread stopped.");
+                return;
             } catch (Exception e) {
                 Log.e(TAG, "RecognitionThread fatal exception: " + e.getMessage());
                 callback.onResult("Error", "Recognition fatal exception: " + e.getMessage());
-                break;
+                if (owner == null) {
+                    // 不再消费 ring，读线程会一直阻塞在满的 ring 上：按 stop() 结束读取，lane 一起停止
+                    stop();
+                    Thread.interrupted();
+                }
+                return;
             } finally {
+                session.sink.deactivate();
                 recognizer.close();
             }
-            // sessionStopped 或 401 触发后自动重启 BufferRecognizer，继续消费 bufferQueue
-            Log.i(TAG, "RecognitionThread: session ended, restarting BufferRecognizer for continuous recognition.");
+            // sessionStopped 或 401 触发后自动切换到备用 BufferRecognizer，继续消费 bufferQueue
+            Log.i(TAG, "RecognitionThread: session ended, switching to standby BufferRecognizer for continuous recognition.");
+        }
+    }
+
+    // 取出备用 session；备用不可用时在当前线程同步新建。随后在后台补建新的备用
+    private Session takeStandby() {
+        java.util.concurrent.Future<?> pending = warmup;
+        if (pending != null) {
+            // prepare() 的构建还没完成时等它，避免再同步建一个
+            warmup = null;
+            try {
+                pending.get(STANDBY_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                Log.w(TAG, "Warm-up session not ready: " + e.getMessage());
+            }
+        }
+        Session session = standby.getAndSet(null);
+        if (session != null && !session.isUsable()) {
+            Log.i(TAG, "Standby session is stale or dead, building a fresh one");
+            session.close();
+            session = null;
+        }
+        if (session == null) {
+            session = newSession();
+        }
+        RecognitionExecutors.scheduler().execute(this::maintainStandby);
+        return session;
+    }
+
+    // 后台维护备用 session：缺失、失效或过旧时重建
+    private void maintainStandby() {
+        synchronized (standbyLock) {
+            if (released) return;
+            try {
+                Session current = standby.get();
+                if (current != null && current.isUsable()) return;
+                Session fresh = newSession();
+                if (!fresh.isUsable()) {
+                    fresh.close();
+                    return;
+                }
+                Session old = standby.getAndSet(fresh);
+                if (old != null) old.close();
+            } catch (Exception e) {
+                Log.e(TAG, "Standby session build failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Session newSession() {
+        SessionSink sink = new SessionSink();
+        AzureSpeechRecognizer.RecognizerFactory factory = owner != null ? owner.recognizerFactory : recognizerFactory;
+        return new Session(factory.create(tokenManager, region, language, sink), sink);
+    }
+
+    // token 失效时备用 session 很可能持有同一个旧 token，直接丢弃
+    private void discardStandby() {
+        Session old = standby.getAndSet(null);
+        if (old != null) old.close();
+    }
+
+    // 工作循环结束后释放本次识别持有的全部资源：周期任务、备用 session、重放缓冲，并保存断点
+    private void release() {
+        if (standbyTask != null) standbyTask.cancel(false);
+        if (checkpointTask != null) checkpointTask.cancel(false);
+        synchronized (standbyLock) {
+            released = true;
+            discardStandby();
+        }
+        replayBuffer.close();
+        if (checkpoint != null) checkpoint.close();
+        removeGauges();
+    }
+
+    // 指标关闭时不注册：仪表引用本对象，注册后会让全局表持有队列和重放缓冲直到移除
+    private void registerGauges() {
+        if (!PipelineMetrics.isEnabled()) return;
+        registerGauge("queue.depth", bufferQueue::size);
+        registerGauge("replay.pendingBytes", replayBuffer::size);
+        registerGauge("replay.lostBytes", replayBuffer::lostBytes);
+        registerGauge("audio.pushedMs", () -> releasedBytes / (double) BYTES_PER_MS);
+        // 实时率：墙钟时间 / 已推送音频时长
+        registerGauge("pipeline.realTimeFactor", () -> {
+            long audioMs = releasedBytes / BYTES_PER_MS;
+            return audioMs == 0 ? 0 : (System.nanoTime() - startNanos) / 1_000_000.0 / audioMs;
+        });
+    }
+
+    private synchronized void registerGauge(String name, DoubleSupplier supplier) {
+        String fullName = metricsName != null ? name + "/" + metricsName : name;
+        gauges.put(fullName, supplier);
+        PipelineMetrics.gauge(fullName, supplier);
+    }
+
+    // 只移除仍属于本对象的仪表，同名仪表已被后启动的 session 替换时保留
+    private synchronized void removeGauges() {
+        for (java.util.Map.Entry<String, DoubleSupplier> e : gauges.entrySet()) {
+            PipelineMetrics.removeGauge(e.getKey(), e.getValue());
+        }
+        gauges.clear();
+    }
+
+    // 记录推送流 position 之前的音频已推送完成的时刻
+    private synchronized void recordPush(long position) {
+        int i = timelineCount++ % TIMELINE_SIZE;
+        timelinePositions[i] = position;
+        timelineNanos[i] = System.nanoTime();
+    }
+
+    // Recognized 结果覆盖到推送流 endBytes，记录从该处音频推送完成到收到结果的延迟
+    private void recordResultLatency(long endBytes) {
+        long pushedAt = pushedAtNanos(endBytes);
+        if (pushedAt != 0) RESULT_LATENCY.recordNanos(System.nanoTime() - pushedAt);
+    }
+
+    // 一句话的第一个 Recognizing 覆盖到推送流 endBytes，记录首个中间结果延迟，AUTO 模式据此调整 chunk 大小
+    private void recordFirstPartialLatency(long endBytes) {
+        long pushedAt = pushedAtNanos(endBytes);
+        if (pushedAt == 0) return;
+        long latency = System.nanoTime() - pushedAt;
+        FIRST_PARTIAL_LATENCY.recordNanos(latency);
+        ChunkTuner tuner = chunkTuner;
+        if (tuner != null) tuner.onFirstPartial(latency / 1_000_000L);
+    }
+
+    // 推送流 position 之前的音频推送完成的时刻，超出时间线范围时返回 0
+    private synchronized long pushedAtNanos(long position) {
+        int n = Math.min(timelineCount, TIMELINE_SIZE);
+        for (int k = n; k >= 1; k--) {
+            // 从最旧的记录往新找第一个覆盖 position 的推送
+            int i = (timelineCount - k) % TIMELINE_SIZE;
+            if (timelinePositions[i] >= position) return timelineNanos[i];
+        }
+        return 0;
+    }
+
+    private void recordRestartGap(long gapNanos) {
+        RESTART_GAP.recordNanos(gapNanos);
+        lastRestartGapNanos = gapNanos;
+        totalRestartGapNanos += gapNanos;
+        if (gapNanos > maxRestartGapNanos) maxRestartGapNanos = gapNanos;
+        restartCount++;
+        Log.i(TAG, "RecognitionThread: restart gap " + gapNanos / 1000 + "us, average " + getAverageRestartGapMicros() + "us over " + restartCount + " restarts");
+    }
+
+    // 推送一段音频，token 失效或 session 异常时转成 SessionRestartException；未推送成功的数据由调用方保留重放
+    private void push(AzureSpeechRecognizer.StreamRecognizer recognizer, byte[] data, int length) throws Exception {
+        ChunkTuner tuner = chunkTuner;
+        long pushStart = tuner != null ? System.nanoTime() : PipelineMetrics.start();
+        try {
+            recognizer.recognizeBuffer(data, length);
+            PUSH_LATENCY.recordSince(pushStart);
+            if (tuner != null && tuner.onPush(length, System.nanoTime() - pushStart)) {
+                bufferQueue.setLimit(tuner.queueChunks());
+            }
+        } catch (AzureSpeechRecognizer.TokenExpiredException e) {
+            RESTART_TOKEN.increment();
+            Log.i(TAG, "Token expired, refreshing token and recreating recognizer...");
+            refreshToken(recognizer.getToken());
+            throw new SessionRestartException("Token expired, restart session");
+        } catch (Exception e) {
+            if ("SessionRestartForStoppedOrCanceled".equals(e.getMessage())) {
+                RESTART_STOPPED.increment();
+            } else {
+                RESTART_ERROR.increment();
+            }
+            Log.e(TAG, "RecognitionThread exception: " + e.getMessage());
+            callback.onResult("Error", "Recognition exception: " + e.getMessage());
+            throw new SessionRestartException("Any exception, restart session");
+        }
+    }
+
+    // token 服务暂时不可用不算致命错误：照常重启 session，新 session 取 token 时会再次重试
+    private void refreshToken(String rejectedToken) {
+        try {
+            tokenManager.forceRefreshToken(rejectedToken);
+        } catch (Exception e) {
+            Log.w(TAG, "Token refresh failed, restarting session anyway: " + e.getMessage());
+        }
+        discardStandby();
+    }
+
+    // session 不是在推送时失败（END_MARKER 前后被取消），按取消原因计数，401 时与推送失败一样先刷新 token
+    private SessionRestartException sessionLost(Session session, String reason) {
+        if (session.sink.tokenRejected) {
+            RESTART_TOKEN.increment();
+            Log.i(TAG, "Token expired, refreshing token and recreating recognizer...");
+            refreshToken(session.recognizer.getToken());
+        } else {
+            RESTART_STOPPED.increment();
+        }
+        return new SessionRestartException(reason);
+    }
+
+    private static final class Session {
+        final AzureSpeechRecognizer.StreamRecognizer recognizer;
+        final SessionSink sink;
+        final long createdAt = System.currentTimeMillis();
+
+        Session(AzureSpeechRecognizer.StreamRecognizer recognizer, SessionSink sink) {
+            this.recognizer = recognizer;
+            this.sink = sink;
+        }
+
+        boolean isUsable() {
+            return recognizer.isAlive() && !sink.dead && System.currentTimeMillis() - createdAt < STANDBY_MAX_AGE_MS;
+        }
+
+        void close() {
+            sink.deactivate();
+            recognizer.close();
+        }
+    }
+
+    /**
+     * 单个 session 的事件出口。备用期间（未激活）不向外回调，只记录 session 是否已失效；
+     * 激活后把 session 内的 offset 换算为原始音频位置，确认 replayBuffer 并丢弃重放重叠区产生的重复结果。
+     */
+    private final class SessionSink implements AzureSpeechRecognizer.ResultCallback {
+        // 本 session 第一个字节在推送流中的位置
+        private volatile long sessionStart;
+        private volatile boolean active;
+        volatile boolean dead;
+        // 当前句子是否已收到过 Recognizing
+        volatile boolean partialSeen;
+        // session 已停止（sessionStopped / canceled），之后不会再有结果
+        private final CountDownLatch ended = new CountDownLatch(1);
+        // 因出错被取消（含初始化失败），而不是正常的 sessionStopped
+        volatile boolean canceled;
+        // 被取消的原因是 401
+        volatile boolean tokenRejected;
+
+        void activate(long sessionStart) {
+            this.sessionStart = sessionStart;
+            this.active = true;
+        }
+
+        void deactivate() {
+            active = false;
+        }
+
+        boolean awaitEnd(long timeoutMs) throws InterruptedException {
+            return ended.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onResult(String type, String text) {
+            onEvent(RecognitionEvent.of(RecognitionEvent.Type.fromLegacy(type), text));
+        }
+
+        @Override
+        public void onEvent(RecognitionEvent event) {
+            if (event.type == RecognitionEvent.Type.TOKEN_EXPIRED) {
+                tokenRejected = true;
+                canceled = true;
+            } else if (event.type == RecognitionEvent.Type.ERROR) {
+                canceled = true;
+            }
+            if (event.isFinal() && event.type != RecognitionEvent.Type.RECOGNIZED) {
+                ended.countDown();
+            }
+            if (!active) {
+                if (event.isFinal() && event.type != RecognitionEvent.Type.RECOGNIZED) {
+                    Log.i(TAG, "Standby session ended before activation: " + event);
+                    dead = true;
+                }
+                return;
+            }
+            if (event.offsetMs < 0) {
+                callback.onEvent(event);
+                return;
+            }
+            long start = sessionStart;
+            if (hasPendingCached && event.type == RecognitionEvent.Type.RECOGNIZING) {
+                // 缓存段之后的新句子开始了，缓存结果先输出
+                releaseCached(start + event.offsetMs * BYTES_PER_MS);
+            }
+            if (event.type == RecognitionEvent.Type.RECOGNIZING && !partialSeen) {
+                partialSeen = true;
+                if (PipelineMetrics.isEnabled() || chunkTuner != null) {
+                    recordFirstPartialLatency(start + (event.offsetMs + event.durationMs) * BYTES_PER_MS);
+                }
+            }
+            if (event.type == RecognitionEvent.Type.RECOGNIZED) {
+                partialSeen = false;
+                long endBytes = start + (event.offsetMs + event.durationMs) * BYTES_PER_MS;
+                synchronized (BufferRecognitionManager.this) {
+                    if (endBytes <= confirmedBytes) {
+                        DUPLICATES.increment();
+                        Log.i(TAG, "Dropping duplicate result from replayed audio: " + event.text);
+                        return;
+                    }
+                    confirmedBytes = endBytes;
+                }
+                if (PipelineMetrics.isEnabled()) recordResultLatency(endBytes);
+            }
+            RecognitionEvent mapped = event.withOffset(toOriginalBytes(start + event.offsetMs * BYTES_PER_MS, false) / BYTES_PER_MS);
+            long originalEndBytes = toOriginalBytes(start + (event.offsetMs + event.durationMs) * BYTES_PER_MS, true);
+            RecognitionCache.Collector collector = cacheCollector;
+            if (collector != null && mapped.type == RecognitionEvent.Type.RECOGNIZED) {
+                collector.onRecognized(mapped);
+            }
+            deliver(mapped, originalEndBytes);
+            if (hasPendingCached && event.type == RecognitionEvent.Type.RECOGNIZED) {
+                releaseCached(start + (event.offsetMs + event.durationMs) * BYTES_PER_MS);
+            }
         }
     }
 
@@ -0,0 +1,26 @@
+package com.yourcompany.speechtotext;
+
+/**
+ * 读取 chunk 大小与队列深度的预设，在 config.json 的 chunkProfile 中按名字选择。
+ *
+ * LOW_LATENCY：32ms 一块，音频尽快送到服务端，适合实时字幕；
+ * BALANCED：128ms × 16，即原先写死的 BUFFER_SIZE 和队列长度；
+ * THROUGHPUT：1 秒一块、更深的队列，减少 pushStream.write 次数，适合批量转写；
+ * AUTO：由 ChunkTuner 在运行时按推送耗时和首个中间结果延迟在 32ms ~ 512ms 之间调整，队列保持约 2 秒音频。
+ */
+public enum ChunkProfile {
+    LOW_LATENCY(1024, 32),
+    BALANCED(4096, 16),
+    THROUGHPUT(32 * 1024, 32),
+    AUTO(4096, 16);
+
+    // 每个 chunk 的字节数（16kHz 单声道 16bit，32 字节 = 1ms）
+    public final int chunkBytes;
+    // 队列中最多的 chunk 数
+    public final int queueChunks;
+
+    ChunkProfile(int chunkBytes, int queueChunks) {
+        this.chunkBytes = chunkBytes;
+        this.queueChunks = queueChunks;
+    }
+}
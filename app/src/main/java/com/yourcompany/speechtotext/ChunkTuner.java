@@ -0,0 +1,101 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+
+/**
+ * ChunkProfile.AUTO 的运行时调节：每推送约 2 秒音频评估一次。
+ *
+ * - 推送耗时占音频时长的比例超过 5%（每次 write 的固定开销太大，推送跟不上）时 chunk 加倍；
+ * - 否则若首个中间结果的平均延迟超过目标、且推送开销低于 1% 时 chunk 减半，让音频更早到达服务端。
+ * 队列深度随 chunk 大小调整，始终缓冲约 2 秒音频。所有方法由 RecognitionThread 与 SDK 回调线程调用。
+ */
+public class ChunkTuner {
+    private static final String TAG = "ChunkTuner";
+    // 16kHz * 16bit * 单声道
+    private static final long BYTES_PER_MS = 32;
+    public static final int MIN_CHUNK_BYTES = 1024;
+    public static final int MAX_CHUNK_BYTES = 16 * 1024;
+    private static final long WINDOW_BYTES = 2000 * BYTES_PER_MS;
+    private static final long QUEUE_BYTES = 2000 * BYTES_PER_MS;
+    private static final double PUSH_COST_HIGH = 0.05;
+    private static final double PUSH_COST_LOW = 0.01;
+    public static final long DEFAULT_TARGET_FIRST_PARTIAL_MS = 600;
+
+    private final long targetFirstPartialMs;
+    private volatile int chunkBytes;
+
+    // 当前评估窗口，受 this 保护
+    private long windowBytes = 0;
+    private long windowPushNanos = 0;
+    private long firstPartialSumMs = 0;
+    private int firstPartialCount = 0;
+
+    public ChunkTuner() {
+        this(ChunkProfile.AUTO.chunkBytes, DEFAULT_TARGET_FIRST_PARTIAL_MS);
+    }
+
+    public ChunkTuner(int initialChunkBytes, long targetFirstPartialMs) {
+        this.chunkBytes = clamp(initialChunkBytes);
+        this.targetFirstPartialMs = targetFirstPartialMs;
+    }
+
+    public int chunkBytes() {
+        return chunkBytes;
+    }
+
+    public int queueChunks() {
+        return queueChunks(chunkBytes);
+    }
+
+    // 最大 chunk 数，即最小 chunk 时的队列深度
+    public static int maxQueueChunks() {
+        return queueChunks(MIN_CHUNK_BYTES);
+    }
+
+    /**
+     * 一次 pushStream.write 完成；返回 true 表示 chunk 大小有变化。
+     */
+    public synchronized boolean onPush(int bytes, long pushNanos) {
+        windowBytes += bytes;
+        windowPushNanos += pushNanos;
+        if (windowBytes < WINDOW_BYTES) return false;
+        return evaluate();
+    }
+
+    /**
+     * 一句话的第一个 Recognizing 到达，latencyMs 为其覆盖的音频推送完成到收到结果的时间。
+     */
+    public synchronized void onFirstPartial(long latencyMs) {
+        firstPartialSumMs += latencyMs;
+        firstPartialCount++;
+    }
+
+    private boolean evaluate() {
+        double pushCost = windowPushNanos / (windowBytes / (double) BYTES_PER_MS * 1_000_000.0);
+        long firstPartialMs = firstPartialCount == 0 ? -1 : firstPartialSumMs / firstPartialCount;
+        int current = chunkBytes;
+        int next = current;
+        if (pushCost > PUSH_COST_HIGH) {
+            next = clamp(current * 2);
+        } else if (firstPartialMs > targetFirstPartialMs && pushCost < PUSH_COST_LOW) {
+            next = clamp(current / 2);
+        }
+        windowBytes = 0;
+        windowPushNanos = 0;
+        firstPartialSumMs = 0;
+        firstPartialCount = 0;
+        if (next == current) return false;
+        chunkBytes = next;
+        Log.i(TAG, String.format(java.util.Locale.US, "chunk %dms -> %dms (push cost %.1f%%, first partial %dms), queue %d chunks",
+                current / BYTES_PER_MS, next / BYTES_PER_MS, pushCost * 100, firstPartialMs, queueChunks(next)));
+        return true;
+    }
+
+    private static int queueChunks(int chunkBytes) {
+        return (int) Math.max(4, QUEUE_BYTES / chunkBytes);
+    }
+
+    private static int clamp(int bytes) {
+        return Math.max(MIN_CHUNK_BYTES, Math.min(MAX_CHUNK_BYTES, bytes));
+    }
+}
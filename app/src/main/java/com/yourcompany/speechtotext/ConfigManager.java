@@ -2,26 +2,68 @@ package com.yourcompany.speechtotext;
 
 import android.content.Context;
 import org.json.JSONObject;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
 public class ConfigManager {
     private static AzureConfig config = null;
 
-    public static AzureConfig loadConfig(Context context) {
+    public static synchronized AzureConfig loadConfig(Context context) {
         if (config != null) return config;
         try {
-            InputStream inputStream = context.getAssets().open("config.json");
-            int size = inputStream.available();
-            byte[] buffer = new byte[size];
-            inputStream.read(buffer);
-            inputStream.close();
-            String jsonStr = new String(buffer, "UTF-8");
+            // available() 只是估计值，单次 read 也可能读不全，循环读到结尾
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (InputStream inputStream = context.getAssets().open("config.json")) {
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = inputStream.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, n);
+                }
+            }
+            String jsonStr = bytes.toString("UTF-8");
             JSONObject json = new JSONObject(jsonStr);
             String subscriptionKey = json.optString("subscriptionKey", null);
             String region = json.optString("region", null);
             String tokenEndpoint = json.optString("tokenEndpoint", null);
             config = new AzureConfig(subscriptionKey, region, tokenEndpoint);
+            // 可选：推流节奏，REALTIME / MULTIPLE / AS_FAST_AS_ACCEPTED
+            config.pacingMode = PushPacer.Mode.valueOf(json.optString("pacingMode", PushPacer.Mode.REALTIME.name()));
+            config.pacingSpeed = json.optDouble("pacingSpeed", config.pacingSpeed);
+            // 可选：大于 1 时对长文件分段并行识别
+            config.parallelSegments = json.optInt("parallelSegments", config.parallelSegments);
+            config.parallelConcurrency = json.optInt("parallelConcurrency", config.parallelConcurrency);
+            // 可选：chunk 大小与队列深度，LOW_LATENCY / BALANCED / THROUGHPUT / AUTO
+            config.chunkProfile = ChunkProfile.valueOf(json.optString("chunkProfile", config.chunkProfile.name()));
+            // 可选：送识别前过滤静音
+            config.vadEnabled = json.optBoolean("vadEnabled", config.vadEnabled);
+            // 可选：用 MediaCodec 边解码边识别，不生成中间 wav
+            config.streamingDecode = json.optBoolean("streamingDecode", config.streamingDecode);
+            // 可选：识别结果投递间隔，0 表示逐条同步投递
+            config.resultIntervalMs = json.optLong("resultIntervalMs", config.resultIntervalMs);
+            // 可选：批量转写目录，设置后识别该目录下所有 wav 文件
+            config.batchDirectory = json.optString("batchDirectory", config.batchDirectory);
+            // 可选：管线指标，启用后按间隔写日志和 metrics.json
+            config.metricsEnabled = json.optBoolean("metricsEnabled", config.metricsEnabled);
+            config.metricsIntervalMs = json.optLong("metricsIntervalMs", config.metricsIntervalMs);
+            // 可选：文件识别的崩溃断点
+            config.checkpointEnabled = json.optBoolean("checkpointEnabled", config.checkpointEnabled);
+            // 可选：按音频内容缓存识别结果，相同的音频只识别一次
+            config.resultCacheEnabled = json.optBoolean("resultCacheEnabled", config.resultCacheEnabled);
+            config.resultCacheDiskMb = json.optInt("resultCacheDiskMb", config.resultCacheDiskMb);
+            // 可选：识别结果写入可按时间段 / 关键词查询的存储
+            config.transcriptStoreEnabled = json.optBoolean("transcriptStoreEnabled", config.transcriptStoreEnabled);
+            // 可选：识别语言，逗号分隔多个时同一路音频同时按每种语言识别
+            String languages = json.optString("languages", null);
+            if (languages != null && !languages.trim().isEmpty()) {
+                config.languages = languages.trim().split("\\s*,\\s*");
+            }
+            // 可选：上传格式，PCM_16K / PCM_8K / MULAW_16K / MULAW_8K，省带宽但降低识别准确率
+            config.uploadFormat = UploadEncoder.Format.valueOf(json.optString("uploadFormat", config.uploadFormat.name()));
+            // 可选：UDP 端口，大于 0 时接收网络 PCM 流，每个发送端一个识别 session
+            config.networkPort = json.optInt("networkPort", config.networkPort);
+            // 可选：识别工作线程名额，每个 session 占 2 个（多语言时每多一种再占 1 个），决定同时运行的 session 数
+            config.maxRecognitionWorkers = json.optInt("maxRecognitionWorkers", config.maxRecognitionWorkers);
             return config;
         } catch (IOException e) {
             throw new RuntimeException("Failed to load config.json: " + e.getMessage());
@@ -34,6 +76,26 @@ public class ConfigManager {
         public final String subscriptionKey;
         public final String region;
         public final String tokenEndpoint;
+        public PushPacer.Mode pacingMode = PushPacer.Mode.REALTIME;
+        public double pacingSpeed = 4.0;
+        public int parallelSegments = 0;
+        public int parallelConcurrency = 4;
+        public ChunkProfile chunkProfile = ChunkProfile.BALANCED;
+        public boolean vadEnabled = false;
+        public boolean streamingDecode = false;
+        public long resultIntervalMs = RecognitionEventDispatcher.DEFAULT_INTERVAL_MS;
+        public String batchDirectory = "";
+        public boolean metricsEnabled = false;
+        public long metricsIntervalMs = 10_000;
+        // 文件识别时保存断点，崩溃重启后从最后确认的结果继续
+        public boolean checkpointEnabled = false;
+        public boolean transcriptStoreEnabled = false;
+        public boolean resultCacheEnabled = false;
+        public int resultCacheDiskMb = 32;
+        public String[] languages = {AzureSpeechRecognizer.DEFAULT_LANGUAGE};
+        public int networkPort = 0;
+        public int maxRecognitionWorkers = RecognitionExecutors.DEFAULT_MAX_WORKERS;
+        public UploadEncoder.Format uploadFormat = UploadEncoder.Format.PCM_16K;
 
         public AzureConfig(String subscriptionKey, String region, String tokenEndpoint) {
             this.subscriptionKey = subscriptionKey;
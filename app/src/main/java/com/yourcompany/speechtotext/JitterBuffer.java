@@ -0,0 +1,197 @@
+package com.yourcompany.speechtotext;
+
+import java.util.Arrays;
+
+/**
+ * 网络 PCM 包的抖动缓冲：按序号把乱序到达的包重排后按顺序输出。
+ *
+ * 按序到达的包立即输出，不额外延迟（识别不需要匀速播放）。中间缺包时后面的包先缓存，
+ * 最多等待 maxDelay：缺的包等到了就按序输出；超时则判定丢失，用同长度（取上一个包的长度）的静音补上，
+ * 保证输出的音频与发送端时间轴对齐，识别结果的 offset 不漂移。迟到（序号已输出过）与重复的包直接丢弃。
+ * 序号跳跃超过缓冲容量的 4 倍时视为发送端重新开始，不再补静音。
+ *
+ * 槽位在构造时一次性分配，稳态无内存分配。非线程安全，由网络接收线程独占使用。
+ */
+public class JitterBuffer {
+
+    public interface Sink {
+        /**
+         * @param arrivalNanos 包到达时间；补静音时为判定丢失的时间
+         */
+        void accept(byte[] data, int off, int len, long arrivalNanos);
+    }
+
+    private final byte[][] slots;
+    // -1 表示空槽
+    private final int[] lengths;
+    private final int[] seqs;
+    private final long[] arrivals;
+    private final int mask;
+    private final long maxDelayNanos;
+    private final byte[] silence;
+
+    private boolean started = false;
+    // 下一个待输出的序号
+    private int next;
+    private int buffered = 0;
+    private int lastLength = 0;
+
+    private long received = 0;
+    private long reordered = 0;
+    private long late = 0;
+    private long duplicates = 0;
+    private long lost = 0;
+    private long oversize = 0;
+
+    /**
+     * @param capacity       最多缓存的包数，向上取整为 2 的幂
+     * @param maxPacketBytes 单个包 PCM 数据的最大字节数，超出的包丢弃
+     * @param maxDelayMs     缺包时最长等待时间
+     */
+    public JitterBuffer(int capacity, int maxPacketBytes, long maxDelayMs) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new byte[size][maxPacketBytes];
+        lengths = new int[size];
+        Arrays.fill(lengths, -1);
+        seqs = new int[size];
+        arrivals = new long[size];
+        mask = size - 1;
+        maxDelayNanos = maxDelayMs * 1_000_000L;
+        silence = new byte[maxPacketBytes];
+    }
+
+    /**
+     * 收到一个包：缓存后输出所有已可按序输出的包。
+     */
+    public void offer(int seq, byte[] data, int off, int len, long nowNanos, Sink sink) {
+        received++;
+        if (len > silence.length) {
+            oversize++;
+            return;
+        }
+        if (!started) {
+            started = true;
+            next = seq;
+        }
+        int distance = seq - next;
+        if (distance < 0) {
+            late++;
+            return;
+        }
+        if (distance >= slots.length * 4) {
+            // 发送端重新开始：已缓存的按序输出，从新序号继续
+            flush(sink);
+            next = seq;
+            distance = 0;
+        }
+        while (distance >= slots.length) {
+            // 超出缓冲范围，最早的位置不再等待
+            skip(nowNanos, sink);
+            distance = seq - next;
+        }
+        int slot = seq & mask;
+        if (lengths[slot] >= 0) {
+            duplicates++;
+            return;
+        }
+        if (distance > 0) reordered++;
+        System.arraycopy(data, off, slots[slot], 0, len);
+        lengths[slot] = len;
+        seqs[slot] = seq;
+        arrivals[slot] = nowNanos;
+        buffered++;
+        emitReady(sink);
+    }
+
+    /**
+     * 定时调用：缺包等待超过 maxDelay 时判定丢失并补静音，继续输出其后的包。
+     */
+    public void poll(long nowNanos, Sink sink) {
+        while (buffered > 0) {
+            long waitingSince = firstBufferedArrival();
+            if (nowNanos - waitingSince < maxDelayNanos) return;
+            skip(nowNanos, sink);
+        }
+    }
+
+    /**
+     * 流结束：已缓存的包按序输出，中间的空缺不再补静音。
+     */
+    public void flush(Sink sink) {
+        while (buffered > 0) {
+            int slot = next & mask;
+            if (lengths[slot] >= 0) {
+                emit(slot, sink);
+            } else {
+                next++;
+            }
+        }
+    }
+
+    // next 之后最早到达（缓存中序号最小）的包的到达时间
+    private long firstBufferedArrival() {
+        for (int i = 1; i < slots.length; i++) {
+            int slot = (next + i) & mask;
+            if (lengths[slot] >= 0) return arrivals[slot];
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // 放弃等待 next：有包就输出，没有就补静音
+    private void skip(long nowNanos, Sink sink) {
+        int slot = next & mask;
+        if (lengths[slot] >= 0) {
+            emit(slot, sink);
+        } else {
+            lost++;
+            if (lastLength > 0) sink.accept(silence, 0, lastLength, nowNanos);
+            next++;
+        }
+        emitReady(sink);
+    }
+
+    private void emitReady(Sink sink) {
+        while (buffered > 0 && lengths[next & mask] >= 0) {
+            emit(next & mask, sink);
+        }
+    }
+
+    private void emit(int slot, Sink sink) {
+        int len = lengths[slot];
+        sink.accept(slots[slot], 0, len, arrivals[slot]);
+        lengths[slot] = -1;
+        buffered--;
+        lastLength = len;
+        next = seqs[slot] + 1;
+    }
+
+    public int buffered() {
+        return buffered;
+    }
+
+    public long receivedPackets() {
+        return received;
+    }
+
+    // 到达时前面有缺口、需要缓存等待的包数（乱序或前面丢包）
+    public long reorderedPackets() {
+        return reordered;
+    }
+
+    public long latePackets() {
+        return late;
+    }
+
+    public long duplicatePackets() {
+        return duplicates;
+    }
+
+    // 判定丢失、以静音补上的包数
+    public long lostPackets() {
+        return lost;
+    }
+
+    public long oversizePackets() {
+        return oversize;
+    }
+}
@@ -7,6 +7,7 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
+import android.view.Choreographer;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.ScrollView;
@@ -14,6 +15,7 @@ import android.view.View;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import java.util.concurrent.CompletableFuture;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -21,31 +23,69 @@ public class MainActivity extends AppCompatActivity {
     private static final String AUDIO_PATH = "/sdcard/Android/data/com.yourcompany.speechtotext/files/output.wav";
 
     private TextView textView;
+    private TextView statusView;
     private Button btnStart;
     private ScrollView scrollView;
     private Handler uiHandler;
+    // 识别结果的持久化存储，未启用时为 null
+    private TranscriptStore transcriptStore;
+    // 当前的识别，重新开始或退出时先停止
+    private volatile RecognitionHandle recognition;
+    // 当前识别的事件分发器，识别停止后关闭，旧识别迟到的事件不会进入新的识别文本
+    private volatile RecognitionEventDispatcher dispatcher;
+    // 各次识别共用，后台刷新线程随 Activity 销毁关闭；受 this 锁保护
+    private AzureTokenManager tokenManager;
+    private boolean destroyed = false;
 
-    // 新增：识别终稿和草稿缓存
-    private final java.util.List<String> recognizedList = new java.util.ArrayList<>();
-    private String recognizingDraft = "";
+    // 识别终稿（只追加）和草稿，仅在主线程访问
+    private final TranscriptModel transcript = new TranscriptModel();
+    // 每个显示帧最多渲染一次
+    private boolean framePending = false;
+    private final Choreographer.FrameCallback renderFrame = frameTimeNanos -> {
+        framePending = false;
+        renderRecognitionText();
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         textView = findViewById(R.id.textView);
+        textView.setText("", TextView.BufferType.EDITABLE);
+        statusView = findViewById(R.id.statusView);
         btnStart = findViewById(R.id.btnStart);
         scrollView = findViewById(R.id.scrollView);
         uiHandler = new Handler(Looper.getMainLooper());
 
-        btnStart.setOnClickListener(v -> {
-            textView.setText("");
-            startRecognition();
-        });
+        btnStart.setOnClickListener(v -> startRecognition());
 
         checkAndRequestPermissions();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        RecognitionHandle current = recognition;
+        if (current != null) current.stop();
+        RecognitionEventDispatcher currentDispatcher = dispatcher;
+        if (currentDispatcher != null) currentDispatcher.close();
+        synchronized (this) {
+            destroyed = true;
+            if (tokenManager != null) tokenManager.shutdown();
+            tokenManager = null;
+        }
+    }
+
+    // 第一次识别时创建 token manager，之后的识别复用它和它缓存的 token
+    private synchronized AzureTokenManager sharedTokenManager(ConfigManager.AzureConfig config) {
+        if (destroyed) throw new IllegalStateException("Activity destroyed");
+        if (tokenManager == null) {
+            tokenManager = new AzureTokenManager(config.subscriptionKey, config.region, config.tokenEndpoint);
+            tokenManager.setTokenCache(new java.io.File(getFilesDir(), "token.cache"));
+        }
+        return tokenManager;
+    }
+
     private void checkAndRequestPermissions() {
         String[] permissions = new String[] {
                 Manifest.permission.READ_EXTERNAL_STORAGE,
@@ -73,97 +113,286 @@ public class MainActivity extends AppCompatActivity {
 
     private void startRecognition() {
         btnStart.setEnabled(false);
-        appendText("开始提取音频...\n");
-        // 清空历史识别内容
-        uiHandler.post(() -> {
-            recognizedList.clear();
-            recognizingDraft = "";
-            textView.setText("");
-        });
+        appendText("正在启动...\n");
         new Thread(() -> {
+            // 各启动阶段并行执行，首条结果到达时输出耗时分解
+            StartupOrchestrator startup = new StartupOrchestrator();
             try {
-                // 1. 读取配置
-                ConfigManager.AzureConfig config = ConfigManager.loadConfig(MainActivity.this);
-                // 2. 提取音频
-                boolean extractOk = AudioExtractorUtil.extractAudio(MainActivity.this, VIDEO_PATH, AUDIO_PATH);
-                if (!extractOk) {
-                    appendText("音频提取失败\n");
-                    enableButton();
-                    return;
+                // 上一次识别先停止，等线程与 SDK 对象释放后再开始
+                RecognitionHandle previous = recognition;
+                if (previous != null) {
+                    previous.stop();
+                    if (!previous.awaitTermination(5, java.util.concurrent.TimeUnit.SECONDS)) {
+                        appendText("上一次识别未能及时停止\n");
+                    }
+                }
+                RecognitionEventDispatcher previousDispatcher = dispatcher;
+                if (previousDispatcher != null) previousDispatcher.close();
+                // 排在旧分发器最后投递的事件之后清空
+                uiHandler.post(() -> {
+                    transcript.clear();
+                    scheduleRender();
+                });
+                // 1. 读取配置，其余阶段都依赖它
+                ConfigManager.AzureConfig config = StartupOrchestrator.join(startup.run("config", () -> ConfigManager.loadConfig(MainActivity.this)));
+                RecognitionExecutors.setMaxWorkers(config.maxRecognitionWorkers);
+                if (config.metricsEnabled) {
+                    PipelineMetrics.setEnabled(true);
+                    PipelineMetrics.Exporter toFile = PipelineMetrics.jsonFileExporter(new java.io.File(getFilesDir(), "metrics.json"));
+                    PipelineMetrics.startExport((text, json) -> {
+                        PipelineMetrics.LOG_EXPORTER.export(text, json);
+                        toFile.export(text, json);
+                    }, config.metricsIntervalMs);
                 }
-                appendText("音频提取完成，开始获取Token...\n");
-                // 3. 获取Token
-                AzureTokenManager tokenManager = new AzureTokenManager(config.subscriptionKey, config.region, config.tokenEndpoint);
-                String token = tokenManager.getValidToken();
+                // 2. 获取 Token 与准备音频并行：优先复用磁盘上仍有效的 token，音频提取（或流式解码）同时开始
+                boolean batchMode = config.batchDirectory != null && !config.batchDirectory.isEmpty();
+                boolean networkMode = config.networkPort > 0 && !batchMode;
+                CompletableFuture<AzureTokenManager> tokenFuture = startup.run("token", () -> {
+                    AzureTokenManager manager = sharedTokenManager(config);
+                    manager.getValidToken();
+                    return manager;
+                });
+                PcmStreamSource streamSource = config.streamingDecode && !batchMode && !networkMode ? new PcmStreamSource() : null;
+                CompletableFuture<Boolean> audioFuture = CompletableFuture.completedFuture(true);
+                if (streamSource != null) {
+                    // 解码到缓冲满后阻塞，等识别开始消费
+                    startup.run("decode", () -> {
+                        if (!AudioExtractorUtil.streamAudio(VIDEO_PATH, streamSource)) {
+                            appendText("音频流式解码失败\n");
+                        }
+                        return null;
+                    });
+                } else if (!batchMode && !networkMode) {
+                    audioFuture = startup.run("extract", () -> AudioExtractorUtil.extractAudio(MainActivity.this, VIDEO_PATH, AUDIO_PATH));
+                }
+                AzureTokenManager tokenManager = StartupOrchestrator.join(tokenFuture);
                 appendText("Token获取成功，开始识别...\n");
-                // 4. 识别音频（使用 BufferRecognitionManager 方案）
-                AzureSpeechRecognizer.ResultCallback callback = (type, text) -> {
-                    Log.i("BufferRecogDemo", type + ": " + text);
-                    if ("Recognizing".equals(type)) {
-                        updateRecognizingDraft(text);
-                    } else if ("Recognized".equals(type)) {
-                        commitRecognized(text);
-                    } else if ("Error".equals(type)) {
-                        appendText("识别异常: " + text + "\n");
-                    } else if ("TokenExpired".equals(type)) {
-                        appendText("Token 失效，已自动刷新并重试\n");
+                // 3. 识别音频（使用 BufferRecognitionManager 方案）
+                // 识别事件经 dispatcher 合并中间结果、攒批后每批只刷新一次界面
+                // 多语言同时识别时每行加上语言标签
+                boolean multiLanguage = config.languages.length > 1;
+                RecognitionEventDispatcher dispatcher = new RecognitionEventDispatcher(events -> uiHandler.post(() -> {
+                    for (RecognitionEvent event : events) {
+                        if (event.isFinal()) Log.i("BufferRecogDemo", event.toString());
+                        String label = multiLanguage && event.language != null ? "[" + event.language + "] " : "";
+                        switch (event.type) {
+                            case RECOGNIZING:
+                                transcript.setDraft(label + event.text);
+                                break;
+                            case RECOGNIZED:
+                                if (!event.text.trim().isEmpty()) {
+                                    transcript.commit(label + event.text.trim());
+                                } else {
+                                    transcript.setDraft("");
+                                }
+                                break;
+                            case ERROR:
+                                appendText("识别异常: " + event.text + "\n");
+                                break;
+                            case TOKEN_EXPIRED:
+                                appendText("Token 失效，已自动刷新并重试\n");
+                                break;
+                            default:
+                                break;
+                        }
+                    }
+                    scheduleRender();
+                }), config.resultIntervalMs);
+                MainActivity.this.dispatcher = dispatcher;
+                AzureSpeechRecognizer.ResultCallback callback = startup.timeResults(AzureSpeechRecognizer.dispatchTo(dispatcher),
+                        report -> appendText("启动耗时: " + report + "\n"));
+                if (config.transcriptStoreEnabled && !batchMode && !networkMode) {
+                    openTranscriptStore();
+                }
+                if (batchMode) {
+                    recognition = startBatch(config, tokenManager, callback);
+                } else if (networkMode) {
+                    recognition = startNetwork(config, tokenManager, callback);
+                } else if (streamSource != null) {
+                    BufferRecognitionManager manager = new BufferRecognitionManager(streamSource, tokenManager, config.region, callback,
+                            new PushPacer(PushPacer.Mode.AS_FAST_AS_ACCEPTED));
+                    manager.setChunkProfile(config.chunkProfile);
+                    manager.setLanguages(config.languages);
+                    manager.setUploadFormat(config.uploadFormat);
+                    if (config.vadEnabled) {
+                        manager.setVoiceActivityFilter(new VoiceActivityFilter());
+                    }
+                    manager.setRecognizedListener(transcriptStore);
+                    recognition = manager.start();
+                    appendText("识别已启动（流式解码）\n");
+                } else if (config.parallelSegments > 1) {
+                    SegmentedRecognitionManager manager = new SegmentedRecognitionManager(AUDIO_PATH, tokenManager, config.region,
+                            config.parallelSegments, config.parallelConcurrency, callback, transcriptStore);
+                    manager.setUploadFormat(config.uploadFormat);
+                    manager.setLanguage(singleLanguage(config));
+                    if (!StartupOrchestrator.join(audioFuture)) {
+                        appendText("音频提取失败\n");
+                        return;
+                    }
+                    recognition = manager.start();
+                    appendText("识别已启动（SegmentedRecognitionManager）\n");
+                } else {
+                    PushPacer pacer = new PushPacer(config.pacingMode, config.pacingSpeed);
+                    BufferRecognitionManager manager = new BufferRecognitionManager(AUDIO_PATH, tokenManager, config.region, callback, pacer);
+                    manager.setChunkProfile(config.chunkProfile);
+                    manager.setLanguages(config.languages);
+                    manager.setUploadFormat(config.uploadFormat);
+                    if (config.vadEnabled) {
+                        manager.setVoiceActivityFilter(new VoiceActivityFilter());
+                    }
+                    manager.setRecognizedListener(transcriptStore);
+                    if (config.resultCacheEnabled) {
+                        manager.setResultCache(new RecognitionCache(new java.io.File(getCacheDir(), "recognition"), 256,
+                                config.resultCacheDiskMb * 1024L * 1024L));
                     }
-                };
-                BufferRecognitionManager manager = new BufferRecognitionManager(AUDIO_PATH, tokenManager, config.region, callback);
-                manager.start();
-                appendText("识别已启动（BufferRecognitionManager）\n");
+                    // 音频提取期间先把第一个 session 建好；提前退出时也由 stop 释放
+                    recognition = manager;
+                    startup.run("warmup", () -> manager.prepare().get());
+                    if (!StartupOrchestrator.join(audioFuture)) {
+                        appendText("音频提取失败\n");
+                        manager.stop();
+                        return;
+                    }
+                    // 断点按文件内容识别，需在提取完成后读取
+                    if (config.checkpointEnabled) {
+                        manager.setCheckpoint(new java.io.File(getFilesDir(), "recognition.checkpoint"));
+                        java.util.List<String> restored = manager.getRestoredTranscript();
+                        if (!restored.isEmpty()) {
+                            uiHandler.post(() -> {
+                                for (String line : restored) transcript.commit(line);
+                                scheduleRender();
+                            });
+                            appendText("已从断点恢复 " + restored.size() + " 条结果\n");
+                        }
+                    }
+                    manager.start();
+                    appendText("识别已启动（BufferRecognitionManager）\n");
+                }
             } catch (Exception e) {
                 appendText("发生异常: " + e.getMessage() + "\n");
             } finally {
+                startup.shutdown();
                 enableButton();
             }
         }).start();
     }
 
-    // recognizing 事件：只更新草稿
-    private void updateRecognizingDraft(String draft) {
-        uiHandler.post(() -> {
-            recognizingDraft = draft;
-            renderRecognitionText();
-        });
+    // 批量转写目录下所有 wav 文件，结果按完成顺序输出，每行前加文件名
+    private RecognitionHandle startBatch(ConfigManager.AzureConfig config, AzureTokenManager tokenManager, AzureSpeechRecognizer.ResultCallback callback) {
+        java.io.File[] files = new java.io.File(config.batchDirectory).listFiles((dir, name) -> name.toLowerCase().endsWith(".wav"));
+        if (files == null || files.length == 0) {
+            appendText("批量目录中没有 wav 文件: " + config.batchDirectory + "\n");
+            return null;
+        }
+        java.util.Arrays.sort(files);
+        BatchTranscriptionScheduler scheduler = new BatchTranscriptionScheduler(tokenManager, config.region, config.parallelConcurrency);
+        scheduler.setUploadFormat(config.uploadFormat);
+        scheduler.setLanguage(singleLanguage(config));
+        int total = files.length;
+        BatchTranscriptionScheduler.JobListener listener = new BatchTranscriptionScheduler.JobListener() {
+            @Override
+            public void onProgress(BatchTranscriptionScheduler.Job job, long pushedBytes, long totalBytes) {
+            }
+
+            @Override
+            public void onResult(BatchTranscriptionScheduler.Job job, RecognitionEvent event) {
+                if (event.type == RecognitionEvent.Type.RECOGNIZED) {
+                    String name = new java.io.File(job.wavPath).getName();
+                    callback.onEvent(new RecognitionEvent(event.type, name + ": " + event.text, event.offsetMs, event.durationMs, event.sessionId));
+                }
+            }
+
+            @Override
+            public void onFinished(BatchTranscriptionScheduler.Job job, boolean success) {
+                int done = scheduler.getCompletedCount() + scheduler.getFailedCount();
+                appendText(String.format(java.util.Locale.US, "批量转写 %d/%d（失败 %d），%.1f 音频小时/小时\n",
+                        done, total, scheduler.getFailedCount(), scheduler.getAudioHoursPerHour()));
+            }
+        };
+        for (java.io.File file : files) {
+            scheduler.submit(file.getAbsolutePath(), listener);
+        }
+        scheduler.shutdown();
+        appendText("批量转写已启动，共 " + total + " 个文件\n");
+        return scheduler;
+    }
+
+    // 分段并行和批量转写只支持一种语言，配置了多种时只用第一种并提示
+    private String singleLanguage(ConfigManager.AzureConfig config) {
+        if (config.languages.length > 1) {
+            Log.w("BufferRecogDemo", "Only one language is supported in segmented / batch mode, using " + config.languages[0]);
+            appendText("分段并行 / 批量转写只支持一种语言，使用 " + config.languages[0] + "\n");
+        }
+        return config.languages[0];
     }
 
-    // recognized 事件：将草稿变为终稿
-    private void commitRecognized(String recognized) {
-        uiHandler.post(() -> {
-            if (!recognized.trim().isEmpty()) {
-                recognizedList.add(recognized.trim());
+    // 接收网络 PCM 流，每个发送端一个 BufferRecognitionManager，结果每行前加发送端地址
+    private NetworkPcmListener startNetwork(ConfigManager.AzureConfig config, AzureTokenManager tokenManager,
+                                            AzureSpeechRecognizer.ResultCallback callback) throws java.io.IOException {
+        NetworkPcmListener listener = new NetworkPcmListener(config.networkPort, stream -> {
+            String name = stream.getName();
+            AzureSpeechRecognizer.ResultCallback streamCallback = new AzureSpeechRecognizer.ResultCallback() {
+                @Override
+                public void onResult(String type, String text) {
+                    callback.onResult(type, name + ": " + text);
+                }
+
+                @Override
+                public void onEvent(RecognitionEvent event) {
+                    callback.onEvent(new RecognitionEvent(event.type, name + ": " + event.text, event.offsetMs,
+                            event.durationMs, event.sessionId, event.language));
+                }
+            };
+            BufferRecognitionManager manager = new BufferRecognitionManager(stream, tokenManager, config.region, streamCallback,
+                    new PushPacer(PushPacer.Mode.AS_FAST_AS_ACCEPTED));
+            manager.setChunkProfile(config.chunkProfile);
+            manager.setLanguages(config.languages);
+            manager.setUploadFormat(config.uploadFormat);
+            manager.setMetricsName(name);
+            if (config.vadEnabled) {
+                manager.setVoiceActivityFilter(new VoiceActivityFilter());
             }
-            recognizingDraft = "";
-            renderRecognitionText();
+            return manager.start();
         });
+        listener.start();
+        appendText("网络识别已启动，UDP 端口 " + listener.getLocalPort() + "\n");
+        return listener;
+    }
+
+    // 每个视频一个存储目录，重复识别同一视频时结果不会重复保存
+    private synchronized void openTranscriptStore() throws java.io.IOException {
+        if (transcriptStore != null) return;
+        java.io.File dir = new java.io.File(getFilesDir(), "transcripts/" + new java.io.File(VIDEO_PATH).getName());
+        transcriptStore = new TranscriptStore(dir);
+        appendText("识别结果存储: " + transcriptStore.size() + " 条历史结果\n");
+    }
+
+    private void scheduleRender() {
+        if (framePending || !transcript.isDirty()) return;
+        framePending = true;
+        Choreographer.getInstance().postFrameCallback(renderFrame);
     }
 
-    // 渲染所有 recognized + 当前草稿
+    // 只把变化部分写入 TextView，滑出窗口的旧行随之删除
     private void renderRecognitionText() {
-        StringBuilder sb = new StringBuilder();
-        for (String line : recognizedList) {
-            sb.append(line).append("\n");
+        CharSequence current = textView.getText();
+        if (!(current instanceof android.text.Editable)) {
+            textView.setText(current, TextView.BufferType.EDITABLE);
         }
-        if (!recognizingDraft.isEmpty()) {
-            sb.append(recognizingDraft);
-        }
-        textView.setText(sb.toString());
+        android.text.Editable editable = (android.text.Editable) textView.getText();
+        transcript.render(editable::replace);
         scrollToBottom();
     }
 
+    // 状态提示单独显示，不混入识别文本
     private void appendText(String text) {
-        uiHandler.post(() -> {
-            textView.append(text);
-            scrollToBottom();
-        });
+        uiHandler.post(() -> statusView.setText(text.trim()));
     }
 
     private void scrollToBottom() {
         if (scrollView != null) {
-            // 先立即滚动，再延迟滚动，确保内容刷新后能滚到底
+            // 等本帧布局完成后再滚动
             scrollView.post(() -> scrollView.fullScroll(View.FOCUS_DOWN));
-            scrollView.postDelayed(() -> scrollView.fullScroll(View.FOCUS_DOWN), 50);
         }
     }
 
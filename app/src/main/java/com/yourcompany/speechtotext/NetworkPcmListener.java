@@ -0,0 +1,432 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 NIO 的 UDP 实时 PCM 接收端：一个选择器线程接收任意多个发送端的 16kHz / 16bit / 单声道 PCM。
+ * 每个发送端地址是一路流（Stream），各自经 JitterBuffer 重排、补静音后写入自己的有界缓冲，
+ * 由 StreamHandler 为每路流启动一个识别（通常是以该 Stream 为 AudioSource 的 BufferRecognitionManager）。
+ *
+ * 包格式：4 字节大端序号 + PCM 数据（小端）。只有序号、没有数据的包表示该流结束；
+ * 超过 idleTimeoutMs 收不到包也视为结束。接收线程从不阻塞：识别端跟不上、缓冲写满时丢弃新到的音频并计数。
+ *
+ * 本对象即所有流的句柄：stop() 立即停止接收与全部识别；drain() 停止接收，各路流已收到的音频识别完再结束。
+ */
+public class NetworkPcmListener implements RecognitionHandle {
+    private static final String TAG = "NetworkPcmListener";
+
+    public static final int HEADER_BYTES = 4;
+    private static final int BYTES_PER_MS = 32;
+    // UDP 单包最大负载
+    private static final int MAX_DATAGRAM = 65507;
+    // 内核接收缓冲：接收线程一时没被调度时吸收突发，避免在内核中丢包
+    private static final int RECEIVE_BUFFER_BYTES = 2 * 1024 * 1024;
+    // 缺包超时、空闲超时的检查间隔
+    private static final long TICK_MS = 10;
+    private static final PipelineMetrics.Histogram INGEST_LATENCY = PipelineMetrics.histogram("net.ingestLatency");
+    private static final PipelineMetrics.Counter DROPPED_BYTES = PipelineMetrics.counter("net.droppedBytes");
+    private static final PipelineMetrics.Counter LOST_PACKETS = PipelineMetrics.counter("net.lostPackets");
+
+    public interface StreamHandler {
+        /**
+         * 新的一路流到达时在接收线程上调用，不能阻塞；返回该流的识别句柄。
+         * 返回 null 或抛出异常（如线程池名额已满）时拒绝这路流，之后来自该地址的包在空闲超时前都被忽略。
+         */
+        RecognitionHandle onStream(Stream stream) throws Exception;
+    }
+
+    private final int port;
+    private final StreamHandler handler;
+    private int jitterPackets = 64;
+    private int maxPacketBytes = 4096;
+    private long jitterDelayMs = 60;
+    private long idleTimeoutMs = 3000;
+    private int bufferMs = 10_000;
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile boolean draining = false;
+    // 仅接收线程访问
+    private final Map<SocketAddress, Stream> streams = new HashMap<>();
+    // 各路流的识别句柄，受自身锁保护；已结束的在 tick 中移除
+    private final List<RecognitionHandle> handles = new ArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile int activeStreams = 0;
+    private volatile long totalStreams = 0;
+    private volatile long rejectedStreams = 0;
+
+    /**
+     * @param port 监听端口，0 表示由系统分配（用 getLocalPort() 取得）
+     */
+    public NetworkPcmListener(int port, StreamHandler handler) {
+        this.port = port;
+        this.handler = handler;
+    }
+
+    /**
+     * 在 start 之前设置抖动缓冲：最多缓存的包数、单包最大字节数、缺包最长等待时间。
+     */
+    public void setJitterBuffer(int packets, int maxPacketBytes, long delayMs) {
+        this.jitterPackets = packets;
+        this.maxPacketBytes = maxPacketBytes;
+        this.jitterDelayMs = delayMs;
+    }
+
+    public void setIdleTimeoutMs(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    // 每路流等待识别端读取的缓冲时长
+    public void setBufferMs(int bufferMs) {
+        this.bufferMs = bufferMs;
+    }
+
+    /**
+     * 绑定端口并启动接收线程。
+     */
+    public synchronized NetworkPcmListener start() throws IOException {
+        if (thread != null) throw new IllegalStateException("NetworkPcmListener can only be started once");
+        selector = Selector.open();
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(java.net.StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER_BYTES);
+        channel.bind(new InetSocketAddress(port));
+        channel.register(selector, SelectionKey.OP_READ);
+        running = true;
+        thread = new Thread(this::receiveLoop, "NetworkPcmListener");
+        thread.setDaemon(true);
+        thread.start();
+        Log.i(TAG, "Listening on UDP port " + getLocalPort());
+        return this;
+    }
+
+    // 未启动或已关闭时返回 -1
+    public int getLocalPort() {
+        DatagramChannel ch = channel;
+        if (ch == null) return -1;
+        try {
+            return ((InetSocketAddress) ch.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public int getActiveStreams() {
+        return activeStreams;
+    }
+
+    public long getTotalStreams() {
+        return totalStreams;
+    }
+
+    public long getRejectedStreams() {
+        return rejectedStreams;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread == null) {
+            // 没有启动过
+            stopped.countDown();
+            return;
+        }
+        selector.wakeup();
+    }
+
+    @Override
+    public void drain() {
+        draining = true;
+        stop();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!stopped.await(timeout, unit)) return false;
+        List<RecognitionHandle> current;
+        synchronized (handles) {
+            current = new ArrayList<>(handles);
+        }
+        for (RecognitionHandle handle : current) {
+            if (!handle.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        if (stopped.getCount() != 0) return false;
+        synchronized (handles) {
+            for (RecognitionHandle handle : handles) {
+                if (!handle.isTerminated()) return false;
+            }
+        }
+        return true;
+    }
+
+    private void receiveLoop() {
+        ByteBuffer packet = ByteBuffer.allocateDirect(MAX_DATAGRAM).order(ByteOrder.BIG_ENDIAN);
+        byte[] payload = new byte[MAX_DATAGRAM];
+        long lastTick = System.nanoTime();
+        try {
+            while (running) {
+                selector.select(TICK_MS);
+                selector.selectedKeys().clear();
+                while (true) {
+                    packet.clear();
+                    SocketAddress from = channel.receive(packet);
+                    if (from == null) break;
+                    packet.flip();
+                    if (packet.remaining() < HEADER_BYTES) continue;
+                    int seq = packet.getInt();
+                    int len = packet.remaining();
+                    packet.get(payload, 0, len);
+                    onPacket(from, seq, payload, len & ~1, System.nanoTime());
+                }
+                long now = System.nanoTime();
+                if (now - lastTick >= TICK_MS * 1_000_000L) {
+                    lastTick = now;
+                    tick(now);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Receive loop exception: " + e.getMessage());
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void onPacket(SocketAddress from, int seq, byte[] data, int len, long now) {
+        Stream stream = streams.get(from);
+        if (stream == null) {
+            stream = openStream(from);
+            if (stream == null) return;
+        }
+        stream.lastPacketNanos = now;
+        if (stream.rejected || stream.ended) return;
+        if (len == 0) {
+            Log.i(TAG, "Stream " + stream.name + " finished by sender");
+            endStream(stream);
+            return;
+        }
+        stream.jitter.offer(seq, data, 0, len, now, stream);
+    }
+
+    private Stream openStream(SocketAddress from) {
+        Stream stream = new Stream(from, new JitterBuffer(jitterPackets, maxPacketBytes, jitterDelayMs),
+                new PcmStreamSource(bufferMs * BYTES_PER_MS));
+        streams.put(from, stream);
+        totalStreams++;
+        RecognitionHandle handle = null;
+        try {
+            handle = handler.onStream(stream);
+        } catch (Exception e) {
+            Log.w(TAG, "Stream " + stream.name + " rejected: " + e.getMessage());
+        }
+        if (handle == null) {
+            stream.rejected = true;
+            stream.buffer.close();
+            rejectedStreams++;
+            return stream;
+        }
+        synchronized (handles) {
+            handles.add(handle);
+        }
+        activeStreams++;
+        Log.i(TAG, "Stream " + stream.name + " opened, active streams: " + activeStreams);
+        return stream;
+    }
+
+    // 输出到期的缺包补静音；空闲超时的流结束并移除，被拒绝的流移除后同一地址可以重新建立
+    private void tick(long now) {
+        long idleNanos = idleTimeoutMs * 1_000_000L;
+        Iterator<Stream> it = streams.values().iterator();
+        while (it.hasNext()) {
+            Stream stream = it.next();
+            if (!stream.rejected && !stream.ended) {
+                stream.jitter.poll(now, stream);
+            }
+            if (now - stream.lastPacketNanos >= idleNanos) {
+                if (!stream.rejected && !stream.ended) {
+                    Log.i(TAG, "Stream " + stream.name + " idle for " + idleTimeoutMs + "ms, finishing");
+                    endStream(stream);
+                }
+                it.remove();
+            }
+        }
+        synchronized (handles) {
+            handles.removeIf(RecognitionHandle::isTerminated);
+        }
+    }
+
+    private void endStream(Stream stream) {
+        stream.jitter.flush(stream);
+        stream.ended = true;
+        stream.buffer.finish();
+        activeStreams--;
+        Log.i(TAG, "Stream " + stream.name + " ended: " + stream.summary());
+    }
+
+    private void shutdown() {
+        for (Stream stream : streams.values()) {
+            if (!stream.rejected && !stream.ended) endStream(stream);
+        }
+        streams.clear();
+        if (!draining) {
+            synchronized (handles) {
+                for (RecognitionHandle handle : handles) handle.stop();
+            }
+        }
+        try {
+            channel.close();
+            selector.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close channel: " + e.getMessage());
+        }
+        Log.i(TAG, "Stopped, streams: " + totalStreams + ", rejected: " + rejectedStreams);
+        stopped.countDown();
+    }
+
+    /**
+     * 一路网络流，作为 AudioSource 交给识别端读取；读取时统计每个包从到达接收端到被识别端读走的延迟。
+     */
+    public static final class Stream implements AudioSource, JitterBuffer.Sink {
+        // 延迟统计最多跟踪的未读包数，超出时最早的不再统计
+        private static final int MAX_MARKS = 1024;
+
+        private final SocketAddress address;
+        private final String name;
+        private final JitterBuffer jitter;
+        private final PcmStreamSource buffer;
+        // 仅接收线程访问
+        private long lastPacketNanos;
+        private boolean rejected = false;
+        private boolean ended = false;
+
+        // 每个已写入包的结束位置与到达时间，识别端读过该位置时计入延迟，受 marks 保护
+        private final long[] markEnd = new long[MAX_MARKS];
+        private final long[] markArrival = new long[MAX_MARKS];
+        private int markHead = 0;
+        private int markCount = 0;
+        private long written = 0;
+        private long read = 0;
+        private long latencyCount = 0;
+        private long latencySumNanos = 0;
+        private long latencyMaxNanos = 0;
+        private volatile long droppedBytes = 0;
+
+        Stream(SocketAddress address, JitterBuffer jitter, PcmStreamSource buffer) {
+            this.address = address;
+            this.name = address.toString();
+            this.jitter = jitter;
+            this.buffer = buffer;
+        }
+
+        public SocketAddress getAddress() {
+            return address;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // 接收线程：抖动缓冲按序输出的音频写入缓冲
+        @Override
+        public void accept(byte[] data, int off, int len, long arrivalNanos) {
+            // 识别端已停止
+            if (buffer.isClosed()) return;
+            int n = buffer.offer(data, off, len);
+            if (n < len) {
+                droppedBytes += len - n;
+                DROPPED_BYTES.add(len - n);
+            }
+            if (n == 0) return;
+            synchronized (markEnd) {
+                written += n;
+                if (markCount == MAX_MARKS) {
+                    markHead = (markHead + 1) % MAX_MARKS;
+                    markCount--;
+                }
+                int i = (markHead + markCount) % MAX_MARKS;
+                markEnd[i] = written;
+                markArrival[i] = arrivalNanos;
+                markCount++;
+            }
+        }
+
+        @Override
+        public int read(byte[] dst, int off, int len) throws InterruptedException {
+            int n = buffer.read(dst, off, len);
+            if (n > 0) {
+                long now = System.nanoTime();
+                synchronized (markEnd) {
+                    read += n;
+                    while (markCount > 0 && markEnd[markHead] <= read) {
+                        long latency = now - markArrival[markHead];
+                        latencyCount++;
+                        latencySumNanos += latency;
+                        if (latency > latencyMaxNanos) latencyMaxNanos = latency;
+                        INGEST_LATENCY.recordNanos(latency);
+                        markHead = (markHead + 1) % MAX_MARKS;
+                        markCount--;
+                    }
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            buffer.close();
+        }
+
+        // 包从到达接收端到被识别端读走的平均延迟（含抖动缓冲等待与攒满一个 chunk 的时间）
+        public double getMeanLatencyMs() {
+            synchronized (markEnd) {
+                return latencyCount == 0 ? 0 : latencySumNanos / 1e6 / latencyCount;
+            }
+        }
+
+        public double getMaxLatencyMs() {
+            synchronized (markEnd) {
+                return latencyMaxNanos / 1e6;
+            }
+        }
+
+        // 缓冲写满而丢弃的字节数
+        public long getDroppedBytes() {
+            return droppedBytes;
+        }
+
+        public JitterBuffer getJitterBuffer() {
+            return jitter;
+        }
+
+        String summary() {
+            LOST_PACKETS.add(jitter.lostPackets());
+            return String.format(java.util.Locale.US,
+                    "packets=%d reordered=%d late=%d duplicate=%d lost=%d droppedBytes=%d latency mean=%.1fms max=%.1fms",
+                    jitter.receivedPackets(), jitter.reorderedPackets(), jitter.latePackets(), jitter.duplicatePackets(),
+                    jitter.lostPackets(), droppedBytes, getMeanLatencyMs(), getMaxLatencyMs());
+        }
+    }
+}
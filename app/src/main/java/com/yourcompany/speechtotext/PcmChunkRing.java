@@ -0,0 +1,340 @@
+package com.yourcompany.speechtotext;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 单生产者的 PCM chunk 环形缓冲区，默认单消费者。
+ * 所有 chunk 在构造时一次性分配，之后在 FileReadThread 与 RecognitionThread 之间循环复用，
+ * 稳态下不再产生任何分配；容量即背压上限，写满时生产者阻塞，效果等同于原先的有界队列。
+ *
+ * 生产者：acquire() -> 填充 chunk.data / chunk.length -> publish()（或 publishEnd()）
+ * 消费者：peek() -> 使用 chunk -> release()；release 之前 chunk 不会被覆盖，
+ * 因此 session 重启时只要不 release，重新 peek 就能重放当前 chunk 以及其后所有未消费的 chunk。
+ *
+ * 广播：addReader() 增加消费者（多语言同时识别），所有消费者按引用读取同一批 chunk，不逐个复制。
+ * 所有消费者都积压到 limit 时生产者照常等待；只有某个消费者比其他消费者落后 limit 个以上时，
+ * 其最早的 chunk 才被复制到它自己的溢出区（约 30 秒音频）后让出 slot，生产者和其他消费者不受影响；溢出区也满时生产者才等它。
+ * 提前退出的消费者须调用 Reader.detach()，否则它的溢出区攒满后生产者会一直等它。
+ */
+public class PcmChunkRing {
+
+    public static final class Chunk {
+        public final byte[] data;
+        public int length;
+        // 替代原 END_MARKER：消费者读到 end chunk 即退出
+        public boolean end;
+        // 不为 null 时表示这段音频命中了结果缓存：不含音频，消费者直接输出这些结果
+        public java.util.List<RecognitionEvent> cachedResults;
+        // 命中缓存的段在原始音频中的起点（毫秒）
+        public long cachedStartMs;
+
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+
+    // 阻塞等待时的最长 park 时间，兜底防止极端情况下丢失唤醒
+    private static final long PARK_NANOS = 1_000_000L;
+    // 广播时每个消费者溢出区的上限：16kHz 单声道约 30 秒
+    private static final int MAX_OVERFLOW_BYTES = 30 * 1000 * 32;
+
+    private final Chunk[] slots;
+    private final int mask;
+    // 生效的容量上限（不超过 slots.length），可在运行时调整队列深度
+    private volatile int limit;
+
+    // head 仅由生产者写
+    private volatile long head = 0;
+    private volatile Thread waitingProducer;
+    // close() 之后阻塞中的 acquire / peek 立即返回
+    private volatile boolean closed = false;
+
+    // peek() / release() 使用的默认消费者；addReader 之后进入广播模式
+    private final Reader primary = new Reader();
+    private volatile Reader[] readers = {primary};
+
+    /**
+     * @param capacity  chunk 个数，向上取整为 2 的幂
+     * @param chunkSize 每个 chunk 的字节数
+     */
+    public PcmChunkRing(int capacity, int chunkSize) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new Chunk[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Chunk(chunkSize);
+        }
+        mask = size - 1;
+        limit = size;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * 调整队列深度（1 ~ capacity）；调小时已发布的 chunk 不受影响，生产者等消费到新上限以下再继续。
+     */
+    public void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(slots.length, limit));
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+    }
+
+    public int chunkSize() {
+        return slots[0].data.length;
+    }
+
+    // 默认消费者已发布但尚未 release 的 chunk 数
+    public int size() {
+        return primary.size();
+    }
+
+    // 默认消费者
+    public Reader reader() {
+        return primary;
+    }
+
+    /**
+     * 增加一个消费者，从当前位置开始读取；须在生产者开始发布之前调用。
+     * 广播时 capacity 最好大于 limit，给正在使用被溢出 chunk 的慢消费者留出余量。
+     */
+    public synchronized Reader addReader() {
+        Reader reader = new Reader();
+        reader.tail = head;
+        Reader[] current = readers;
+        Reader[] next = java.util.Arrays.copyOf(current, current.length + 1);
+        next[current.length] = reader;
+        readers = next;
+        return reader;
+    }
+
+    /**
+     * 生产者获取下一个空闲 chunk，环满时阻塞。
+     */
+    public Chunk acquire() throws InterruptedException {
+        long h = head;
+        Reader[] rs = readers;
+        if (rs.length == 1) {
+            while (h - primary.tail >= limit) {
+                waitingProducer = Thread.currentThread();
+                if (h - primary.tail >= limit) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                waitingProducer = null;
+                if (Thread.interrupted() || closed) throw new InterruptedException();
+            }
+        } else {
+            while (!makeRoom(rs, h)) {
+                waitingProducer = Thread.currentThread();
+                LockSupport.parkNanos(this, PARK_NANOS);
+                waitingProducer = null;
+                if (Thread.interrupted() || closed) throw new InterruptedException();
+            }
+        }
+        Chunk chunk = slots[(int) (h & mask)];
+        chunk.length = 0;
+        chunk.end = false;
+        chunk.cachedResults = null;
+        return chunk;
+    }
+
+    // 广播：让每个消费者都腾出 slot h。所有消费者都积压到 limit 时和单消费者一样等待，不复制；
+    // 只有其他消费者还有余量时，落后过多的消费者才溢出
+    private boolean makeRoom(Reader[] rs, long h) {
+        boolean anyHungry = false;
+        for (Reader r : rs) {
+            if (!r.detached && r.backlog(h) < limit) {
+                anyHungry = true;
+                break;
+            }
+        }
+        boolean ready = true;
+        for (Reader r : rs) {
+            if (!r.makeRoom(h, anyHungry)) ready = false;
+        }
+        return ready;
+    }
+
+    /**
+     * 发布 acquire() 得到的 chunk，使其对消费者可见。
+     */
+    public void publish() {
+        head = head + 1;
+        Reader[] rs = readers;
+        for (Reader r : rs) {
+            Thread consumer = r.waiting;
+            if (consumer != null) LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * 发布结束标记，消费者 peek 到后应退出。
+     */
+    public void publishEnd() throws InterruptedException {
+        Chunk chunk = acquire();
+        chunk.end = true;
+        publish();
+    }
+
+    /**
+     * 默认消费者查看当前待处理的 chunk，环空时阻塞；重复调用返回同一个 chunk，直到 release()。
+     */
+    public Chunk peek() throws InterruptedException {
+        return primary.peek();
+    }
+
+    /**
+     * 默认消费者处理完当前 chunk 后归还给池。
+     */
+    public void release() {
+        primary.release();
+    }
+
+    /**
+     * 停止时调用：唤醒生产者和所有消费者，之后需要等待的 acquire / peek 抛出 InterruptedException，不依赖线程中断。
+     */
+    public void close() {
+        closed = true;
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+        for (Reader r : readers) {
+            Thread consumer = r.waiting;
+            if (consumer != null) LockSupport.unpark(consumer);
+        }
+    }
+
+    private void wakeProducer() {
+        Thread producer = waitingProducer;
+        if (producer != null) LockSupport.unpark(producer);
+    }
+
+    /**
+     * 一个消费者的读取位置，接口与 peek() / release() 相同，只能由单个线程使用。
+     */
+    public final class Reader {
+        // 仅由消费者写（广播模式下溢出时由生产者在锁内推进）
+        private volatile long tail = 0;
+        private volatile Thread waiting;
+        // 以下仅广播模式使用，受 this 保护
+        // 从环中溢出的 chunk 副本，早于 tail，先于环中的 chunk 读取
+        private final ArrayDeque<Chunk> overflow = new ArrayDeque<>();
+        private final ArrayDeque<Chunk> spare = new ArrayDeque<>();
+        private int overflowBytes = 0;
+        // 消费者最近一次 peek 得到的环中位置，下次 peek / release 之前该 slot 不能被覆盖；-1 表示没有
+        private long pinned = -1;
+        // detach() 之后生产者不再为它保留 chunk
+        private volatile boolean detached = false;
+
+        private Reader() {}
+
+        /**
+         * 广播模式下消费者提前退出时调用：丢弃溢出区，之后生产者和其他消费者不再等它。调用后不能再 peek。
+         */
+        public void detach() {
+            synchronized (this) {
+                detached = true;
+                overflow.clear();
+                spare.clear();
+                overflowBytes = 0;
+                pinned = -1;
+            }
+            wakeProducer();
+        }
+
+        public int size() {
+            if (readers.length == 1) return (int) (head - tail);
+            synchronized (this) {
+                return overflow.size() + (int) (head - tail);
+            }
+        }
+
+        public Chunk peek() throws InterruptedException {
+            if (readers.length == 1) {
+                long t = tail;
+                while (head == t) {
+                    waiting = Thread.currentThread();
+                    if (head == t) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    waiting = null;
+                    if (Thread.interrupted() || closed) throw new InterruptedException();
+                }
+                return slots[(int) (t & mask)];
+            }
+            while (true) {
+                synchronized (this) {
+                    boolean wasPinned = pinned >= 0;
+                    Chunk spilled = overflow.peekFirst();
+                    if (spilled != null) {
+                        pinned = -1;
+                        if (wasPinned) wakeProducer();
+                        return spilled;
+                    }
+                    if (head != tail) {
+                        pinned = tail;
+                        return slots[(int) (tail & mask)];
+                    }
+                    pinned = -1;
+                    if (wasPinned) wakeProducer();
+                }
+                waiting = Thread.currentThread();
+                if (head == tail) {
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                }
+                waiting = null;
+                if (Thread.interrupted() || closed) throw new InterruptedException();
+            }
+        }
+
+        public void release() {
+            if (readers.length == 1) {
+                tail = tail + 1;
+            } else {
+                synchronized (this) {
+                    // 当前 chunk 若已被溢出，它就是溢出区的第一个
+                    Chunk spilled = overflow.pollFirst();
+                    if (spilled != null) {
+                        overflowBytes -= spilled.data.length;
+                        spare.push(spilled);
+                    } else {
+                        tail = tail + 1;
+                    }
+                    pinned = -1;
+                }
+            }
+            wakeProducer();
+        }
+
+        // 含溢出区在内尚未消费的 chunk 数
+        private synchronized long backlog(long h) {
+            return overflow.size() + h - tail;
+        }
+
+        // 生产者调用：保证 slot h 可以写入。spill 时落后 limit 个以上的 chunk 复制到溢出区；
+        // 仍落后、溢出区满或 slot 仍被使用时返回 false
+        private synchronized boolean makeRoom(long h, boolean spill) {
+            if (detached) return true;
+            if (!spill) return h - tail < limit && (pinned < 0 || h - pinned < slots.length);
+            while (h - tail >= limit) {
+                if (overflowBytes + chunkSize() > MAX_OVERFLOW_BYTES) return false;
+                Chunk src = slots[(int) (tail & mask)];
+                Chunk copy = spare.isEmpty() ? new Chunk(chunkSize()) : spare.pop();
+                System.arraycopy(src.data, 0, copy.data, 0, src.length);
+                copy.length = src.length;
+                copy.end = src.end;
+                copy.cachedResults = src.cachedResults;
+                copy.cachedStartMs = src.cachedStartMs;
+                overflow.addLast(copy);
+                overflowBytes += copy.data.length;
+                tail = tail + 1;
+            }
+            // 被溢出的 chunk 消费者可能还在读，它下次 peek / release 之前不覆盖这个 slot
+            return pinned < 0 || h - pinned < slots.length;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.yourcompany.speechtotext;
+
+/**
+ * 纯 Java 的流式下混 + 重采样，把任意采样率 / 声道数的 16bit PCM 转成 16kHz 单声道。
+ *
+ * 多声道取平均下混；采样率不同时用加窗 sinc（Blackman 窗）插值，降采样时按比例收窄截止频率做抗混叠。
+ * 输出位置用整数比例计算（n * inRate / 16000），长时间运行不会累积误差。非线程安全。
+ */
+public class PcmResampler {
+    public static final int TARGET_RATE = 16000;
+
+    // 插值核每侧的过零点数
+    private static final int ZERO_CROSSINGS = 8;
+    // 核函数查表精度：每个输入样本间隔的采样点数
+    private static final int TABLE_RESOLUTION = 256;
+
+    private final int inputRate;
+    private final int channels;
+    private final boolean passthrough;
+    private final double cutoff;
+    private final int halfWidth;
+    private final float[] kernel;
+
+    // 下混后的输入历史，history[0] 对应绝对样本号 historyStart
+    private float[] history = new float[4096];
+    private int historyLength = 0;
+    private long historyStart = 0;
+    private long inputCount = 0;
+    // 下一个输出样本序号
+    private long outputIndex = 0;
+    // 跨调用残留的不完整帧（字节）
+    private final byte[] partialFrame;
+    private int partialLength = 0;
+
+    public PcmResampler(int inputRate, int channels) {
+        if (inputRate <= 0 || channels <= 0) {
+            throw new IllegalArgumentException("Invalid PCM format: " + inputRate + "Hz/" + channels + "ch");
+        }
+        this.inputRate = inputRate;
+        this.channels = channels;
+        this.passthrough = inputRate == TARGET_RATE;
+        double step = (double) inputRate / TARGET_RATE;
+        this.cutoff = Math.min(1.0, 1.0 / step) * 0.95;
+        this.halfWidth = (int) Math.ceil(ZERO_CROSSINGS / cutoff);
+        this.kernel = passthrough ? null : buildKernel(halfWidth, cutoff);
+        this.partialFrame = new byte[channels * 2];
+    }
+
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    private static float[] buildKernel(int halfWidth, double cutoff) {
+        float[] table = new float[halfWidth * TABLE_RESOLUTION + 1];
+        for (int i = 0; i < table.length; i++) {
+            double d = (double) i / TABLE_RESOLUTION;
+            double x = Math.PI * cutoff * d;
+            double sinc = d == 0 ? 1.0 : Math.sin(x) / x;
+            double w = 0.42 + 0.5 * Math.cos(Math.PI * d / halfWidth) + 0.08 * Math.cos(2 * Math.PI * d / halfWidth);
+            table[i] = (float) (cutoff * sinc * w);
+        }
+        return table;
+    }
+
+    /**
+     * 单次 process 最多输出的字节数。
+     */
+    public int maxOutput(int inputBytes) {
+        long frames = (inputBytes + partialFrame.length) / (channels * 2) + 1;
+        return (int) (frames * TARGET_RATE / inputRate + 2) * 2;
+    }
+
+    /**
+     * 转换一段交错的 16bit 小端 PCM，结果写入 out，返回写入字节数。
+     */
+    public int process(byte[] in, int off, int len, byte[] out) {
+        int frameBytes = channels * 2;
+        int written = 0;
+        int end = off + len;
+        // 先补齐上次残留的不完整帧
+        if (partialLength > 0) {
+            int n = Math.min(frameBytes - partialLength, len);
+            System.arraycopy(in, off, partialFrame, partialLength, n);
+            partialLength += n;
+            off += n;
+            if (partialLength < frameBytes) return 0;
+            written += accept(downmix(partialFrame, 0), out, written);
+            partialLength = 0;
+        }
+        for (; off + frameBytes <= end; off += frameBytes) {
+            written += accept(downmix(in, off), out, written);
+        }
+        if (off < end) {
+            partialLength = end - off;
+            System.arraycopy(in, off, partialFrame, 0, partialLength);
+        }
+        return written;
+    }
+
+    /**
+     * 输入结束时调用，用静音补齐插值窗口，输出剩余样本。
+     */
+    public int flush(byte[] out) {
+        partialLength = 0;
+        if (passthrough) return 0;
+        long realInput = inputCount;
+        long total = (realInput * TARGET_RATE + inputRate - 1) / inputRate;
+        int written = 0;
+        while (outputIndex < total && written + 2 <= out.length) {
+            appendHistory(0f);
+            while (outputIndex < total) {
+                long num = outputIndex * inputRate;
+                long center = num / TARGET_RATE;
+                if (center + halfWidth >= inputCount) break;
+                writeSample(interpolate(center, (double) (num % TARGET_RATE) / TARGET_RATE), out, written);
+                written += 2;
+                outputIndex++;
+            }
+        }
+        return written;
+    }
+
+    private float downmix(byte[] pcm, int off) {
+        int sum = 0;
+        for (int c = 0; c < channels; c++) {
+            int i = off + c * 2;
+            sum += (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+        }
+        return (float) sum / channels;
+    }
+
+    // 接收一个下混后的样本，输出所有已具备完整插值窗口的样本
+    private int accept(float sample, byte[] out, int outOff) {
+        if (passthrough) {
+            writeSample(sample, out, outOff);
+            return 2;
+        }
+        appendHistory(sample);
+        int written = 0;
+        while (true) {
+            long num = outputIndex * inputRate;
+            long center = num / TARGET_RATE;
+            if (center + halfWidth >= inputCount) break;
+            double frac = (double) (num % TARGET_RATE) / TARGET_RATE;
+            writeSample(interpolate(center, frac), out, outOff + written);
+            written += 2;
+            outputIndex++;
+        }
+        return written;
+    }
+
+    private void appendHistory(float sample) {
+        if (historyLength == history.length) {
+            // 丢弃插值窗口之前的历史样本
+            long keepFrom = outputIndex * inputRate / TARGET_RATE - halfWidth;
+            int drop = (int) Math.max(0, Math.min(historyLength, keepFrom - historyStart));
+            if (drop > 0) {
+                System.arraycopy(history, drop, history, 0, historyLength - drop);
+                historyLength -= drop;
+                historyStart += drop;
+            }
+            if (historyLength == history.length) {
+                history = java.util.Arrays.copyOf(history, history.length * 2);
+            }
+        }
+        history[historyLength++] = sample;
+        inputCount++;
+    }
+
+    private float interpolate(long center, double frac) {
+        double acc = 0;
+        for (int k = -halfWidth + 1; k <= halfWidth; k++) {
+            long idx = center + k;
+            if (idx < historyStart) continue;
+            double d = Math.abs(k - frac);
+            int t = (int) (d * TABLE_RESOLUTION + 0.5);
+            if (t >= kernel.length) continue;
+            acc += history[(int) (idx - historyStart)] * kernel[t];
+        }
+        return (float) acc;
+    }
+
+    private static void writeSample(float value, byte[] out, int off) {
+        int s = Math.round(value);
+        if (s > Short.MAX_VALUE) s = Short.MAX_VALUE;
+        else if (s < Short.MIN_VALUE) s = Short.MIN_VALUE;
+        out[off] = (byte) s;
+        out[off + 1] = (byte) (s >> 8);
+    }
+}
@@ -0,0 +1,202 @@
+package com.yourcompany.speechtotext;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内的流式音频源：解码线程边解码边 write，BufferRecognitionManager 边 read 边送识别，
+ * 不再需要先完整写出中间 WAV 文件再从磁盘读回来。
+ *
+ * write 接受任意采样率 / 声道数的 16bit 小端 PCM，经 PcmResampler 转为 16kHz 单声道后放入有界缓冲；
+ * 缓冲满时 write 阻塞，形成对解码端的背压。输入结束后调用 finish()，read 读完剩余数据后返回 -1。
+ * 识别端提前停止时调用 close()，之后 write 直接丢弃数据不再阻塞，解码端据 isClosed() 提前结束。
+ * 不能阻塞的写入端（网络接收线程）用 offer 写入已是 16kHz 单声道的数据，缓冲满时丢弃写不下的部分。
+ */
+public class PcmStreamSource implements AudioSource {
+    // 缓冲 2 秒 16kHz 单声道音频
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final byte[] ring;
+    private long head = 0; // 已写入总字节数
+    private long tail = 0; // 已读出总字节数
+    private boolean finished = false;
+    private volatile boolean closed = false;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    // 仅写线程使用
+    private PcmResampler resampler;
+    private byte[] converted = new byte[0];
+    private final long openedAtNanos = System.nanoTime();
+    private volatile long firstDataNanos = 0;
+
+    public PcmStreamSource() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PcmStreamSource(int capacity) {
+        ring = new byte[capacity];
+    }
+
+    /**
+     * 设置（或在解码器报告格式变化时更新）输入格式。
+     */
+    public void setInputFormat(int sampleRate, int channels) {
+        PcmResampler current = resampler;
+        if (current != null && current.getInputRate() == sampleRate && current.getChannels() == channels) return;
+        if (current != null) {
+            // 旧格式插值窗口内的尾巴先输出
+            byte[] tailOut = ensureConverted(current.maxOutput(0) + 4096);
+            int n = current.flush(tailOut);
+            if (n > 0) {
+                try {
+                    put(tailOut, 0, n);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        resampler = new PcmResampler(sampleRate, channels);
+    }
+
+    /**
+     * 写入交错的 16bit 小端 PCM；必须先调用 setInputFormat。缓冲满时阻塞。
+     */
+    public void write(byte[] pcm, int off, int len) throws InterruptedException {
+        if (resampler == null) throw new IllegalStateException("Input format not set");
+        byte[] out = ensureConverted(resampler.maxOutput(len));
+        int n = resampler.process(pcm, off, len, out);
+        put(out, 0, n);
+    }
+
+    /**
+     * 非阻塞写入已是 16kHz 单声道的 PCM，不经过重采样；返回实际写入的字节数，缓冲满时其余部分丢弃。
+     * 不能与 write 混用。
+     */
+    public int offer(byte[] pcm, int off, int len) {
+        if (len <= 0) return 0;
+        lock.lock();
+        try {
+            if (closed) return 0;
+            int n = (int) Math.min(len, ring.length - (head - tail));
+            if (n <= 0) return 0;
+            if (firstDataNanos == 0) firstDataNanos = System.nanoTime();
+            int pos = (int) (head % ring.length);
+            int first = Math.min(n, ring.length - pos);
+            System.arraycopy(pcm, off, ring, pos, first);
+            System.arraycopy(pcm, off + first, ring, 0, n - first);
+            head += n;
+            notEmpty.signal();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 输入结束。
+     */
+    public void finish() {
+        if (resampler != null) {
+            byte[] out = ensureConverted(resampler.maxOutput(0) + 4096);
+            int n = resampler.flush(out);
+            try {
+                put(out, 0, n);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            finished = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 读取端不再读取：唤醒阻塞的读写两端，之后 read 返回 -1，write 丢弃数据。
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 读取 16kHz 单声道 PCM，尽量读满 len 字节；输入结束且已读完时返回 -1。
+     */
+    @Override
+    public int read(byte[] dst, int off, int len) throws InterruptedException {
+        int total = 0;
+        lock.lock();
+        try {
+            while (total < len && !closed) {
+                while (head == tail && !finished && !closed) {
+                    notEmpty.await();
+                }
+                if (head == tail || closed) break;
+                int n = (int) Math.min(len - total, head - tail);
+                int pos = (int) (tail % ring.length);
+                int first = Math.min(n, ring.length - pos);
+                System.arraycopy(ring, pos, dst, off + total, first);
+                System.arraycopy(ring, 0, dst, off + total + first, n - first);
+                tail += n;
+                total += n;
+                notFull.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return total == 0 && len > 0 ? -1 : total;
+    }
+
+    // 从创建到第一批 16kHz 数据可读的耗时，用于衡量识别启动延迟
+    public long getTimeToFirstDataMs() {
+        long first = firstDataNanos;
+        return first == 0 ? -1 : (first - openedAtNanos) / 1_000_000L;
+    }
+
+    private void put(byte[] data, int off, int len) throws InterruptedException {
+        if (len <= 0) return;
+        if (firstDataNanos == 0) firstDataNanos = System.nanoTime();
+        lock.lock();
+        try {
+            while (len > 0 && !closed) {
+                while (head - tail == ring.length && !closed) {
+                    notFull.await();
+                }
+                if (closed) break;
+                int n = (int) Math.min(len, ring.length - (head - tail));
+                int pos = (int) (head % ring.length);
+                int first = Math.min(n, ring.length - pos);
+                System.arraycopy(data, off, ring, pos, first);
+                System.arraycopy(data, off + first, ring, 0, n - first);
+                head += n;
+                off += n;
+                len -= n;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] ensureConverted(int size) {
+        if (converted.length < size) converted = new byte[size];
+        return converted;
+    }
+}
@@ -0,0 +1,315 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 进程内的管线指标：计数器、仪表和延迟直方图，按名字注册，支持可插拔的导出器。
+ *
+ * 默认关闭。关闭时 start() 返回 0，recordSince / increment 看到 0 或 disabled 直接返回，
+ * 热路径上只多一次 volatile 读；仪表（gauge）在导出时才取值，平时不产生任何开销。
+ * 不依赖 Android 之外的组件，可在 JVM 上直接使用。
+ */
+public final class PipelineMetrics {
+    private static final String TAG = "PipelineMetrics";
+
+    private static volatile boolean enabled = false;
+
+    private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService exportExecutor;
+    private static ScheduledFuture<?> exportTask;
+
+    private PipelineMetrics() {}
+
+    /**
+     * 导出器，由导出线程周期性调用。
+     */
+    public interface Exporter {
+        void export(String text, String json);
+    }
+
+    // 默认导出器：按行写日志
+    public static final Exporter LOG_EXPORTER = (text, json) -> {
+        for (String line : text.split("\n")) {
+            Log.i(TAG, line);
+        }
+    };
+
+    // 把 JSON 覆盖写入 file，先写临时文件再改名，读取方不会看到写了一半的内容
+    public static Exporter jsonFileExporter(java.io.File file) {
+        return (text, json) -> {
+            java.io.File tmp = new java.io.File(file.getPath() + ".tmp");
+            try (java.io.FileOutputStream out = new java.io.FileOutputStream(tmp)) {
+                out.write(json.getBytes("UTF-8"));
+            } catch (java.io.IOException e) {
+                Log.e(TAG, "Failed to write metrics to " + file + ": " + e.getMessage());
+                return;
+            }
+            if (!tmp.renameTo(file)) Log.w(TAG, "Failed to replace " + file);
+        };
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    // 计时起点；关闭时返回 0
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static Counter counter(String name) {
+        Counter c = counters.get(name);
+        if (c == null) {
+            Counter created = new Counter();
+            c = counters.putIfAbsent(name, created);
+            if (c == null) c = created;
+        }
+        return c;
+    }
+
+    public static Histogram histogram(String name) {
+        Histogram h = histograms.get(name);
+        if (h == null) {
+            Histogram created = new Histogram();
+            h = histograms.putIfAbsent(name, created);
+            if (h == null) h = created;
+        }
+        return h;
+    }
+
+    /**
+     * 注册（或替换）一个仪表，导出时调用 supplier 取当前值。
+     */
+    public static void gauge(String name, DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public static void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    // 仅当 name 仍对应 supplier 时移除，已被其他对象替换的仪表保留
+    public static void removeGauge(String name, DoubleSupplier supplier) {
+        gauges.remove(name, supplier);
+    }
+
+    /**
+     * 周期性导出，替换之前的导出任务。
+     */
+    public static synchronized void startExport(Exporter exporter, long intervalMs) {
+        if (exportExecutor == null) {
+            exportExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "MetricsExportThread");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        if (exportTask != null) exportTask.cancel(false);
+        exportTask = exportExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                exporter.export(toText(), toJson());
+            } catch (Exception e) {
+                Log.e(TAG, "Metrics export failed: " + e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopExport() {
+        if (exportTask != null) exportTask.cancel(false);
+        exportTask = null;
+    }
+
+    // 清空所有已注册的指标（仪表除外）
+    public static void reset() {
+        for (Counter c : counters.values()) c.reset();
+        for (Histogram h : histograms.values()) h.reset();
+    }
+
+    public static String toText() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Counter> e : new TreeMap<>(counters).entrySet()) {
+            sb.append("counter ").append(e.getKey()).append(' ').append(e.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> e : new TreeMap<>(gauges).entrySet()) {
+            sb.append("gauge ").append(e.getKey()).append(' ').append(format(gaugeValue(e.getValue()))).append('\n');
+        }
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            Histogram h = e.getValue();
+            sb.append("histogram ").append(e.getKey())
+                    .append(" count=").append(h.count())
+                    .append(" mean=").append(format(h.meanMicros())).append("us")
+                    .append(" p50=").append(format(h.percentileMicros(50))).append("us")
+                    .append(" p90=").append(format(h.percentileMicros(90))).append("us")
+                    .append(" p99=").append(format(h.percentileMicros(99))).append("us")
+                    .append(" max=").append(format(h.maxMicros())).append("us")
+                    .append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static String toJson() {
+        StringBuilder sb = new StringBuilder("{\"counters\":{");
+        boolean first = true;
+        for (Map.Entry<String, Counter> e : new TreeMap<>(counters).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append('"').append(e.getKey()).append("\":").append(e.getValue().get());
+        }
+        sb.append("},\"gauges\":{");
+        first = true;
+        for (Map.Entry<String, DoubleSupplier> e : new TreeMap<>(gauges).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            double v = gaugeValue(e.getValue());
+            sb.append('"').append(e.getKey()).append("\":").append(Double.isNaN(v) || Double.isInfinite(v) ? "null" : format(v));
+        }
+        sb.append("},\"histograms\":{");
+        first = true;
+        for (Map.Entry<String, Histogram> e : new TreeMap<>(histograms).entrySet()) {
+            if (!first) sb.append(',');
+            first = false;
+            Histogram h = e.getValue();
+            sb.append('"').append(e.getKey()).append("\":{")
+                    .append("\"count\":").append(h.count())
+                    .append(",\"meanUs\":").append(format(h.meanMicros()))
+                    .append(",\"p50Us\":").append(format(h.percentileMicros(50)))
+                    .append(",\"p90Us\":").append(format(h.percentileMicros(90)))
+                    .append(",\"p99Us\":").append(format(h.percentileMicros(99)))
+                    .append(",\"maxUs\":").append(format(h.maxMicros()))
+                    .append('}');
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static double gaugeValue(DoubleSupplier supplier) {
+        try {
+            return supplier.getAsDouble();
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String format(double v) {
+        return String.format(Locale.US, "%.3f", v);
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            if (enabled) value.increment();
+        }
+
+        public void add(long n) {
+            if (enabled) value.add(n);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+
+        void reset() {
+            value.reset();
+        }
+    }
+
+    /**
+     * 对数线性分桶的延迟直方图（HDR 风格）：每个 2 的幂区间分 32 个子桶，相对误差约 3%，
+     * 覆盖 1ns 到 long 上限，记录为一次数组原子自增，不分配内存。
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * 记录从 PipelineMetrics.start() 到现在的耗时；startNanos 为 0（指标关闭）时忽略。
+         */
+        public void recordSince(long startNanos) {
+            if (startNanos == 0) return;
+            recordNanos(System.nanoTime() - startNanos);
+        }
+
+        public void recordNanos(long nanos) {
+            if (!enabled) return;
+            if (nanos < 0) nanos = 0;
+            counts.incrementAndGet(bucketIndex(nanos));
+            total.increment();
+            sum.add(nanos);
+            long m;
+            while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+                // 重试
+            }
+        }
+
+        public long count() {
+            return total.sum();
+        }
+
+        public double meanMicros() {
+            long n = total.sum();
+            return n == 0 ? 0 : sum.sum() / 1000.0 / n;
+        }
+
+        public double maxMicros() {
+            return max.get() / 1000.0;
+        }
+
+        public double percentileMicros(double percentile) {
+            long n = total.sum();
+            if (n == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= target) return Math.min(bucketMidpoint(i), max.get()) / 1000.0;
+            }
+            return maxMicros();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+            total.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        static int bucketIndex(long value) {
+            if (value < 2 * SUB_BUCKETS) return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        static long bucketMidpoint(int index) {
+            if (index < 2 * SUB_BUCKETS) return index;
+            int shift = index / SUB_BUCKETS - 1;
+            long lower = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+            return lower + (1L << shift) / 2;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.yourcompany.speechtotext;
+
+/**
+ * 推流节奏控制，替代 RecognitionThread 中固定的 Thread.sleep(10)。
+ *
+ * REALTIME：按音频实际时长推送，模拟实时音频流。
+ * MULTIPLE：按 speed 倍速推送，适合归档文件批量转写。
+ * AS_FAST_AS_ACCEPTED：不限速，只受识别进度约束。
+ *
+ * 识别进度取自 recognized / recognizing 事件的 offset + duration。
+ * 已推送但尚未被识别的音频超过 maxLeadMs 时，退回到 1 倍速推送，直到服务端追上来，
+ * 既不会把服务端压垮，也不会在长时间静音（没有识别事件）时完全停住。
+ */
+public class PushPacer {
+    public enum Mode { REALTIME, MULTIPLE, AS_FAST_AS_ACCEPTED }
+
+    // 16kHz * 16bit * 单声道
+    private static final long BYTES_PER_MS = 32;
+    private static final long DEFAULT_MAX_LEAD_MS = 30_000;
+    // 单次 sleep 上限，避免一次睡过头
+    private static final long MAX_SLEEP_MS = 200;
+
+    private final Mode mode;
+    private final double speed;
+    private final long maxLeadMs;
+
+    private long sessionStartNanos;
+    private long pushedBytes;
+    // 进入限速段（1 倍速）时的基准
+    private long throttleStartNanos;
+    private long throttleStartBytes;
+    private boolean throttled;
+
+    public PushPacer(Mode mode) {
+        this(mode, mode == Mode.REALTIME ? 1.0 : 4.0, DEFAULT_MAX_LEAD_MS);
+    }
+
+    public PushPacer(Mode mode, double speed) {
+        this(mode, speed, DEFAULT_MAX_LEAD_MS);
+    }
+
+    public PushPacer(Mode mode, double speed, long maxLeadMs) {
+        if (speed <= 0) throw new IllegalArgumentException("speed must be positive: " + speed);
+        this.mode = mode;
+        this.speed = mode == Mode.REALTIME ? 1.0 : speed;
+        this.maxLeadMs = maxLeadMs;
+        reset();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    // 相同参数的新实例；节奏状态按推送流区分，同时推送多路时每路各用一个
+    public PushPacer copy() {
+        return new PushPacer(mode, speed, maxLeadMs);
+    }
+
+    /**
+     * 新 session 开始时调用；识别结果的 offset 以 session 起点为 0。
+     */
+    public void reset() {
+        sessionStartNanos = System.nanoTime();
+        pushedBytes = 0;
+        throttled = false;
+    }
+
+    /**
+     * 每次成功推送后调用，必要时阻塞以控制推流速率。
+     * @param bytes            本次推送的字节数
+     * @param recognizedUpToMs 本 session 内已被识别到的音频位置（毫秒）
+     */
+    public void onPushed(int bytes, long recognizedUpToMs) throws InterruptedException {
+        pushedBytes += bytes;
+        long pushedMs = pushedBytes / BYTES_PER_MS;
+        long now = System.nanoTime();
+
+        boolean overLead = mode != Mode.REALTIME && pushedMs - recognizedUpToMs > maxLeadMs;
+        if (overLead && !throttled) {
+            throttled = true;
+            throttleStartNanos = now;
+            throttleStartBytes = pushedBytes;
+        } else if (!overLead && throttled) {
+            // 服务端追上后按目标速率重新计时，不补偿限速期间落下的进度
+            throttled = false;
+            sessionStartNanos = now - (long) (pushedMs / speed * 1_000_000L);
+        }
+
+        long sleepMs;
+        if (throttled) {
+            long aheadMs = (pushedBytes - throttleStartBytes) / BYTES_PER_MS;
+            sleepMs = aheadMs - (now - throttleStartNanos) / 1_000_000L;
+        } else if (mode == Mode.AS_FAST_AS_ACCEPTED) {
+            return;
+        } else {
+            sleepMs = (long) (pushedMs / speed) - (now - sessionStartNanos) / 1_000_000L;
+        }
+        if (sleepMs > 0) {
+            Thread.sleep(Math.min(sleepMs, MAX_SLEEP_MS));
+        }
+    }
+}
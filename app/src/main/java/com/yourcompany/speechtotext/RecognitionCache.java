@@ -0,0 +1,335 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按音频内容寻址的识别结果缓存：同一段 PCM（同一识别语言）只送识别一次，之后直接复用 Recognized 结果。
+ *
+ * 音频由 Segmenter 在静音处切段（5 ~ 30 秒），切点只取决于段内内容，同一文件每次从头读取都得到相同的段；
+ * 段的 key 为段内 PCM 的 SHA-1（边读边更新）加识别语言。结果的 offset 相对段起点保存。
+ * 两级存储：内存中按条数 LRU 淘汰，磁盘上每段一个文件，总大小超过上限时淘汰最久未用的文件。
+ * 命中率等指标通过 PipelineMetrics 导出（cache.*）。
+ */
+public class RecognitionCache {
+    private static final String TAG = "RecognitionCache";
+    private static final int MAGIC = 0x53545252; // "STRR"
+    private static final int VERSION = 1;
+
+    private static final PipelineMetrics.Counter MEMORY_HITS = PipelineMetrics.counter("cache.memoryHits");
+    private static final PipelineMetrics.Counter DISK_HITS = PipelineMetrics.counter("cache.diskHits");
+    private static final PipelineMetrics.Counter MISSES = PipelineMetrics.counter("cache.misses");
+    private static final PipelineMetrics.Counter STORES = PipelineMetrics.counter("cache.stores");
+    private static final PipelineMetrics.Counter EVICTIONS = PipelineMetrics.counter("cache.diskEvictions");
+
+    private final File directory;
+    private final long maxDiskBytes;
+    // 受 this 保护
+    private final LinkedHashMap<String, List<RecognitionEvent>> memory;
+    // 磁盘文件名 -> 大小，按访问顺序
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes = 0;
+
+    private long hits = 0;
+    private long lookups = 0;
+
+    public RecognitionCache(File directory, int maxMemoryEntries, long maxDiskBytes) {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        this.memory = new LinkedHashMap<String, List<RecognitionEvent>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<RecognitionEvent>> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create cache directory " + directory + ", using memory only");
+        }
+        // 按修改时间（上次使用时间）恢复磁盘 LRU 顺序
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".rc"));
+        if (files != null) {
+            Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File f : files) {
+                disk.put(f.getName(), f.length());
+                diskBytes += f.length();
+            }
+        }
+        PipelineMetrics.gauge("cache.hitRate", this::getHitRate);
+    }
+
+    /**
+     * 查找段的识别结果（offset 相对段起点）；未命中返回 null。
+     */
+    public synchronized List<RecognitionEvent> get(String key) {
+        lookups++;
+        List<RecognitionEvent> results = memory.get(key);
+        if (results != null) {
+            hits++;
+            MEMORY_HITS.increment();
+            return results;
+        }
+        String name = fileName(key);
+        if (disk.get(name) != null) {
+            File file = new File(directory, name);
+            try {
+                results = read(file);
+                memory.put(key, results);
+                file.setLastModified(System.currentTimeMillis());
+                hits++;
+                DISK_HITS.increment();
+                return results;
+            } catch (IOException e) {
+                Log.w(TAG, "Dropping unreadable cache file " + file + ": " + e.getMessage());
+                removeFile(name);
+            }
+        }
+        MISSES.increment();
+        return null;
+    }
+
+    public synchronized void put(String key, List<RecognitionEvent> results) {
+        List<RecognitionEvent> copy = Collections.unmodifiableList(new ArrayList<>(results));
+        memory.put(key, copy);
+        STORES.increment();
+        String name = fileName(key);
+        File file = new File(directory, name);
+        File tmp = new File(directory, name + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(copy.size());
+            for (RecognitionEvent e : copy) {
+                out.writeLong(e.offsetMs);
+                out.writeLong(e.durationMs);
+                out.writeUTF(e.text);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write cache file " + file + ": " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        Long old = disk.put(name, file.length());
+        diskBytes += file.length() - (old != null ? old : 0);
+        // 淘汰最久未用的文件，刚写入的除外
+        Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(name)) break;
+            new File(directory, eldest.getKey()).delete();
+            diskBytes -= eldest.getValue();
+            it.remove();
+            EVICTIONS.increment();
+        }
+    }
+
+    public synchronized double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getLookupCount() {
+        return lookups;
+    }
+
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    private void removeFile(String name) {
+        Long size = disk.remove(name);
+        if (size != null) diskBytes -= size;
+        new File(directory, name).delete();
+    }
+
+    private static String fileName(String key) {
+        return key.replaceAll("[^A-Za-z0-9_-]", "_") + ".rc";
+    }
+
+    private static List<RecognitionEvent> read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("bad header");
+            int n = in.readInt();
+            List<RecognitionEvent> results = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                long offsetMs = in.readLong();
+                long durationMs = in.readLong();
+                results.add(new RecognitionEvent(RecognitionEvent.Type.RECOGNIZED, in.readUTF(), offsetMs, durationMs, null));
+            }
+            return Collections.unmodifiableList(results);
+        }
+    }
+
+    /**
+     * 在静音处切段并计算段 key。只能由单个读线程使用。
+     *
+     * 以 16ms 帧判断静音（RMS 低于阈值），段长超过 MIN_SEGMENT_MS 后遇到连续 300ms 静音即在其后切开，
+     * 超过 MAX_SEGMENT_MS 强制切开。段内数据保存在预分配的缓冲中，供未命中时送识别。
+     */
+    public static final class Segmenter {
+        private static final long BYTES_PER_MS = 32;
+        private static final int FRAME_BYTES = 512;
+        private static final int MIN_SEGMENT_BYTES = (int) (5000 * BYTES_PER_MS);
+        private static final int MAX_SEGMENT_BYTES = (int) (30000 * BYTES_PER_MS);
+        private static final int SILENT_FRAMES_TO_CUT = (int) (300 * BYTES_PER_MS / FRAME_BYTES);
+        private static final int SILENCE_RMS = 300;
+
+        private final byte[] buffer = new byte[MAX_SEGMENT_BYTES];
+        private final MessageDigest digest;
+        private int length = 0;
+        private int silentFrames = 0;
+        private boolean complete = false;
+
+        public Segmenter() {
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * 追加 PCM，遇到切点时停止并返回已消费的字节数，此时 isComplete() 为 true。
+         */
+        public int append(byte[] data, int off, int len) {
+            int consumed = 0;
+            while (consumed < len && !complete) {
+                // 每次最多补齐当前帧
+                int frameFill = length % FRAME_BYTES;
+                int n = Math.min(len - consumed, FRAME_BYTES - frameFill);
+                System.arraycopy(data, off + consumed, buffer, length, n);
+                digest.update(data, off + consumed, n);
+                length += n;
+                consumed += n;
+                if (length % FRAME_BYTES == 0) {
+                    silentFrames = isSilent(length - FRAME_BYTES) ? silentFrames + 1 : 0;
+                    if (length >= MIN_SEGMENT_BYTES && silentFrames >= SILENT_FRAMES_TO_CUT) complete = true;
+                }
+                if (length == MAX_SEGMENT_BYTES) complete = true;
+            }
+            return consumed;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        public byte[] data() {
+            return buffer;
+        }
+
+        /**
+         * 当前段的 key，并开始下一段。
+         */
+        public String finish(String language) {
+            byte[] hash = digest.digest();
+            StringBuilder sb = new StringBuilder(hash.length * 2 + language.length() + 1);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            sb.append('_').append(language);
+            return sb.toString();
+        }
+
+        // finish 之后、开始填充下一段之前调用
+        public void reset() {
+            digest.reset();
+            length = 0;
+            silentFrames = 0;
+            complete = false;
+        }
+
+        private boolean isSilent(int frameStart) {
+            long sum = 0;
+            for (int i = frameStart; i < frameStart + FRAME_BYTES; i += 2) {
+                int sample = (short) ((buffer[i] & 0xff) | (buffer[i + 1] << 8));
+                sum += (long) sample * sample;
+            }
+            return sum < (long) SILENCE_RMS * SILENCE_RMS * (FRAME_BYTES / 2);
+        }
+    }
+
+    /**
+     * 把送去识别的段与之后到达的 Recognized 结果对应起来，段完整后写入缓存。
+     *
+     * 结果按结束时间归入所在的段；收到结束于某段之后的结果，说明该段及之前的段都已完整。
+     * 时间均为原始音频中的绝对位置（毫秒）。
+     */
+    public final class Collector {
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+
+        public synchronized void begin(String key, long startMs, long endMs) {
+            pending.add(new Pending(key, startMs, endMs));
+        }
+
+        public synchronized void onRecognized(RecognitionEvent event) {
+            long endMs = event.offsetMs + event.durationMs;
+            while (!pending.isEmpty() && pending.peekFirst().endMs < endMs) {
+                store(pending.pollFirst());
+            }
+            Pending current = pending.peekFirst();
+            if (current != null && endMs > current.startMs) {
+                current.results.add(event.withOffset(event.offsetMs - current.startMs));
+            }
+        }
+
+        // 之前的音频都已出完结果（会话空闲或输入结束），全部写入缓存
+        public synchronized void flush() {
+            flush(Long.MAX_VALUE);
+        }
+
+        // endMs 之前的音频都已出完结果，写入结束不晚于 endMs 的段；之后的段可能已 begin 但音频还没送出
+        public synchronized void flush(long endMs) {
+            while (!pending.isEmpty() && pending.peekFirst().endMs <= endMs) {
+                store(pending.pollFirst());
+            }
+        }
+
+        // 识别中途丢失过音频等情况下，结果可能不完整，丢弃未完成的段
+        public synchronized void discard() {
+            pending.clear();
+        }
+
+        private void store(Pending segment) {
+            put(segment.key, segment.results);
+        }
+    }
+
+    private static final class Pending {
+        final String key;
+        final long startMs;
+        final long endMs;
+        final List<RecognitionEvent> results = new ArrayList<>();
+
+        Pending(String key, long startMs, long endMs) {
+            this.key = key;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 识别断点，进程崩溃后从最后一条已确认的 Recognized 结果之后继续识别同一个文件。
+ *
+ * 由两个文件组成：
+ * - 断点文件（很小）：文件标识、最后确认结果在原始音频中的结束位置、已提交的文本长度，
+ *   每次保存先写临时文件并 fsync 再改名，任何时刻读到的都是完整的某一版；
+ * - 文本文件（checkpoint 路径 + ".txt"）：识别结果按行只追加，save 时 fsync。
+ *   崩溃后文本文件中超出断点记录长度的部分视为未提交，load 时截掉。
+ * 文件标识为大小 + 修改时间 + 开头 64KB 的 CRC32，文件被替换后断点自动失效。
+ */
+public class RecognitionCheckpoint {
+    private static final String TAG = "RecognitionCheckpoint";
+    private static final int MAGIC = 0x53545443; // "STTC"
+    private static final int VERSION = 1;
+    private static final int IDENTITY_BYTES = 64 * 1024;
+
+    private final File checkpointFile;
+    private final File transcriptFile;
+
+    // 以下字段受 this 保护
+    private FileOutputStream transcriptOut;
+    private String identity;
+    private long confirmedBytes = 0;
+    private long transcriptLength = 0;
+    private int lineCount = 0;
+    private boolean dirty = false;
+
+    /**
+     * 读取到的断点。
+     */
+    public static final class State {
+        // 最后一条已确认结果在原始音频中的结束位置（字节，循环读取时为累计位置）
+        public final long confirmedBytes;
+        public final List<String> transcript;
+
+        State(long confirmedBytes, List<String> transcript) {
+            this.confirmedBytes = confirmedBytes;
+            this.transcript = transcript;
+        }
+    }
+
+    public RecognitionCheckpoint(File checkpointFile) {
+        this.checkpointFile = checkpointFile;
+        this.transcriptFile = new File(checkpointFile.getPath() + ".txt");
+    }
+
+    /**
+     * 计算 path 的文件标识。
+     */
+    public static String fileIdentity(String path) throws IOException {
+        File file = new File(path);
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = new FileInputStream(file)) {
+            int remaining = IDENTITY_BYTES;
+            int n;
+            while (remaining > 0 && (n = in.read(buffer, 0, Math.min(buffer.length, remaining))) > 0) {
+                crc.update(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+        return file.length() + ":" + file.lastModified() + ":" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 读取与 identity 匹配的断点并准备继续写入；没有断点、文件已变化或断点损坏时从头开始并返回 null。
+     */
+    public synchronized State open(String identity) throws IOException {
+        this.identity = identity;
+        State state = null;
+        try {
+            state = read(identity);
+        } catch (IOException e) {
+            Log.w(TAG, "Ignoring unreadable checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+        if (state == null) {
+            confirmedBytes = 0;
+            transcriptLength = 0;
+            lineCount = 0;
+        }
+        // 截掉上次崩溃时未提交的文本
+        try (RandomAccessFile raf = new RandomAccessFile(transcriptFile, "rw")) {
+            raf.setLength(transcriptLength);
+        }
+        transcriptOut = new FileOutputStream(transcriptFile, true);
+        dirty = state == null;
+        return state;
+    }
+
+    private State read(String identity) throws IOException {
+        if (!checkpointFile.exists()) return null;
+        long savedLength;
+        int savedLines;
+        long savedBytes;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(checkpointFile))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("bad header");
+            String savedIdentity = in.readUTF();
+            savedBytes = in.readLong();
+            savedLength = in.readLong();
+            savedLines = in.readInt();
+            if (!identity.equals(savedIdentity)) {
+                Log.i(TAG, "Checkpoint is for a different file version, starting over");
+                return null;
+            }
+        }
+        if (transcriptFile.length() < savedLength) throw new IOException("transcript shorter than checkpoint");
+        byte[] data = new byte[(int) savedLength];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(transcriptFile))) {
+            in.readFully(data);
+        }
+        List<String> lines = new ArrayList<>(savedLines);
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\n') {
+                lines.add(new String(data, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        confirmedBytes = savedBytes;
+        transcriptLength = savedLength;
+        lineCount = lines.size();
+        Log.i(TAG, "Resuming from checkpoint at byte " + savedBytes + " with " + lineCount + " lines");
+        return new State(savedBytes, lines);
+    }
+
+    /**
+     * 追加一条已确认的结果，endBytes 为其在原始音频中的结束位置。只写入文本文件，save 后才算提交。
+     */
+    public synchronized void append(String text, long endBytes) {
+        if (transcriptOut == null) return;
+        byte[] line = (text.replace('\n', ' ') + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            transcriptOut.write(line);
+            transcriptLength += line.length;
+            lineCount++;
+            if (endBytes > confirmedBytes) confirmedBytes = endBytes;
+            dirty = true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append transcript: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 原子地提交当前断点，无变化时不写盘。
+     */
+    public synchronized void save() {
+        if (!dirty || transcriptOut == null) return;
+        File tmp = new File(checkpointFile.getPath() + ".tmp");
+        try {
+            transcriptOut.getFD().sync();
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(fos)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(identity);
+                out.writeLong(confirmedBytes);
+                out.writeLong(transcriptLength);
+                out.writeInt(lineCount);
+                out.flush();
+                fos.getFD().sync();
+            }
+            if (!tmp.renameTo(checkpointFile)) throw new IOException("rename failed");
+            dirty = false;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save checkpoint " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        save();
+        try {
+            if (transcriptOut != null) transcriptOut.close();
+        } catch (IOException ignore) {}
+        transcriptOut = null;
+    }
+}
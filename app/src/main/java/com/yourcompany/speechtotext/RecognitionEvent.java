@@ -0,0 +1,75 @@
+package com.yourcompany.speechtotext;
+
+/**
+ * 类型化的识别事件，取代 ResultCallback 中字符串形式的 type。
+ *
+ * offsetMs / durationMs 来自 SDK 结果（没有时间信息的事件为 -1）；经 BufferRecognitionManager 输出时
+ * offset 已换算为原始音频中的位置。sessionId 为 SDK 的 session id，可能为 null。
+ * language 为产生该结果的识别语言（如 "zh-CN"），同时识别多种语言时据此区分，未知时为 null。
+ */
+public final class RecognitionEvent {
+
+    public enum Type {
+        RECOGNIZING("Recognizing"),
+        RECOGNIZED("Recognized"),
+        TOKEN_EXPIRED("TokenExpired"),
+        ERROR("Error"),
+        ALL_RECOGNIZED("AllRecognized");
+
+        // ResultCallback.onResult 使用的字符串
+        public final String legacyName;
+
+        Type(String legacyName) {
+            this.legacyName = legacyName;
+        }
+
+        public static Type fromLegacy(String name) {
+            for (Type t : values()) {
+                if (t.legacyName.equals(name)) return t;
+            }
+            return ERROR;
+        }
+    }
+
+    public final Type type;
+    public final String text;
+    public final long offsetMs;
+    public final long durationMs;
+    public final String sessionId;
+    public final String language;
+
+    public RecognitionEvent(Type type, String text, long offsetMs, long durationMs, String sessionId) {
+        this(type, text, offsetMs, durationMs, sessionId, null);
+    }
+
+    public RecognitionEvent(Type type, String text, long offsetMs, long durationMs, String sessionId, String language) {
+        this.type = type;
+        this.text = text;
+        this.offsetMs = offsetMs;
+        this.durationMs = durationMs;
+        this.sessionId = sessionId;
+        this.language = language;
+    }
+
+    // 没有时间信息的事件（错误、结束等）
+    public static RecognitionEvent of(Type type, String text) {
+        return new RecognitionEvent(type, text, -1, -1, null);
+    }
+
+    public RecognitionEvent withOffset(long offsetMs) {
+        return new RecognitionEvent(type, text, offsetMs, durationMs, sessionId, language);
+    }
+
+    public RecognitionEvent withLanguage(String language) {
+        return new RecognitionEvent(type, text, offsetMs, durationMs, sessionId, language);
+    }
+
+    public boolean isFinal() {
+        return type != Type.RECOGNIZING;
+    }
+
+    @Override
+    public String toString() {
+        return type.legacyName + (language != null ? "(" + language + ")" : "") + "[" + offsetMs + "+" + durationMs + "ms]: " + text;
+    }
+}
@@ -0,0 +1,154 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 识别事件分发器：在 SDK 回调线程上 submit，在独立的 ResultDispatchThread 上按固定间隔成批投递。
+ *
+ * 同一 session 的 Recognizing 只保留最新一条（服务端的中间结果是累积文本，旧的没有价值），
+ * 每个间隔最多投递一次；对应的 Recognized 到达时丢弃尚未投递的中间结果。Recognized 与其他事件按到达顺序
+ * 攒批投递；Error / TokenExpired / AllRecognized 到达时立即投递当前批次。
+ * intervalMs 为 0 时不合并，在 submit 线程上逐条同步投递。
+ */
+public class RecognitionEventDispatcher {
+    private static final String TAG = "RecognitionDispatcher";
+    public static final long DEFAULT_INTERVAL_MS = 100;
+
+    public interface Listener {
+        void onEvents(List<RecognitionEvent> events);
+    }
+
+    private final Listener listener;
+    private final long intervalMs;
+    private final Object lock = new Object();
+
+    // 以下字段受 lock 保护
+    private ArrayList<RecognitionEvent> pending = new ArrayList<>();
+    private final LinkedHashMap<String, RecognitionEvent> partials = new LinkedHashMap<>();
+    private boolean urgent = false;
+    private boolean closed = false;
+
+    private volatile long submittedCount = 0;
+    private volatile long deliveredCount = 0;
+    private volatile long batchCount = 0;
+    private final Thread thread;
+
+    public RecognitionEventDispatcher(Listener listener) {
+        this(listener, DEFAULT_INTERVAL_MS);
+    }
+
+    public RecognitionEventDispatcher(Listener listener, long intervalMs) {
+        this.listener = listener;
+        this.intervalMs = Math.max(0, intervalMs);
+        if (this.intervalMs > 0) {
+            thread = new Thread(this::dispatchLoop, "ResultDispatchThread");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            thread = null;
+        }
+    }
+
+    public void submit(RecognitionEvent event) {
+        if (thread == null) {
+            synchronized (lock) {
+                if (closed) return;
+                submittedCount++;
+            }
+            deliver(Collections.singletonList(event));
+            return;
+        }
+        synchronized (lock) {
+            if (closed) return;
+            submittedCount++;
+            String key = event.sessionId != null ? event.sessionId : "";
+            if (event.type == RecognitionEvent.Type.RECOGNIZING) {
+                partials.put(key, event);
+            } else {
+                if (event.type == RecognitionEvent.Type.RECOGNIZED) {
+                    partials.remove(key);
+                } else {
+                    urgent = true;
+                }
+                pending.add(event);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * 投递剩余事件并停止分发线程，之后 submit 的事件直接丢弃。
+     */
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        if (thread != null && Thread.currentThread() != thread) {
+            try {
+                thread.join(intervalMs * 10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    // Listener 被调用的次数
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    private void dispatchLoop() {
+        long lastDelivery = 0;
+        while (true) {
+            List<RecognitionEvent> batch;
+            synchronized (lock) {
+                try {
+                    while (!closed && pending.isEmpty() && partials.isEmpty()) {
+                        lock.wait();
+                    }
+                    // 距上次投递不足一个间隔时继续攒批，除非有需要立即处理的事件
+                    long wait;
+                    while (!closed && !urgent && (wait = lastDelivery + intervalMs - System.currentTimeMillis()) > 0) {
+                        lock.wait(wait);
+                    }
+                } catch (InterruptedException e) {
+                    closed = true;
+                }
+                if (pending.isEmpty() && partials.isEmpty()) {
+                    if (closed) return;
+                    continue;
+                }
+                batch = pending;
+                batch.addAll(partials.values());
+                pending = new ArrayList<>();
+                partials.clear();
+                urgent = false;
+            }
+            lastDelivery = System.currentTimeMillis();
+            deliver(batch);
+        }
+    }
+
+    private void deliver(List<RecognitionEvent> batch) {
+        deliveredCount += batch.size();
+        batchCount++;
+        try {
+            listener.onEvents(batch);
+        } catch (Exception e) {
+            Log.e(TAG, "Result listener exception: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.yourcompany.speechtotext;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 所有识别 session 共用的线程池，替代每次 start 新建的裸线程与每个 manager 自己的调度线程。
+ *
+ * workers：读取 / 推送等长时间运行的工作循环，每个 session 占两个线程，同时识别多种语言时每多一种再占一个；
+ * 总数受 maxWorkers 限制（默认 DEFAULT_MAX_WORKERS，网络接收等需要同时运行更多 session 时用 setMaxWorkers 调大），
+ * 超出时 start 直接失败，线程数因此有上限。空闲线程 30 秒后回收。
+ * scheduler：备用 session 维护、断点保存等短任务，固定两个线程；取消的周期任务立即移出队列。
+ */
+public final class RecognitionExecutors {
+    public static final int DEFAULT_MAX_WORKERS = 8;
+    private static final int SCHEDULER_THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    // 以下两个字段受类锁保护
+    private static int maxWorkers = DEFAULT_MAX_WORKERS;
+    private static int reserved = 0;
+    // 核心线程数即上限；名额保证同时运行的循环不超过线程数，刚结束的 session 的线程还没归还时新任务短暂排队
+    private static final ThreadPoolExecutor WORKERS = new ThreadPoolExecutor(DEFAULT_MAX_WORKERS, DEFAULT_MAX_WORKERS,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonFactory("RecognitionWorker-"));
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS,
+            daemonFactory("RecognitionScheduler-"));
+
+    static {
+        WORKERS.allowCoreThreadTimeOut(true);
+        SCHEDULER.setRemoveOnCancelPolicy(true);
+    }
+
+    private RecognitionExecutors() {}
+
+    /**
+     * 调整工作循环名额，线程池上限随之调整；调小时已运行的循环不受影响，名额降到新上限以下之前新的 start 失败。
+     */
+    public static synchronized void setMaxWorkers(int max) {
+        if (max < 2) throw new IllegalArgumentException("maxWorkers must be at least 2: " + max);
+        // 核心线程数不能超过最大线程数，按调整方向决定先后
+        if (max > WORKERS.getMaximumPoolSize()) {
+            WORKERS.setMaximumPoolSize(max);
+            WORKERS.setCorePoolSize(max);
+        } else {
+            WORKERS.setCorePoolSize(max);
+            WORKERS.setMaximumPoolSize(max);
+        }
+        maxWorkers = max;
+    }
+
+    public static synchronized int maxWorkers() {
+        return maxWorkers;
+    }
+
+    /**
+     * 为 count 个工作循环占用名额，不足时返回 false；循环结束后必须用 releaseWorkers 归还。
+     */
+    public static synchronized boolean tryReserveWorkers(int count) {
+        if (reserved + count > maxWorkers) return false;
+        reserved += count;
+        return true;
+    }
+
+    public static synchronized void releaseWorkers(int count) {
+        reserved -= count;
+    }
+
+    // 持有名额后提交工作循环
+    public static void execute(Runnable worker) {
+        WORKERS.execute(worker);
+    }
+
+    public static ScheduledExecutorService scheduler() {
+        return SCHEDULER;
+    }
+
+    // 已占用的名额数，即正在运行的工作循环数
+    public static synchronized int reservedWorkers() {
+        return reserved;
+    }
+
+    // 当前存在的工作线程数（含空闲等待回收的）
+    public static int workerThreads() {
+        return WORKERS.getPoolSize();
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + index.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package com.yourcompany.speechtotext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次识别的生命周期句柄，由 start() 返回。
+ *
+ * stop() 立即停止：不再读取和推送，当前 session 直接关闭；drain() 停止读取新音频，
+ * 已入队的音频推送完、关闭 push stream 并等到最后的结果后结束。两者都只发起停止、不阻塞调用线程，
+ * awaitTermination 等待工作线程退出、push stream 与 SDK 对象全部释放。
+ */
+public interface RecognitionHandle {
+    void stop();
+
+    void drain();
+
+    /**
+     * @return 在超时前结束返回 true
+     */
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException;
+
+    boolean isTerminated();
+}
@@ -0,0 +1,159 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * session 重启用的重放缓冲区。
+ *
+ * 保存已推送给服务端、但还没有被 Recognized 结果确认的音频，位置统一用推送流中的绝对字节偏移表示。
+ * 收到 Recognized 后调用 confirm 丢弃已确认部分；session 重启时从 startPosition 开始重放，
+ * 既不丢音频，也不会把已出结果的音频再送一遍。
+ *
+ * 最新的 memoryCapacity 字节保存在内存环中，更早的部分溢出到磁盘环形文件；
+ * 磁盘环也写满时丢弃最早的音频并计入 lostBytes。只能由 RecognitionThread 单线程调用。
+ */
+public class ReplayBuffer {
+    private static final String TAG = "ReplayBuffer";
+
+    private final byte[] memory;
+    private final long diskCapacity;
+    private RandomAccessFile disk;
+    private File diskFile;
+
+    // 保留区间 [startPos, endPos)，其中 [memStart, endPos) 在内存，[startPos, memStart) 在磁盘
+    private long startPos = 0;
+    private long memStart = 0;
+    private long endPos = 0;
+    private long lostBytes = 0;
+
+    public ReplayBuffer(int memoryCapacity, long diskCapacity) {
+        this.memory = new byte[memoryCapacity];
+        this.diskCapacity = diskCapacity;
+    }
+
+    public long startPosition() {
+        return startPos;
+    }
+
+    public long endPosition() {
+        return endPos;
+    }
+
+    // 待确认的字节数
+    public long size() {
+        return endPos - startPos;
+    }
+
+    public long lostBytes() {
+        return lostBytes;
+    }
+
+    /**
+     * 追加刚推送成功的音频。
+     */
+    public void append(byte[] data, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, memory.length);
+            long overflow = endPos + n - memStart - memory.length;
+            if (overflow > 0) spill(overflow);
+            int ringPos = (int) (endPos % memory.length);
+            int first = Math.min(n, memory.length - ringPos);
+            System.arraycopy(data, off, memory, ringPos, first);
+            System.arraycopy(data, off + first, memory, 0, n - first);
+            endPos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 推送流中 position 之前的音频已被 Recognized 结果覆盖，可以丢弃。
+     */
+    public void confirm(long position) {
+        if (position <= startPos) return;
+        startPos = Math.min(position, endPos);
+        if (memStart < startPos) memStart = startPos;
+    }
+
+    /**
+     * 从推送流的 position 处读取最多 len 字节，返回实际读取数，超出保留区间返回 -1。
+     */
+    public int read(long position, byte[] dst, int off, int len) throws IOException {
+        if (position < startPos || position >= endPos) return -1;
+        if (position < memStart) {
+            int n = (int) Math.min(len, memStart - position);
+            readDisk(position, dst, off, n);
+            return n;
+        }
+        int n = (int) Math.min(len, endPos - position);
+        int ringPos = (int) (position % memory.length);
+        int first = Math.min(n, memory.length - ringPos);
+        System.arraycopy(memory, ringPos, dst, off, first);
+        System.arraycopy(memory, 0, dst, off + first, n - first);
+        return n;
+    }
+
+    // 把内存环中最早的 count 字节移到磁盘环
+    private void spill(long count) throws IOException {
+        if (diskCapacity <= 0) {
+            drop(memStart + count);
+            return;
+        }
+        ensureDisk();
+        long pos = memStart;
+        long end = memStart + count;
+        while (pos < end) {
+            int ringPos = (int) (pos % memory.length);
+            long diskPos = pos % diskCapacity;
+            int n = (int) Math.min(end - pos, Math.min(memory.length - ringPos, diskCapacity - diskPos));
+            disk.seek(diskPos);
+            disk.write(memory, ringPos, n);
+            pos += n;
+        }
+        memStart = end;
+        if (memStart - startPos > diskCapacity) {
+            drop(memStart - diskCapacity);
+        }
+    }
+
+    private void drop(long newStart) {
+        if (newStart <= startPos) return;
+        lostBytes += newStart - startPos;
+        Log.w(TAG, "Replay buffer full, dropping " + (newStart - startPos) + " unconfirmed bytes");
+        startPos = newStart;
+        if (memStart < startPos) memStart = startPos;
+    }
+
+    private void readDisk(long position, byte[] dst, int off, int len) throws IOException {
+        while (len > 0) {
+            long diskPos = position % diskCapacity;
+            int n = (int) Math.min(len, diskCapacity - diskPos);
+            disk.seek(diskPos);
+            disk.readFully(dst, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void ensureDisk() throws IOException {
+        if (disk != null) return;
+        diskFile = File.createTempFile("replay", ".pcm");
+        diskFile.deleteOnExit();
+        disk = new RandomAccessFile(diskFile, "rw");
+    }
+
+    public void close() {
+        try {
+            if (disk != null) disk.close();
+        } catch (IOException ignore) {}
+        if (diskFile != null && !diskFile.delete()) {
+            Log.w(TAG, "Failed to delete replay spill file " + diskFile);
+        }
+        disk = null;
+        diskFile = null;
+    }
+}
@@ -0,0 +1,408 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 长音频分段并行识别。
+ * 在低能量（静音）处把 WAV 的 PCM 切成 N 段，最多 concurrency 个工作循环（在共享的 RecognitionExecutors 上，
+ * 占 concurrency 个名额）依次领取各段，每段各跑一个 BufferRecognizer session，所有 session 共用同一个 AzureTokenManager。
+ * 各段的 Recognized 结果 offset 加上分段起点换算成全局时间，按段顺序、段内按 offset 排序后依次回调，
+ * 因此调用方看到的结果顺序与单 session 顺序识别一致（分段模式下不回调 Recognizing 草稿）。
+ *
+ * stop() 中断正在识别的段、不再输出结果；drain() 不再开始新的段，已开始的段识别完后输出所有已完成段的结果再结束。
+ */
+public class SegmentedRecognitionManager implements RecognitionHandle {
+    private static final String TAG = "SegmentedRecognitionMgr";
+    private static final int BUFFER_SIZE = 4096;
+    // 16kHz * 16bit * 单声道
+    private static final long BYTES_PER_MS = 32;
+    // 计算能量的帧长：20ms
+    private static final int FRAME_BYTES = 640;
+    // 在理想切点前后搜索静音的最大范围
+    private static final long MAX_SEARCH_MS = 10_000;
+    private static final int MAX_ATTEMPTS = 3;
+    // 推完一段后等待 sessionStopped 的额外时间
+    private static final long STOP_GRACE_MS = 60_000;
+
+    private final String wavPath;
+    private final AzureTokenManager tokenManager;
+    private final String region;
+    private final int segmentCount;
+    private final int concurrency;
+    private final AzureSpeechRecognizer.ResultCallback callback;
+    private final AzureSpeechRecognizer.RecognizedListener recognizedListener;
+    private UploadEncoder.Format uploadFormat = UploadEncoder.Format.PCM_16K;
+    private String language = AzureSpeechRecognizer.DEFAULT_LANGUAGE;
+
+    private final Object mergeLock = new Object();
+    private volatile List<Segment> segments;
+    // 下一个待按序输出的段
+    private int nextToEmit = 0;
+    // 下一个待领取的段
+    private final AtomicInteger nextSegment = new AtomicInteger();
+
+    private boolean started = false;
+    private volatile boolean stopping = false;
+    private volatile boolean draining = false;
+    private long startNanos;
+    private long dataLength;
+    private int reservedWorkers;
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private final Set<Thread> workerThreads = new HashSet<>();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    public SegmentedRecognitionManager(String wavPath, AzureTokenManager tokenManager, String region, int segmentCount, int concurrency, AzureSpeechRecognizer.ResultCallback callback) {
+        this(wavPath, tokenManager, region, segmentCount, concurrency, callback, null);
+    }
+
+    /**
+     * @param recognizedListener 可选，按全局时间顺序收到带全局 offset 的 Recognized 结果
+     */
+    public SegmentedRecognitionManager(String wavPath, AzureTokenManager tokenManager, String region, int segmentCount, int concurrency,
+                                       AzureSpeechRecognizer.ResultCallback callback, AzureSpeechRecognizer.RecognizedListener recognizedListener) {
+        this.wavPath = wavPath;
+        this.tokenManager = tokenManager;
+        this.region = region;
+        this.segmentCount = Math.max(1, segmentCount);
+        this.concurrency = Math.max(1, concurrency);
+        this.callback = callback;
+        this.recognizedListener = recognizedListener;
+    }
+
+    /**
+     * 在 start 之前设置：每段 session 上传给服务端的音频格式，默认 PCM_16K 不转换。
+     */
+    public void setUploadFormat(UploadEncoder.Format format) {
+        this.uploadFormat = format;
+    }
+
+    /**
+     * 在 start 之前设置：识别语言，默认 en-US。只支持一种语言。
+     */
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    /**
+     * 在共享线程池上规划分段并开始识别，不阻塞调用线程；线程池名额不足时抛出 IllegalStateException。
+     */
+    public synchronized RecognitionHandle start() {
+        if (started) throw new IllegalStateException("SegmentedRecognitionManager can only be started once");
+        if (!RecognitionExecutors.tryReserveWorkers(concurrency)) {
+            throw new IllegalStateException("Too many concurrent recognition sessions, max " + RecognitionExecutors.maxWorkers() + " workers");
+        }
+        started = true;
+        reservedWorkers = concurrency;
+        startNanos = System.nanoTime();
+        runningWorkers.set(1);
+        RecognitionExecutors.execute(() -> runWorker(this::planAndRecognize));
+        return this;
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            if (stopping) return;
+            stopping = true;
+            if (!started) {
+                started = true;
+                terminated.countDown();
+                return;
+            }
+        }
+        Log.i(TAG, "Stopping segmented recognition");
+        synchronized (workerThreads) {
+            for (Thread t : workerThreads) {
+                t.interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void drain() {
+        synchronized (this) {
+            if (draining || stopping) return;
+            draining = true;
+            if (!started) {
+                started = true;
+                terminated.countDown();
+            }
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    // 在共享线程池上运行工作循环：线程临时改名便于排查；退出时清除中断标记，不影响该线程执行的下一个任务
+    private void runWorker(Runnable loop) {
+        Thread thread = Thread.currentThread();
+        String poolName = thread.getName();
+        thread.setName("SegmentedRecognition");
+        synchronized (workerThreads) {
+            workerThreads.add(thread);
+        }
+        try {
+            loop.run();
+        } catch (Throwable t) {
+            Log.e(TAG, "SegmentedRecognition worker died: " + t);
+        } finally {
+            synchronized (workerThreads) {
+                workerThreads.remove(thread);
+                Thread.interrupted();
+            }
+            thread.setName(poolName);
+            if (runningWorkers.decrementAndGet() == 0) finish();
+        }
+    }
+
+    // 第一个工作循环先规划分段，再按段数补足其余工作循环，段数少于并发数时多占的名额退回
+    private void planAndRecognize() {
+        if (!planSegments()) return;
+        int workers = Math.max(1, Math.min(concurrency, segments.size()));
+        RecognitionExecutors.releaseWorkers(reservedWorkers - workers);
+        reservedWorkers = workers;
+        runningWorkers.addAndGet(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            RecognitionExecutors.execute(() -> runWorker(this::recognizeSegments));
+        }
+        recognizeSegments();
+    }
+
+    private void recognizeSegments() {
+        int index;
+        while (!stopping && !draining && (index = nextSegment.getAndIncrement()) < segments.size()) {
+            recognizeSegment(segments.get(index));
+        }
+    }
+
+    // 最后一个工作循环退出时调用
+    private void finish() {
+        RecognitionExecutors.releaseWorkers(reservedWorkers);
+        if (segments != null && !stopping) {
+            // drain 后没有识别的段不再等待，其后已完成的段照常输出
+            synchronized (mergeLock) {
+                while (nextToEmit < segments.size()) {
+                    Segment segment = segments.get(nextToEmit++);
+                    if (segment.done) emit(segment);
+                }
+            }
+            long wallMs = (System.nanoTime() - startNanos) / 1_000_000L;
+            long audioMs = dataLength / BYTES_PER_MS;
+            Log.i(TAG, "Segmented recognition finished, audio " + audioMs + "ms in " + wallMs + "ms");
+            callback.onResult("AllRecognized", "识别全部完成");
+        }
+        terminated.countDown();
+    }
+
+    private boolean planSegments() {
+        try (WavFileSource source = new WavFileSource(wavPath)) {
+            dataLength = source.dataLength();
+            long[] bounds = planBoundaries(source, segmentCount);
+            List<Segment> list = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                if (bounds[i + 1] > bounds[i]) list.add(new Segment(list.size(), bounds[i], bounds[i + 1]));
+            }
+            segments = list;
+        } catch (Exception e) {
+            Log.e(TAG, "Segment planning failed: " + e.getMessage());
+            callback.onResult("Error", "Segment planning failed: " + e.getMessage());
+            return false;
+        }
+        Log.i(TAG, "Split " + dataLength + " bytes into " + segments.size() + " segments, concurrency " + concurrency);
+        return true;
+    }
+
+    /**
+     * 规划分段边界（data 段字节偏移），返回长度为 n+1 的数组，首尾分别为 0 与 dataLength。
+     * 每个内部切点取理想等分点附近能量最低的 20ms 帧起点。
+     */
+    static long[] planBoundaries(WavFileSource source, int n) throws java.io.IOException {
+        long dataLength = source.dataLength();
+        long[] bounds = new long[n + 1];
+        bounds[n] = dataLength;
+        long segmentBytes = dataLength / n;
+        long searchBytes = Math.min(MAX_SEARCH_MS * BYTES_PER_MS, segmentBytes / 4);
+        searchBytes -= searchBytes % FRAME_BYTES;
+        byte[] frame = new byte[FRAME_BYTES];
+        for (int i = 1; i < n; i++) {
+            long ideal = segmentBytes * i;
+            ideal -= ideal % 2;
+            long from = Math.max(bounds[i - 1], ideal - searchBytes);
+            long to = Math.min(dataLength - FRAME_BYTES, ideal + searchBytes);
+            long best = ideal;
+            long bestEnergy = Long.MAX_VALUE;
+            source.seek(from);
+            for (long pos = from; pos <= to; pos += FRAME_BYTES) {
+                int len = source.read(frame, 0, FRAME_BYTES);
+                if (len < FRAME_BYTES) break;
+                long energy = frameEnergy(frame, len);
+                // 能量相同时取离理想切点最近的帧，尽量保持各段等长
+                if (energy < bestEnergy || (energy == bestEnergy && Math.abs(pos - ideal) < Math.abs(best - ideal))) {
+                    bestEnergy = energy;
+                    best = pos;
+                }
+            }
+            bounds[i] = Math.max(bounds[i - 1], best);
+        }
+        return bounds;
+    }
+
+    // 16bit 小端 PCM 的平方和
+    static long frameEnergy(byte[] pcm, int len) {
+        long sum = 0;
+        for (int i = 0; i + 1 < len; i += 2) {
+            int sample = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            sum += (long) sample * sample;
+        }
+        return sum;
+    }
+
+    private void recognizeSegment(Segment segment) {
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !stopping; attempt++) {
+            synchronized (segment.results) {
+                segment.results.clear();
+            }
+            try {
+                if (runSession(segment)) {
+                    segmentDone(segment);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                Log.e(TAG, "Segment " + segment.index + " attempt " + attempt + " failed: " + e.getMessage());
+            }
+            Log.i(TAG, "Segment " + segment.index + " will be retried from its start");
+        }
+        if (stopping) return;
+        callback.onResult("Error", "Segment " + segment.index + " failed after " + MAX_ATTEMPTS + " attempts");
+        // 失败的段不阻塞后续段的输出
+        synchronized (segment.results) {
+            segment.results.clear();
+        }
+        segmentDone(segment);
+    }
+
+    // 推送整段音频并等待 sessionStopped，成功返回 true
+    private boolean runSession(Segment segment) throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        boolean[] failed = new boolean[1];
+        boolean[] tokenExpired = new boolean[1];
+        AzureSpeechRecognizer.ResultCallback sessionCallback = (type, text) -> {
+            if ("AllRecognized".equals(type)) {
+                stopped.countDown();
+            } else if ("TokenExpired".equals(type)) {
+                tokenExpired[0] = true;
+                failed[0] = true;
+                stopped.countDown();
+            } else if ("Error".equals(type)) {
+                failed[0] = true;
+                stopped.countDown();
+            }
+        };
+        AzureSpeechRecognizer.RecognizedListener collector = (text, offsetMs, durationMs) -> {
+            synchronized (segment.results) {
+                segment.results.add(new Result(text, segment.startMs() + offsetMs, durationMs));
+            }
+        };
+        AzureSpeechRecognizer.BufferRecognizer recognizer = new AzureSpeechRecognizer.BufferRecognizer(tokenManager, region,
+                language, sessionCallback, collector, uploadFormat);
+        PushPacer pacer = new PushPacer(PushPacer.Mode.AS_FAST_AS_ACCEPTED);
+        try (WavFileSource source = new WavFileSource(wavPath)) {
+            source.seek(segment.start);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = segment.end - segment.start;
+            while (remaining > 0) {
+                int len = source.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (len <= 0) break;
+                recognizer.recognizeBuffer(buffer, len);
+                remaining -= len;
+                pacer.onPushed(len, recognizer.getRecognizedUpToMs());
+            }
+            recognizer.closePushStream();
+            long timeoutMs = (segment.end - segment.start) / BYTES_PER_MS + STOP_GRACE_MS;
+            if (!stopped.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Segment " + segment.index + " did not stop within " + timeoutMs + "ms");
+                return false;
+            }
+            // 401 后先换 token 再重试，否则各次重试都用同一个失效的 token
+            if (tokenExpired[0]) tokenManager.forceRefreshToken(recognizer.getToken());
+            return !failed[0];
+        } catch (AzureSpeechRecognizer.TokenExpiredException e) {
+            tokenManager.forceRefreshToken(recognizer.getToken());
+            return false;
+        } finally {
+            recognizer.close();
+        }
+    }
+
+    // 标记段完成，并按段顺序输出所有已完成段的结果
+    private void segmentDone(Segment segment) {
+        synchronized (mergeLock) {
+            segment.done = true;
+            while (nextToEmit < segments.size() && segments.get(nextToEmit).done) {
+                emit(segments.get(nextToEmit));
+                nextToEmit++;
+            }
+        }
+    }
+
+    // 调用方持有 mergeLock
+    private void emit(Segment segment) {
+        List<Result> results = segment.results;
+        synchronized (results) {
+            Collections.sort(results, (a, b) -> Long.compare(a.offsetMs, b.offsetMs));
+            for (Result r : results) {
+                callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.RECOGNIZED, r.text, r.offsetMs, r.durationMs, null));
+                if (recognizedListener != null) recognizedListener.onRecognized(r.text, r.offsetMs, r.durationMs);
+            }
+            results.clear();
+        }
+    }
+
+    private static class Segment {
+        final int index;
+        final long start;
+        final long end;
+        final List<Result> results = new ArrayList<>();
+        boolean done;
+
+        Segment(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        long startMs() {
+            return start / BYTES_PER_MS;
+        }
+    }
+
+    private static class Result {
+        final String text;
+        final long offsetMs;
+        final long durationMs;
+
+        Result(String text, long offsetMs, long durationMs) {
+            this.text = text;
+            this.offsetMs = offsetMs;
+            this.durationMs = durationMs;
+        }
+    }
+}
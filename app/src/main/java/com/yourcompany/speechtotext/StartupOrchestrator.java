@@ -0,0 +1,159 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 冷启动编排：配置读取、token 获取、音频准备、session 预热等阶段在后台线程上并行执行，
+ * 阶段之间的依赖用 CompletableFuture 表达，不再一步一步串行等待。
+ *
+ * 每个阶段记录相对 begin 的起止时间；首个中间结果 / 首条识别结果到达时打点，
+ * 首条结果到达后输出耗时分解，同时记入 PipelineMetrics 的 startup.* 直方图。
+ */
+public class StartupOrchestrator {
+    private static final String TAG = "StartupOrchestrator";
+
+    public interface Stage<T> {
+        T run() throws Exception;
+    }
+
+    private final long beginNanos = System.nanoTime();
+    private final ExecutorService executor;
+    // 阶段名 -> {开始, 结束}（相对 begin 的纳秒），按开始顺序
+    private final Map<String, long[]> stages = new LinkedHashMap<>();
+
+    public StartupOrchestrator() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "StartupThread-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * 立即在后台执行一个阶段。
+     */
+    public <T> CompletableFuture<T> run(String name, Stage<T> stage) {
+        return CompletableFuture.supplyAsync(() -> timed(name, stage), executor);
+    }
+
+    /**
+     * dependency 完成后在后台执行一个阶段；dependency 失败时该阶段不执行，直接以同一异常失败。
+     */
+    public <T> CompletableFuture<T> after(String name, CompletableFuture<?> dependency, Stage<T> stage) {
+        return dependency.thenApplyAsync(ignored -> timed(name, stage), executor);
+    }
+
+    /**
+     * 不再接受新阶段；已在执行的阶段照常完成，之后线程随即退出。
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // 打点，同名只记第一次
+    public void mark(String name) {
+        long at = System.nanoTime() - beginNanos;
+        synchronized (this) {
+            if (stages.containsKey(name)) return;
+            stages.put(name, new long[] {at, at});
+        }
+        PipelineMetrics.histogram("startup." + name).recordNanos(at);
+    }
+
+    public long elapsedMs() {
+        return (System.nanoTime() - beginNanos) / 1_000_000L;
+    }
+
+    /**
+     * 耗时分解，例如 "config 0+8ms, token 8+2ms, extract 8+950ms, warmup 10+420ms, firstPartial @1630ms"。
+     */
+    public synchronized String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> e : stages.entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            long start = e.getValue()[0] / 1_000_000L;
+            long end = e.getValue()[1];
+            sb.append(e.getKey());
+            if (end < 0) {
+                sb.append(' ').append(start).append("+running");
+            } else if (end == e.getValue()[0]) {
+                sb.append(" @").append(start).append("ms");
+            } else {
+                sb.append(' ').append(start).append('+').append((end - e.getValue()[0]) / 1_000_000L).append("ms");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 包装识别回调：首个 Recognizing 打点 firstPartial，首个 Recognized 打点 firstResult 并把耗时分解交给 reportListener。
+     */
+    public AzureSpeechRecognizer.ResultCallback timeResults(AzureSpeechRecognizer.ResultCallback downstream, Consumer<String> reportListener) {
+        return new AzureSpeechRecognizer.ResultCallback() {
+            private volatile boolean reported;
+
+            @Override
+            public void onResult(String type, String text) {
+                onEvent(RecognitionEvent.of(RecognitionEvent.Type.fromLegacy(type), text));
+            }
+
+            @Override
+            public void onEvent(RecognitionEvent event) {
+                if (!reported) {
+                    if (event.type == RecognitionEvent.Type.RECOGNIZING) {
+                        mark("firstPartial");
+                    } else if (event.type == RecognitionEvent.Type.RECOGNIZED) {
+                        reported = true;
+                        mark("firstResult");
+                        String report = report();
+                        Log.i(TAG, "Startup: " + report);
+                        reportListener.accept(report);
+                    }
+                }
+                downstream.onEvent(event);
+            }
+        };
+    }
+
+    /**
+     * 等待阶段结果，把 CompletionException / ExecutionException 还原为阶段抛出的异常。
+     */
+    public static <T> T join(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    private <T> T timed(String name, Stage<T> stage) {
+        long start = System.nanoTime() - beginNanos;
+        synchronized (this) {
+            stages.put(name, new long[] {start, -1});
+        }
+        try {
+            return stage.run();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            long end = System.nanoTime() - beginNanos;
+            synchronized (this) {
+                stages.get(name)[1] = end;
+            }
+            PipelineMetrics.histogram("startup." + name).recordNanos(end - start);
+        }
+    }
+}
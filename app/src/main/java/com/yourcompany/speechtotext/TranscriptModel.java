@@ -0,0 +1,132 @@
+package com.yourcompany.speechtotext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 识别文本模型：终稿只追加，末尾一段可替换的草稿。
+ *
+ * 界面只显示最近 maxVisibleLines 行终稿加草稿。render 把上次渲染之后的变化以最少的 replace 调用
+ * 应用到目标文本（Android 上即 TextView 的 Editable）：新终稿和草稿合并为一次尾部替换，
+ * 滑出窗口的旧行合并为一次头部删除。每次渲染的开销只与变化量有关，与全文长度无关。
+ * 不依赖 Android，非线程安全，MainActivity 中只在主线程使用。
+ */
+public class TranscriptModel {
+    public static final int DEFAULT_VISIBLE_LINES = 200;
+
+    /**
+     * 渲染目标，语义与 Editable.replace / StringBuilder.replace 相同。
+     */
+    public interface TextSink {
+        void replace(int start, int end, CharSequence text);
+    }
+
+    private final int maxVisibleLines;
+    private final List<String> lines = new ArrayList<>();
+    private String draft = "";
+
+    // 已渲染状态：窗口为 lines[renderedFrom, renderedTo)，每行带一个换行符，其后是草稿
+    private int renderedFrom = 0;
+    private int renderedTo = 0;
+    private int renderedLinesLength = 0;
+    private int renderedDraftLength = 0;
+    private boolean draftDirty = false;
+    private boolean cleared = false;
+    private int renderedTotalLength = 0;
+
+    public TranscriptModel() {
+        this(DEFAULT_VISIBLE_LINES);
+    }
+
+    public TranscriptModel(int maxVisibleLines) {
+        this.maxVisibleLines = Math.max(1, maxVisibleLines);
+    }
+
+    /**
+     * 追加一行终稿，并清空草稿。
+     */
+    public void commit(String line) {
+        lines.add(line);
+        setDraft("");
+    }
+
+    public void setDraft(String draft) {
+        if (draft == null) draft = "";
+        if (!draft.equals(this.draft)) {
+            this.draft = draft;
+            draftDirty = true;
+        }
+    }
+
+    public void clear() {
+        lines.clear();
+        draft = "";
+        cleared = true;
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public String get(int index) {
+        return lines.get(index);
+    }
+
+    public String getDraft() {
+        return draft;
+    }
+
+    // 自上次 render 以来是否有变化
+    public boolean isDirty() {
+        return cleared || draftDirty || renderedTo != lines.size();
+    }
+
+    /**
+     * 把变化应用到 sink，没有变化时不调用 sink。
+     */
+    public void render(TextSink sink) {
+        if (cleared) {
+            sink.replace(0, renderedTotalLength, "");
+            renderedFrom = renderedTo = 0;
+            renderedLinesLength = renderedDraftLength = renderedTotalLength = 0;
+            cleared = false;
+            draftDirty = true;
+        }
+        if (renderedTo < lines.size()) {
+            // 窗口外的新行不必写入
+            int from = Math.max(renderedTo, lines.size() - maxVisibleLines);
+            StringBuilder sb = new StringBuilder();
+            for (int i = from; i < lines.size(); i++) {
+                sb.append(lines.get(i)).append('\n');
+            }
+            int appendedLength = sb.length();
+            sb.append(draft);
+            if (from > renderedTo) {
+                // 新行已填满窗口：整体替换
+                sink.replace(0, renderedTotalLength, sb);
+                renderedFrom = from;
+                renderedLinesLength = appendedLength;
+            } else {
+                sink.replace(renderedLinesLength, renderedLinesLength + renderedDraftLength, sb);
+                renderedLinesLength += appendedLength;
+            }
+            renderedTo = lines.size();
+        } else if (draftDirty) {
+            sink.replace(renderedLinesLength, renderedLinesLength + renderedDraftLength, draft);
+        }
+        renderedDraftLength = draft.length();
+        draftDirty = false;
+        // 滑出窗口的旧行一次删除
+        if (renderedTo - renderedFrom > maxVisibleLines) {
+            int dropTo = renderedTo - maxVisibleLines;
+            int dropLength = 0;
+            for (int i = renderedFrom; i < dropTo; i++) {
+                dropLength += lines.get(i).length() + 1;
+            }
+            sink.replace(0, dropLength, "");
+            renderedFrom = dropTo;
+            renderedLinesLength -= dropLength;
+        }
+        renderedTotalLength = renderedLinesLength + renderedDraftLength;
+    }
+}
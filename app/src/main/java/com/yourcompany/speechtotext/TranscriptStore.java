@@ -0,0 +1,362 @@
+package com.yourcompany.speechtotext;
+
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * 识别结果的持久化存储：只追加的段日志 + 内存中的时间索引和倒排关键词索引。
+ *
+ * 日志每条记录为 [文本长度][offsetMs][durationMs][UTF-8 文本][CRC32]，追加时一次 write 写入。
+ * 时间索引按 offset 排序，按时间段查询为二分查找；关键词索引把英文单词 / 数字和相邻两个汉字（bigram）
+ * 映射到记录号（英文按整词匹配），倒排表用差值 varint 压缩，几百小时的结果也只占几 MB。查询先求倒排表交集，
+ * 再只读取候选记录确认包含关键词，不扫描整个日志。
+ *
+ * 打开时顺序读一遍日志重建两个索引，尾部写了一半的记录被截掉。
+ * 可以直接作为 RecognizedListener 挂到 BufferRecognitionManager / SegmentedRecognitionManager 上。
+ */
+public class TranscriptStore implements AzureSpeechRecognizer.RecognizedListener {
+    private static final String TAG = "TranscriptStore";
+    // 文本长度 + offset + duration
+    private static final int HEADER_BYTES = 4 + 8 + 8;
+    private static final int MAX_TEXT_BYTES = 1 << 20;
+
+    private final File logFile;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    // 以下字段受 this 保护
+    private long logLength;
+    // 按记录号（追加顺序）
+    private long[] positions = new long[1024];
+    private long[] offsets = new long[1024];
+    private long[] durations = new long[1024];
+    private int count = 0;
+    // 按 offset 排序的记录号
+    private int[] byTime = new int[1024];
+    private long maxDurationMs = 0;
+    // 所有记录都按 offset 顺序追加时，记录号顺序即时间顺序
+    private boolean ordered = true;
+    private final HashMap<String, Postings> postings = new HashMap<>();
+
+    public TranscriptStore(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        logFile = new File(directory, "segments.log");
+        raf = new RandomAccessFile(logFile, "rw");
+        channel = raf.getChannel();
+        load();
+    }
+
+    /**
+     * 追加一条 Recognized 结果；同一 offset 的相同文本（重复识别同一文件）只保存一次。
+     */
+    @Override
+    public void onRecognized(String text, long offsetMs, long durationMs) {
+        try {
+            append(text, offsetMs, durationMs);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append transcript: " + e.getMessage());
+        }
+    }
+
+    public synchronized void append(String text, long offsetMs, long durationMs) throws IOException {
+        if (text == null || text.trim().isEmpty()) return;
+        if (contains(text, offsetMs)) return;
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + utf8.length + 4);
+        buf.putInt(utf8.length).putLong(offsetMs).putLong(Math.max(0, durationMs)).put(utf8);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+        long pos = logLength;
+        while (buf.hasRemaining()) {
+            channel.write(buf, pos + buf.position());
+        }
+        logLength += buf.limit();
+        index(pos, offsetMs, Math.max(0, durationMs), text);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * 与 [fromMs, toMs) 有重叠的结果，按时间顺序。
+     */
+    public synchronized List<RecognitionEvent> range(long fromMs, long toMs) throws IOException {
+        List<RecognitionEvent> result = new ArrayList<>();
+        // offset 早于 fromMs - maxDuration 的结果不可能与区间重叠
+        int i = lowerBound(fromMs - maxDurationMs);
+        for (; i < count; i++) {
+            int id = byTime[i];
+            if (offsets[id] >= toMs) break;
+            if (offsets[id] + durations[id] > fromMs || offsets[id] >= fromMs) {
+                result.add(read(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 包含 keyword（忽略大小写）的结果，按时间顺序，最多 limit 条。
+     */
+    public synchronized List<RecognitionEvent> search(String keyword, int limit) throws IOException {
+        String needle = keyword.trim().toLowerCase(Locale.ROOT);
+        List<RecognitionEvent> result = new ArrayList<>();
+        if (needle.isEmpty() || limit <= 0) return result;
+        int[] candidates = candidates(needle);
+        if (candidates == null) {
+            // 单个汉字等没有可用索引项的查询，只能顺序查找
+            candidates = new int[count];
+            for (int i = 0; i < count; i++) candidates[i] = i;
+        }
+        for (int id : candidates) {
+            RecognitionEvent event = read(id);
+            if (event.text.toLowerCase(Locale.ROOT).contains(needle)) {
+                result.add(event);
+                // 候选已按时间排序，凑够即可停止
+                if (ordered && result.size() == limit) return result;
+            }
+        }
+        result.sort((a, b) -> Long.compare(a.offsetMs, b.offsetMs));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    public synchronized void close() {
+        try {
+            channel.force(false);
+            raf.close();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    // 顺序读取整个日志重建索引，截掉尾部不完整或校验失败的记录
+    private void load() throws IOException {
+        long pos = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile), 64 * 1024))) {
+            CRC32 crc = new CRC32();
+            byte[] header = new byte[HEADER_BYTES];
+            while (true) {
+                in.readFully(header);
+                ByteBuffer h = ByteBuffer.wrap(header);
+                int len = h.getInt();
+                long offsetMs = h.getLong();
+                long durationMs = h.getLong();
+                if (len < 0 || len > MAX_TEXT_BYTES) break;
+                byte[] utf8 = new byte[len];
+                in.readFully(utf8);
+                int stored = in.readInt();
+                crc.reset();
+                crc.update(header);
+                crc.update(utf8);
+                if ((int) crc.getValue() != stored) break;
+                index(pos, offsetMs, durationMs, new String(utf8, StandardCharsets.UTF_8));
+                pos += HEADER_BYTES + len + 4;
+            }
+        } catch (EOFException e) {
+            // 读到文件末尾
+        }
+        if (pos < raf.length()) {
+            Log.w(TAG, "Truncating " + (raf.length() - pos) + " bytes of incomplete records");
+            raf.setLength(pos);
+        }
+        logLength = pos;
+        Log.i(TAG, "Loaded " + count + " results, " + postings.size() + " index terms");
+    }
+
+    private void index(long pos, long offsetMs, long durationMs, String text) {
+        if (count == positions.length) {
+            int n = count * 2;
+            positions = Arrays.copyOf(positions, n);
+            offsets = Arrays.copyOf(offsets, n);
+            durations = Arrays.copyOf(durations, n);
+            byTime = Arrays.copyOf(byTime, n);
+        }
+        int id = count++;
+        positions[id] = pos;
+        offsets[id] = offsetMs;
+        durations[id] = durationMs;
+        if (durationMs > maxDurationMs) maxDurationMs = durationMs;
+        // 结果基本按时间到达，通常直接放在末尾
+        int at = upperBound(offsetMs, id);
+        if (at != id) ordered = false;
+        System.arraycopy(byTime, at, byTime, at + 1, id - at);
+        byTime[at] = id;
+        for (String term : terms(text.toLowerCase(Locale.ROOT))) {
+            Postings p = postings.get(term);
+            if (p == null) {
+                p = new Postings();
+                postings.put(term, p);
+            }
+            p.add(id);
+        }
+    }
+
+    private boolean contains(String text, long offsetMs) throws IOException {
+        for (int i = lowerBound(offsetMs); i < count && offsets[byTime[i]] == offsetMs; i++) {
+            if (read(byTime[i]).text.equals(text)) return true;
+        }
+        return false;
+    }
+
+    // byTime 中第一个 offset >= offsetMs 的位置
+    private int lowerBound(long offsetMs) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsets[byTime[mid]] < offsetMs) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // byTime[0, n) 中第一个 offset > offsetMs 的位置
+    private int upperBound(long offsetMs, int n) {
+        int lo = 0;
+        int hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (offsets[byTime[mid]] <= offsetMs) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // 关键词各索引项倒排表的交集；没有可用索引项时返回 null
+    private int[] candidates(String needle) {
+        List<String> terms = terms(needle);
+        if (terms.isEmpty()) return null;
+        int[] result = null;
+        for (String term : terms) {
+            Postings p = postings.get(term);
+            if (p == null) return new int[0];
+            int[] ids = p.toArray();
+            result = result == null ? ids : intersect(result, ids);
+            if (result.length == 0) break;
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * 索引项：连续的字母数字为一个词，连续汉字（及其他非字母数字文字）取相邻两字。
+     * 文本需已转小写。
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (isWordChar(c)) {
+                int start = i;
+                while (i < n && isWordChar(text.charAt(i))) i++;
+                terms.add(text.substring(start, i));
+            } else if (Character.isLetter(c)) {
+                int start = i;
+                while (i < n && Character.isLetter(text.charAt(i)) && !isWordChar(text.charAt(i))) i++;
+                for (int k = start; k + 1 < i; k++) {
+                    terms.add(text.substring(k, k + 2));
+                }
+            } else {
+                i++;
+            }
+        }
+        return terms;
+    }
+
+    private static boolean isWordChar(char c) {
+        return c < 0x80 ? Character.isLetterOrDigit(c) : Character.isDigit(c);
+    }
+
+    private RecognitionEvent read(int id) throws IOException {
+        long pos = positions[id];
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(header, pos);
+        ByteBuffer utf8 = ByteBuffer.allocate(header.getInt(0));
+        readFully(utf8, pos + HEADER_BYTES);
+        String text = new String(utf8.array(), StandardCharsets.UTF_8);
+        return new RecognitionEvent(RecognitionEvent.Type.RECOGNIZED, text, offsets[id], durations[id], null);
+    }
+
+    private void readFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) throw new EOFException();
+        }
+    }
+
+    /**
+     * 递增记录号的倒排表，按差值 varint 编码。同一记录重复出现的索引项只记一次。
+     */
+    private static final class Postings {
+        private byte[] data = new byte[4];
+        private int length = 0;
+        private int size = 0;
+        private int last = -1;
+
+        void add(int id) {
+            if (id == last) return;
+            int delta = id - last;
+            if (length + 5 > data.length) data = Arrays.copyOf(data, data.length * 2);
+            while (delta >= 0x80) {
+                data[length++] = (byte) (delta | 0x80);
+                delta >>>= 7;
+            }
+            data[length++] = (byte) delta;
+            last = id;
+            size++;
+        }
+
+        int[] toArray() {
+            int[] ids = new int[size];
+            int id = -1;
+            int p = 0;
+            for (int i = 0; i < size; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[p++];
+                    delta |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += delta;
+                ids[i] = id;
+            }
+            return ids;
+        }
+    }
+}
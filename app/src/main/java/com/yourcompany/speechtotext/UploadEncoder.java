@@ -0,0 +1,174 @@
+package com.yourcompany.speechtotext;
+
+/**
+ * 推送前把 16kHz / 16bit / 单声道 PCM 转成占用带宽更小的上传格式，纯 Java 实现。
+ *
+ * 8kHz：半带 FIR 低通（截止 4kHz，Blackman 窗）后隔点抽取，电话带宽，数据量减半；
+ * μ-law：G.711 压扩，每个样本 16bit 压成 8bit，数据量减半，服务端按 MULAW 格式解码。两者可叠加为原来的 1/4。
+ * 服务端只接受 PCM / MULAW / ALAW 这类逐样本格式（FLAC 等压缩格式需要设备端的 GStreamer），所以不做无损压缩。
+ *
+ * 抽取滤波器的历史跨调用保留，每个 session（push stream）一个实例；稳态无内存分配。非线程安全。
+ */
+public class UploadEncoder {
+
+    public enum Format {
+        // 原始 PCM，不转换（默认）
+        PCM_16K(16000, false),
+        PCM_8K(8000, false),
+        MULAW_16K(16000, true),
+        MULAW_8K(8000, true);
+
+        public final int sampleRate;
+        public final boolean mulaw;
+
+        Format(int sampleRate, boolean mulaw) {
+            this.sampleRate = sampleRate;
+            this.mulaw = mulaw;
+        }
+
+        public int bitsPerSample() {
+            return mulaw ? 8 : 16;
+        }
+
+        // 每秒上传的字节数
+        public int bytesPerSecond() {
+            return sampleRate * bitsPerSample() / 8;
+        }
+    }
+
+    // 半带滤波器每侧的非零抽头数（奇数位置），总长 4 * HALF_TAPS - 1
+    private static final int HALF_TAPS = 8;
+    private static final int TAPS = 4 * HALF_TAPS - 1;
+    private static final int CENTER = TAPS / 2;
+    // Q15 定点系数：ODD_COEFFS[k] 对应中心两侧距离 2k+1 的抽头，中心抽头为 0.5
+    private static final int[] ODD_COEFFS = new int[HALF_TAPS];
+    private static final int CENTER_COEFF = 1 << 14;
+    // 16bit 样本（按无符号下标）到 μ-law 字节的查表
+    private static final byte[] MULAW = new byte[65536];
+
+    static {
+        double[] h = new double[HALF_TAPS];
+        double sum = 0.5;
+        for (int k = 0; k < HALF_TAPS; k++) {
+            int n = 2 * k + 1;
+            double x = Math.PI * n / 2;
+            double window = 0.42 + 0.5 * Math.cos(Math.PI * n / (CENTER + 1)) + 0.08 * Math.cos(2 * Math.PI * n / (CENTER + 1));
+            h[k] = 0.5 * Math.sin(x) / x * window;
+            sum += 2 * h[k];
+        }
+        // 归一化直流增益为 1
+        for (int k = 0; k < HALF_TAPS; k++) {
+            ODD_COEFFS[k] = (int) Math.round(h[k] / sum * 32768);
+        }
+        for (int i = 0; i < 65536; i++) {
+            MULAW[i] = linearToMulaw((short) i);
+        }
+    }
+
+    private final Format format;
+    private final boolean decimate;
+    // 抽取用的输入窗口：前 TAPS - 1 个是上次调用留下的历史
+    private short[] window = new short[TAPS - 1 + 2048];
+    // 下一个输入样本是否落在输出位置上（全局偶数样本）
+    private boolean outputPhase = true;
+    // 跨调用残留的奇数字节
+    private int pendingByte = -1;
+
+    public UploadEncoder(Format format) {
+        this.format = format;
+        this.decimate = format.sampleRate != PcmResampler.TARGET_RATE;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    /**
+     * 下一次 encode 输入 inputBytes 字节时输出的字节数（与跨调用残留的半个样本和抽取相位有关）。
+     * 每次都输入偶数个样本时，8kHz 输出恰好是输入样本数的一半，调用方可以一直复用同一个输出数组。
+     */
+    public int outputSize(int inputBytes) {
+        int samples = (pendingByte >= 0 ? inputBytes + 1 : inputBytes) / 2;
+        if (decimate) samples = outputPhase ? (samples + 1) / 2 : samples / 2;
+        return samples * format.bitsPerSample() / 8;
+    }
+
+    /**
+     * 转换 len 字节 16kHz / 16bit 小端 PCM，写入 out（至少 outputSize(len) 字节），返回写入的字节数。
+     */
+    public int encode(byte[] in, int off, int len, byte[] out) {
+        int end = off + len;
+        int samples = 0;
+        short[] w = ensureWindow((len + 1) / 2 + 1);
+        int base = TAPS - 1;
+        if (pendingByte >= 0 && off < end) {
+            w[base + samples++] = (short) ((pendingByte & 0xff) | (in[off++] << 8));
+            pendingByte = -1;
+        }
+        for (; off + 1 < end; off += 2) {
+            w[base + samples++] = (short) ((in[off] & 0xff) | (in[off + 1] << 8));
+        }
+        if (off < end) pendingByte = in[off] & 0xff;
+        if (!decimate) {
+            for (int i = 0; i < samples; i++) {
+                writeSample(w[base + i], i, out);
+            }
+            return samples * format.bitsPerSample() / 8;
+        }
+        int produced = 0;
+        for (int i = 0; i < samples; i++) {
+            boolean emit = outputPhase;
+            outputPhase = !outputPhase;
+            if (!emit) continue;
+            // 以 base + i - CENTER 为中心（延迟 CENTER 个样本）；历史不足时前面按 0 处理（window 初始为 0）
+            int center = base + i - CENTER;
+            long acc = (long) CENTER_COEFF * w[center];
+            for (int k = 0; k < HALF_TAPS; k++) {
+                int d = 2 * k + 1;
+                acc += (long) ODD_COEFFS[k] * (w[center - d] + w[center + d]);
+            }
+            int y = (int) ((acc + (1 << 14)) >> 15);
+            if (y > Short.MAX_VALUE) y = Short.MAX_VALUE;
+            if (y < Short.MIN_VALUE) y = Short.MIN_VALUE;
+            writeSample((short) y, produced++, out);
+        }
+        // 保留最后 TAPS - 1 个输入样本作为下次的历史
+        System.arraycopy(w, samples, w, 0, TAPS - 1);
+        return produced * format.bitsPerSample() / 8;
+    }
+
+    private void writeSample(short s, int index, byte[] out) {
+        if (format.mulaw) {
+            out[index] = MULAW[s & 0xffff];
+        } else {
+            out[2 * index] = (byte) s;
+            out[2 * index + 1] = (byte) (s >> 8);
+        }
+    }
+
+    private short[] ensureWindow(int samples) {
+        if (window.length < TAPS - 1 + samples) {
+            short[] grown = new short[TAPS - 1 + samples];
+            System.arraycopy(window, 0, grown, 0, TAPS - 1);
+            window = grown;
+        }
+        return window;
+    }
+
+    // G.711 μ-law 编码（与 ITU-T 参考实现相同的偏置和截断）
+    static byte linearToMulaw(short pcm) {
+        final int bias = 0x84;
+        final int clip = 32635;
+        int sample = pcm;
+        int sign = (sample >> 8) & 0x80;
+        if (sign != 0) sample = -sample;
+        if (sample > clip) sample = clip;
+        sample += bias;
+        int exponent = 7;
+        for (int mask = 0x4000; (sample & mask) == 0 && exponent > 0; mask >>= 1) {
+            exponent--;
+        }
+        int mantissa = (sample >> (exponent + 3)) & 0x0f;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+}
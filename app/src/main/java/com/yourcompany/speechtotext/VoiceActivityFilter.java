@@ -0,0 +1,266 @@
+package com.yourcompany.speechtotext;
+
+/**
+ * 流式语音活动检测（VAD），在送识别之前丢弃静音。
+ *
+ * 以 16ms 为一帧，按短时能量 + 过零率判定是否为语音：能量明显高于自适应噪声底，
+ * 或能量略高于噪声底且过零率高（清辅音）即视为语音。
+ * 语音前保留 preroll、语音后保留 hangover 的静音作为缓冲，避免切掉字头字尾，
+ * 也让服务端仍能看到足够的停顿来断句。
+ *
+ * 同时记录"输出流位置 -> 原始文件位置"的映射，识别结果的 offset 可以换算回原始音频时间；
+ * 连续识别时调用方用 trimBefore 丢弃已确认部分的映射，映射表不随音频时长增长。
+ * 非线程安全的部分（process / flush）只能由单个读线程调用；映射查询可以在任意线程调用。
+ */
+public class VoiceActivityFilter {
+    // 16ms @ 16kHz 16bit 单声道，正好整除 4096 字节的 chunk
+    public static final int FRAME_BYTES = 512;
+    private static final long BYTES_PER_MS = 32;
+
+    private static final int DEFAULT_MIN_RMS = 300;
+    private static final double SPEECH_RATIO = 3.0;
+    private static final double FRICATIVE_RATIO = 1.5;
+    private static final double FRICATIVE_ZCR = 0.25;
+    private static final int DEFAULT_PREROLL_MS = 200;
+    private static final int DEFAULT_HANGOVER_MS = 300;
+
+    private final int minRms;
+    private final int prerollFrames;
+    private final int hangoverFrames;
+
+    // 未凑满一帧的输入
+    private final byte[] frame = new byte[FRAME_BYTES];
+    private int frameFill = 0;
+    // 语音开始前的静音帧环形缓冲
+    private final byte[] preroll;
+    private int prerollStart = 0;
+    private int prerollCount = 0;
+
+    private double noiseRms = DEFAULT_MIN_RMS;
+    private int hangoverLeft = 0;
+
+    // 已消费的原始字节数 / 已输出的字节数
+    private volatile long originalPos = 0;
+    private volatile long streamPos = 0;
+    private volatile long suppressedBytes = 0;
+    private volatile long speechFrames = 0;
+
+    // 映射表：每段连续输出对应 (streamStart, originalStart)
+    private long[] spanStream = new long[64];
+    private long[] spanOriginal = new long[64];
+    private int spanCount = 0;
+
+    public VoiceActivityFilter() {
+        this(DEFAULT_MIN_RMS, DEFAULT_PREROLL_MS, DEFAULT_HANGOVER_MS);
+    }
+
+    /**
+     * @param minRms      判定为语音的最低 RMS（16bit 样本幅度）
+     * @param prerollMs   语音开始前保留的静音时长
+     * @param hangoverMs  语音结束后保留的静音时长
+     */
+    public VoiceActivityFilter(int minRms, int prerollMs, int hangoverMs) {
+        this.minRms = minRms;
+        this.prerollFrames = Math.max(0, (int) (prerollMs * BYTES_PER_MS / FRAME_BYTES));
+        this.hangoverFrames = Math.max(0, (int) (hangoverMs * BYTES_PER_MS / FRAME_BYTES));
+        this.preroll = new byte[prerollFrames * FRAME_BYTES];
+    }
+
+    /**
+     * process 单次调用最多输出的字节数，调用方据此分配输出缓冲。
+     */
+    public int maxOutput(int inputLength) {
+        return inputLength + FRAME_BYTES + preroll.length;
+    }
+
+    /**
+     * 处理一段 PCM，把需要送识别的部分写入 out，返回写入字节数。
+     * 不足一帧的尾部留到下次调用或 flush。
+     */
+    public int process(byte[] in, int off, int len, byte[] out) {
+        int written = 0;
+        int end = off + len;
+        while (off < end) {
+            int n = Math.min(FRAME_BYTES - frameFill, end - off);
+            System.arraycopy(in, off, frame, frameFill, n);
+            frameFill += n;
+            off += n;
+            if (frameFill == FRAME_BYTES) {
+                written += processFrame(frame, FRAME_BYTES, out, written);
+                frameFill = 0;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 输入结束（例如文件读到末尾）时调用，按当前状态处理残留的不完整帧，并丢弃 preroll 中的静音。
+     */
+    public int flush(byte[] out) {
+        int written = 0;
+        if (frameFill > 0) {
+            written = processFrame(frame, frameFill, out, 0);
+            frameFill = 0;
+        }
+        suppressedBytes += (long) prerollCount * FRAME_BYTES;
+        prerollCount = 0;
+        prerollStart = 0;
+        return written;
+    }
+
+    private int processFrame(byte[] pcm, int len, byte[] out, int outOff) {
+        boolean speech = isSpeech(pcm, len);
+        long frameOriginal = originalPos;
+        originalPos += len;
+        if (speech) {
+            speechFrames++;
+            hangoverLeft = hangoverFrames;
+            int written = drainPreroll(out, outOff, frameOriginal);
+            return written + emit(pcm, len, out, outOff + written, frameOriginal);
+        }
+        if (hangoverLeft > 0) {
+            hangoverLeft--;
+            return emit(pcm, len, out, outOff, frameOriginal);
+        }
+        holdPreroll(pcm, len);
+        return 0;
+    }
+
+    private boolean isSpeech(byte[] pcm, int len) {
+        int samples = len / 2;
+        if (samples == 0) return false;
+        long sumSquares = 0;
+        int crossings = 0;
+        int prev = 0;
+        for (int i = 0; i + 1 < len; i += 2) {
+            int sample = (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8));
+            sumSquares += (long) sample * sample;
+            if (i > 0 && ((sample >= 0) != (prev >= 0))) crossings++;
+            prev = sample;
+        }
+        double rms = Math.sqrt((double) sumSquares / samples);
+        double zcr = (double) crossings / samples;
+        boolean speech = rms >= minRms && (rms > noiseRms * SPEECH_RATIO
+                || (rms > noiseRms * FRICATIVE_RATIO && zcr > FRICATIVE_ZCR));
+        if (!speech) {
+            // 噪声底只在非语音帧上缓慢跟踪，下降比上升快，能适应安静段
+            double alpha = rms < noiseRms ? 0.2 : 0.02;
+            noiseRms = Math.max(1.0, noiseRms + alpha * (rms - noiseRms));
+        }
+        return speech;
+    }
+
+    // 语音开始时把 preroll 中的静音帧先输出，它们在原始音频中紧挨当前帧之前
+    private int drainPreroll(byte[] out, int outOff, long frameOriginal) {
+        int written = 0;
+        long original = frameOriginal - (long) prerollCount * FRAME_BYTES;
+        for (int i = 0; i < prerollCount; i++) {
+            int idx = (prerollStart + i) % prerollFrames;
+            written += emitFrom(preroll, idx * FRAME_BYTES, FRAME_BYTES, out, outOff + written, original);
+            original += FRAME_BYTES;
+        }
+        prerollCount = 0;
+        prerollStart = 0;
+        return written;
+    }
+
+    private void holdPreroll(byte[] pcm, int len) {
+        if (prerollFrames == 0 || len < FRAME_BYTES) {
+            suppressedBytes += len;
+            return;
+        }
+        if (prerollCount == prerollFrames) {
+            // 最早的一帧被挤出，确认丢弃
+            suppressedBytes += FRAME_BYTES;
+            prerollStart = (prerollStart + 1) % prerollFrames;
+            prerollCount--;
+        }
+        int idx = (prerollStart + prerollCount) % prerollFrames;
+        System.arraycopy(pcm, 0, preroll, idx * FRAME_BYTES, FRAME_BYTES);
+        prerollCount++;
+    }
+
+    private int emit(byte[] pcm, int len, byte[] out, int outOff, long original) {
+        return emitFrom(pcm, 0, len, out, outOff, original);
+    }
+
+    private int emitFrom(byte[] src, int srcOff, int len, byte[] out, int outOff, long original) {
+        System.arraycopy(src, srcOff, out, outOff, len);
+        recordSpan(streamPos, original);
+        streamPos += len;
+        return len;
+    }
+
+    private synchronized void recordSpan(long stream, long original) {
+        if (spanCount > 0) {
+            int last = spanCount - 1;
+            // 与上一段在原始音频中连续，直接延长
+            if (spanOriginal[last] + (stream - spanStream[last]) == original) return;
+        }
+        if (spanCount == spanStream.length) {
+            spanStream = java.util.Arrays.copyOf(spanStream, spanCount * 2);
+            spanOriginal = java.util.Arrays.copyOf(spanOriginal, spanCount * 2);
+        }
+        spanStream[spanCount] = stream;
+        spanOriginal[spanCount] = original;
+        spanCount++;
+    }
+
+    /**
+     * 把输出流中的字节位置换算为原始音频中的字节位置。
+     */
+    public synchronized long toOriginal(long streamBytes) {
+        if (spanCount == 0) return streamBytes;
+        int lo = 0, hi = spanCount - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (spanStream[mid] <= streamBytes) lo = mid; else hi = mid - 1;
+        }
+        return spanOriginal[lo] + (streamBytes - spanStream[lo]);
+    }
+
+    /**
+     * 丢弃完全位于 streamBytes 之前的映射段（包含 streamBytes 的段保留），之后只应查询不小于 streamBytes 的位置。
+     */
+    public synchronized void trimBefore(long streamBytes) {
+        int keep = 0;
+        int lo = 0, hi = spanCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (spanStream[mid] <= streamBytes) {
+                keep = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (keep == 0) return;
+        System.arraycopy(spanStream, keep, spanStream, 0, spanCount - keep);
+        System.arraycopy(spanOriginal, keep, spanOriginal, 0, spanCount - keep);
+        spanCount -= keep;
+    }
+
+    public long toOriginalMs(long streamMs) {
+        return toOriginal(streamMs * BYTES_PER_MS) / BYTES_PER_MS;
+    }
+
+    public long getInputBytes() {
+        return originalPos;
+    }
+
+    public long getOutputBytes() {
+        return streamPos;
+    }
+
+    public long getSuppressedBytes() {
+        return suppressedBytes;
+    }
+
+    public long getSuppressedMs() {
+        return suppressedBytes / BYTES_PER_MS;
+    }
+
+    public long getSpeechFrames() {
+        return speechFrames;
+    }
+}
@@ -0,0 +1,188 @@
+package com.yourcompany.speechtotext;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * WAV 文件音频源。
+ * 按 RIFF 规范逐个遍历 chunk 定位 "fmt " 与 "data"，可以跳过 LIST / fact 等附加 chunk，
+ * 并校验格式必须为 16kHz / 16bit / 单声道 PCM。
+ * data 段按窗口做内存映射，read 时从映射区直接拷贝到调用方的 chunk，省去 FileInputStream 的中间缓冲。
+ */
+public class WavFileSource implements AudioSource {
+    public static final int SAMPLE_RATE = 16000;
+    public static final int BITS_PER_SAMPLE = 16;
+    public static final int CHANNELS = 1;
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+    // WAVE_FORMAT_EXTENSIBLE 的 fmt 长度：16 字节基本字段 + cbSize + 22 字节扩展
+    private static final int FMT_EXTENSIBLE_SIZE = 40;
+    // KSDATAFORMAT_SUBTYPE_PCM {00000001-0000-0010-8000-00AA00389B71} 在文件中的字节序
+    private static final byte[] SUBTYPE_PCM = {
+            0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x10, 0x00,
+            (byte) 0x80, 0x00, 0x00, (byte) 0xAA, 0x00, 0x38, (byte) 0x9B, 0x71};
+    // 每次映射的窗口大小，避免一次性映射多 GB 文件（MappedByteBuffer 上限 2GB）
+    private static final long MAP_WINDOW = 16L * 1024 * 1024;
+
+    // 格式或结构不合法时抛出
+    public static class WavFormatException extends IOException {
+        public WavFormatException(String msg) { super(msg); }
+    }
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long dataOffset;
+    private final long dataLength;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position; // 相对 data 段起点
+
+    public WavFileSource(String path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        channel = file.getChannel();
+        try {
+            long[] data = parseChunks();
+            dataOffset = data[0];
+            dataLength = data[1];
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    // 遍历 RIFF chunk，返回 {data 段文件偏移, data 段长度}
+    private long[] parseChunks() throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        readAt(header, 0);
+        if (header.getInt(0) != fourCC("RIFF") || header.getInt(8) != fourCC("WAVE")) {
+            throw new WavFormatException("Not a RIFF/WAVE file");
+        }
+        boolean fmtFound = false;
+        long pos = 12;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        while (pos + 8 <= fileSize) {
+            readAt(chunkHeader, pos);
+            int id = chunkHeader.getInt(0);
+            long size = chunkHeader.getInt(4) & 0xFFFFFFFFL;
+            long body = pos + 8;
+            if (id == fourCC("fmt ")) {
+                if (size < 16) throw new WavFormatException("fmt chunk too short: " + size);
+                ByteBuffer fmt = ByteBuffer.allocate((int) Math.min(size, FMT_EXTENSIBLE_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+                readAt(fmt, body);
+                checkFormat(fmt);
+                fmtFound = true;
+            } else if (id == fourCC("data")) {
+                if (!fmtFound) throw new WavFormatException("data chunk before fmt chunk");
+                // 流式写出的 WAV 常把 data 长度写成 0 或 0xFFFFFFFF，以实际文件长度为准
+                long available = fileSize - body;
+                long length = (size == 0 || size > available) ? available : size;
+                // 保证样本对齐
+                length -= length % (BITS_PER_SAMPLE / 8 * CHANNELS);
+                return new long[] { body, length };
+            }
+            // chunk 按偶数字节对齐
+            pos = body + size + (size & 1);
+        }
+        throw new WavFormatException(fmtFound ? "data chunk not found" : "fmt chunk not found");
+    }
+
+    private static void checkFormat(ByteBuffer fmt) throws WavFormatException {
+        int format = fmt.getShort(0) & 0xFFFF;
+        int channels = fmt.getShort(2) & 0xFFFF;
+        int sampleRate = fmt.getInt(4);
+        int bits = fmt.getShort(14) & 0xFFFF;
+        if (format != WAVE_FORMAT_PCM && format != WAVE_FORMAT_EXTENSIBLE) {
+            throw new WavFormatException("Unsupported WAV format tag: " + format);
+        }
+        // 扩展格式的真实编码在 SubFormat GUID 中，浮点 / A-law 等也可能用 0xFFFE 标记
+        if (format == WAVE_FORMAT_EXTENSIBLE) {
+            if (fmt.capacity() < FMT_EXTENSIBLE_SIZE || (fmt.getShort(16) & 0xFFFF) < FMT_EXTENSIBLE_SIZE - 18) {
+                throw new WavFormatException("WAVE_FORMAT_EXTENSIBLE fmt chunk too short");
+            }
+            for (int i = 0; i < SUBTYPE_PCM.length; i++) {
+                if (fmt.get(24 + i) != SUBTYPE_PCM[i]) {
+                    throw new WavFormatException("Unsupported WAVE_FORMAT_EXTENSIBLE sub format, expected PCM");
+                }
+            }
+        }
+        if (sampleRate != SAMPLE_RATE || bits != BITS_PER_SAMPLE || channels != CHANNELS) {
+            throw new WavFormatException("Unsupported WAV format: " + sampleRate + "Hz/" + bits + "bit/" + channels + "ch, expected 16000Hz/16bit/1ch");
+        }
+    }
+
+    private void readAt(ByteBuffer dst, long pos) throws IOException {
+        dst.clear();
+        while (dst.hasRemaining()) {
+            if (channel.read(dst, pos + dst.position()) < 0) {
+                throw new WavFormatException("Unexpected end of WAV header");
+            }
+        }
+    }
+
+    private static int fourCC(String s) {
+        return (s.charAt(0)) | (s.charAt(1) << 8) | (s.charAt(2) << 16) | (s.charAt(3) << 24);
+    }
+
+    public long dataLength() {
+        return dataLength;
+    }
+
+    // 当前读取位置（data 段内的字节偏移）
+    public long position() {
+        return position;
+    }
+
+    /**
+     * 定位到 data 段内的指定字节偏移。
+     */
+    public void seek(long dataPosition) {
+        position = Math.max(0, Math.min(dataPosition, dataLength));
+    }
+
+    /**
+     * 回到 data 段起点，用于循环读取。
+     */
+    public void rewind() {
+        position = 0;
+    }
+
+    /**
+     * 尽量读满 len 字节 PCM 到 dst，data 段结束时返回 -1。
+     */
+    @Override
+    public int read(byte[] dst, int off, int len) throws IOException {
+        if (position >= dataLength) return -1;
+        int total = 0;
+        while (total < len && position < dataLength) {
+            ensureWindow();
+            int n = (int) Math.min(len - total, Math.min(window.remaining(), dataLength - position));
+            window.get(dst, off + total, n);
+            total += n;
+            position += n;
+        }
+        return total;
+    }
+
+    private void ensureWindow() throws IOException {
+        long filePos = dataOffset + position;
+        if (window == null || filePos < windowStart || filePos >= windowStart + window.capacity()) {
+            long size = Math.min(MAP_WINDOW, dataOffset + dataLength - filePos);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, filePos, size);
+            windowStart = filePos;
+        }
+        window.position((int) (filePos - windowStart));
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        file.close();
+    }
+}
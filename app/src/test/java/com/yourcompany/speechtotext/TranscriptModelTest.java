@@ -0,0 +1,155 @@
+package com.yourcompany.speechtotext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TranscriptModelTest {
+
+    // 渲染目标：相当于 TextView 的 Editable，记录 replace 调用次数
+    private static class Text implements TranscriptModel.TextSink {
+        final StringBuilder sb = new StringBuilder();
+        int calls = 0;
+
+        @Override
+        public void replace(int start, int end, CharSequence text) {
+            calls++;
+            sb.replace(start, end, text.toString());
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+
+    @Test
+    public void draftIsReplacedNotAppended() {
+        TranscriptModel model = new TranscriptModel();
+        Text text = new Text();
+        model.setDraft("hel");
+        model.render(text);
+        model.setDraft("hello wor");
+        model.render(text);
+        assertEquals("hello wor", text.toString());
+        assertEquals("hello wor", model.getDraft());
+    }
+
+    @Test
+    public void commitAppendsLineAndClearsDraft() {
+        TranscriptModel model = new TranscriptModel();
+        Text text = new Text();
+        model.commit("first.");
+        model.setDraft("sec");
+        model.render(text);
+        assertEquals("first.\nsec", text.toString());
+        model.commit("second.");
+        model.render(text);
+        assertEquals("first.\nsecond.\n", text.toString());
+        assertEquals("", model.getDraft());
+        assertEquals(2, model.size());
+    }
+
+    @Test
+    public void emptyRecognizedClearsDraft() {
+        // MainActivity 对空文本的 Recognized 调用 setDraft("")：草稿消失，不追加空行
+        TranscriptModel model = new TranscriptModel();
+        Text text = new Text();
+        model.commit("line");
+        model.setDraft("noise");
+        model.render(text);
+        model.setDraft("");
+        assertTrue(model.isDirty());
+        model.render(text);
+        assertEquals("line\n", text.toString());
+        assertEquals(1, model.size());
+    }
+
+    @Test
+    public void noChangeRendersNothing() {
+        TranscriptModel model = new TranscriptModel();
+        Text text = new Text();
+        model.commit("a");
+        model.setDraft("b");
+        model.render(text);
+        assertFalse(model.isDirty());
+        int calls = text.calls;
+        model.setDraft("b");
+        assertFalse(model.isDirty());
+        model.render(text);
+        assertEquals(calls, text.calls);
+    }
+
+    @Test
+    public void oldLinesSlideOutOfWindowWithStableIndices() {
+        TranscriptModel model = new TranscriptModel(3);
+        Text text = new Text();
+        for (int i = 0; i < 5; i++) {
+            model.commit("line" + i);
+            model.render(text);
+        }
+        model.setDraft("draft");
+        model.render(text);
+        assertEquals("line2\nline3\nline4\ndraft", text.toString());
+        // 滑出窗口只影响显示，模型里的下标不变
+        assertEquals(5, model.size());
+        assertEquals("line0", model.get(0));
+        assertEquals("line4", model.get(4));
+    }
+
+    @Test
+    public void manyLinesInOneRenderKeepOnlyWindow() {
+        TranscriptModel model = new TranscriptModel(3);
+        Text text = new Text();
+        model.commit("old");
+        model.render(text);
+        for (int i = 0; i < 10; i++) {
+            model.commit("line" + i);
+        }
+        model.setDraft("d");
+        text.calls = 0;
+        model.render(text);
+        assertEquals("line7\nline8\nline9\nd", text.toString());
+        assertEquals(1, text.calls);
+        assertEquals(11, model.size());
+    }
+
+    @Test
+    public void incrementalRenderMatchesFullRender() {
+        TranscriptModel incremental = new TranscriptModel(4);
+        TranscriptModel once = new TranscriptModel(4);
+        Text a = new Text();
+        Text b = new Text();
+        for (int i = 0; i < 20; i++) {
+            incremental.setDraft("partial" + i);
+            incremental.render(a);
+            if (i % 3 == 0) {
+                incremental.commit("final" + i);
+                once.commit("final" + i);
+            }
+            incremental.render(a);
+        }
+        once.setDraft(incremental.getDraft());
+        once.render(b);
+        assertEquals(b.toString(), a.toString());
+    }
+
+    @Test
+    public void clearRemovesRenderedText() {
+        TranscriptModel model = new TranscriptModel();
+        Text text = new Text();
+        model.commit("a");
+        model.setDraft("b");
+        model.render(text);
+        model.clear();
+        assertTrue(model.isDirty());
+        model.render(text);
+        assertEquals("", text.toString());
+        assertEquals(0, model.size());
+        model.commit("c");
+        model.render(text);
+        assertEquals("c\n", text.toString());
+    }
+}
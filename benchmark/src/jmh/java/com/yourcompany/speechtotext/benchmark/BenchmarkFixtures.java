@@ -0,0 +1,72 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 基准测试用的测试数据：生成指定大小的 16kHz/16bit/单声道 WAV 临时文件。
+ */
+final class BenchmarkFixtures {
+    // 与 BufferRecognitionManager 的 chunk 大小一致
+    static final int CHUNK_SIZE = 4096;
+    static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private BenchmarkFixtures() {}
+
+    /**
+     * 写出 dataBytes 字节 PCM 的 WAV 文件；withListChunk 为 true 时在 fmt 前插入 LIST 块，
+     * 模拟 ffmpeg 等工具输出的非 44 字节头。
+     */
+    static File createWav(long dataBytes, boolean withListChunk) throws IOException {
+        File file = File.createTempFile("bench", ".wav");
+        file.deleteOnExit();
+        byte[] list = withListChunk ? listChunk() : new byte[0];
+        try (OutputStream out = new FileOutputStream(file)) {
+            ByteBuffer header = ByteBuffer.allocate(12 + list.length + 24 + 8).order(ByteOrder.LITTLE_ENDIAN);
+            header.put("RIFF".getBytes("US-ASCII"));
+            header.putInt((int) Math.min(0xFFFFFFFFL, 4 + list.length + 24 + 8 + dataBytes));
+            header.put("WAVE".getBytes("US-ASCII"));
+            header.put(list);
+            header.put("fmt ".getBytes("US-ASCII"));
+            header.putInt(16);
+            header.putShort((short) 1);
+            header.putShort((short) 1);
+            header.putInt(16000);
+            header.putInt(16000 * 2);
+            header.putShort((short) 2);
+            header.putShort((short) 16);
+            header.put("data".getBytes("US-ASCII"));
+            // 超过 4GB 时写 0，WavFileSource 会按文件长度处理
+            header.putInt(dataBytes > 0xFFFFFFFFL ? 0 : (int) dataBytes);
+            out.write(header.array());
+
+            // 440Hz 正弦波，避免全零数据被文件系统稀疏存储
+            byte[] block = new byte[64 * 1024];
+            for (int i = 0; i < block.length / 2; i++) {
+                short s = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 16000.0));
+                block[2 * i] = (byte) s;
+                block[2 * i + 1] = (byte) (s >> 8);
+            }
+            long remaining = dataBytes;
+            while (remaining > 0) {
+                int n = (int) Math.min(block.length, remaining);
+                out.write(block, 0, n);
+                remaining -= n;
+            }
+        }
+        return file;
+    }
+
+    private static byte[] listChunk() throws IOException {
+        byte[] info = "INFOISFT\u000e\u0000\u0000\u0000Lavf58.76.100\u0000".getBytes("ISO-8859-1");
+        ByteBuffer chunk = ByteBuffer.allocate(8 + info.length).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put("LIST".getBytes("US-ASCII"));
+        chunk.putInt(info.length);
+        chunk.put(info);
+        return chunk.array();
+    }
+}
@@ -0,0 +1,97 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.PcmChunkRing;
+import com.yourcompany.speechtotext.WavFileSource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * 单线程读取一个 chunk 并入队、出队，一次操作 = 一个 4KB chunk。
+ * 旧实现：FileInputStream + 每个 chunk 新分配 byte[] + LinkedBlockingQueue；
+ * 新实现：WavFileSource（mmap 窗口）直接读入 PcmChunkRing 预分配的 chunk。
+ * 读到文件末尾后从头开始，与 FileReadThread 循环读取的行为一致。
+ *
+ * 数 GB 文件：./gradlew :benchmark:jmh -PfileSizeMb=4096
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ChunkReadBenchmark {
+
+    @Param({"64"})
+    public int fileSizeMb;
+
+    private File wav;
+
+    private FileInputStream legacyStream;
+    private final byte[] legacyBuffer = new byte[BenchmarkFixtures.CHUNK_SIZE];
+    private final LinkedBlockingQueue<byte[]> legacyQueue = new LinkedBlockingQueue<>(16);
+
+    private WavFileSource source;
+    private final PcmChunkRing ring = new PcmChunkRing(16, BenchmarkFixtures.CHUNK_SIZE);
+
+    @Setup
+    public void setUp() throws IOException {
+        wav = BenchmarkFixtures.createWav(fileSizeMb * 1024L * 1024L, false);
+        openLegacy();
+        source = new WavFileSource(wav.getPath());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        legacyStream.close();
+        source.close();
+        wav.delete();
+    }
+
+    private void openLegacy() throws IOException {
+        if (legacyStream != null) legacyStream.close();
+        legacyStream = new FileInputStream(wav);
+        byte[] header = new byte[44];
+        if (legacyStream.read(header) != 44) throw new IOException("WAV header too short");
+    }
+
+    @Benchmark
+    public int legacyStreamAndQueue(Throughput throughput) throws Exception {
+        int len = legacyStream.read(legacyBuffer);
+        if (len <= 0) {
+            openLegacy();
+            len = legacyStream.read(legacyBuffer);
+        }
+        byte[] actual = new byte[len];
+        System.arraycopy(legacyBuffer, 0, actual, 0, len);
+        legacyQueue.put(actual);
+        byte[] taken = legacyQueue.take();
+        throughput.add(taken.length);
+        return taken.length;
+    }
+
+    @Benchmark
+    public int mappedSourceAndRing(Throughput throughput) throws Exception {
+        PcmChunkRing.Chunk chunk = ring.acquire();
+        int len = source.read(chunk.data, 0, chunk.data.length);
+        if (len < 0) {
+            source.rewind();
+            len = source.read(chunk.data, 0, chunk.data.length);
+        }
+        chunk.length = len;
+        ring.publish();
+        PcmChunkRing.Chunk taken = ring.peek();
+        int n = taken.length;
+        ring.release();
+        throughput.add(n);
+        return n;
+    }
+}
@@ -0,0 +1,118 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.RecognitionEvent;
+import com.yourcompany.speechtotext.RecognitionEventDispatcher;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ResultCallback 分发：StubRecognizer 按音频时长产生 Recognizing / Recognized 事件。一次操作 = 推送一个 4KB chunk
+ * （约 128ms 音频，平均触发 1.28 个事件）。
+ * stringTypedCallback 按 MainActivity 原来的方式逐条用字符串比较 type 分支处理；
+ * coalescingDispatcher 经 RecognitionEventDispatcher 合并中间结果后成批处理。
+ * listenerCalls 为每秒调用消费端（即 UI 刷新）的次数。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DispatchBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Calls {
+        public long listenerCalls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            listenerCalls = 0;
+        }
+    }
+
+    private final byte[] chunk = new byte[BenchmarkFixtures.CHUNK_SIZE];
+    private StubRecognizer legacyRecognizer;
+    private StubRecognizer dispatchingRecognizer;
+    private RecognitionEventDispatcher dispatcher;
+    private StringBuilder draft;
+    private int committed;
+    private long legacyCalls;
+    private long batchBaseline;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        draft = new StringBuilder();
+        legacyRecognizer = new StubRecognizer(BenchmarkFixtures.CHUNK_SIZE, (type, text) -> {
+            legacyCalls++;
+            if ("Recognizing".equals(type)) {
+                draft.setLength(0);
+                draft.append(text);
+            } else if ("Recognized".equals(type)) {
+                committed++;
+                draft.setLength(0);
+                blackhole.consume(text);
+            } else if ("Error".equals(type)) {
+                blackhole.consume(text);
+            }
+        });
+        dispatcher = new RecognitionEventDispatcher(events -> {
+            for (RecognitionEvent event : events) {
+                switch (event.type) {
+                    case RECOGNIZING:
+                    case RECOGNIZED:
+                    case ERROR:
+                        blackhole.consume(event.text);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+        dispatchingRecognizer = new StubRecognizer(BenchmarkFixtures.CHUNK_SIZE, new StubRecognizer.ResultCallback() {
+            @Override
+            public void onResult(String type, String text) {
+                dispatcher.submit(RecognitionEvent.of(RecognitionEvent.Type.fromLegacy(type), text));
+            }
+
+            @Override
+            public void onEvent(RecognitionEvent event) {
+                dispatcher.submit(event);
+            }
+        });
+    }
+
+    @Setup(Level.Iteration)
+    public void resetCalls() {
+        legacyCalls = 0;
+        batchBaseline = dispatcher.getBatchCount();
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.close();
+    }
+
+    @Benchmark
+    public long stringTypedCallback(Throughput throughput, Calls calls) {
+        legacyRecognizer.recognizeBuffer(chunk, chunk.length);
+        throughput.add(chunk.length);
+        calls.listenerCalls = legacyCalls;
+        return committed;
+    }
+
+    @Benchmark
+    public long coalescingDispatcher(Throughput throughput, Calls calls) {
+        dispatchingRecognizer.recognizeBuffer(chunk, chunk.length);
+        throughput.add(chunk.length);
+        calls.listenerCalls = dispatcher.getBatchCount() - batchBaseline;
+        return dispatcher.getSubmittedCount();
+    }
+}
@@ -0,0 +1,120 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.PcmChunkRing;
+import com.yourcompany.speechtotext.WavFileSource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 生产者/消费者交接：后台 FileReadThread 持续读文件入队，基准线程扮演 RecognitionThread，
+ * 每次操作取出一个 chunk 推给 StubRecognizer。不含 PushPacer 的节流，衡量的是管线本身的上限。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HandoffBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Pipeline {
+        @Param({"legacy", "ring"})
+        public String queue;
+
+        @Param({"64"})
+        public int fileSizeMb;
+
+        File wav;
+        Thread producer;
+        StubRecognizer recognizer;
+        LinkedBlockingQueue<byte[]> legacyQueue;
+        PcmChunkRing ring;
+
+        @Setup
+        public void setUp(Blackhole blackhole) throws IOException {
+            wav = BenchmarkFixtures.createWav(fileSizeMb * 1024L * 1024L, false);
+            recognizer = new StubRecognizer(BenchmarkFixtures.CHUNK_SIZE, (type, text) -> blackhole.consume(text));
+            if ("legacy".equals(queue)) {
+                legacyQueue = new LinkedBlockingQueue<>(16);
+                producer = new Thread(this::legacyProducer, "FileReadThread");
+            } else {
+                ring = new PcmChunkRing(16, BenchmarkFixtures.CHUNK_SIZE);
+                producer = new Thread(this::ringProducer, "FileReadThread");
+            }
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            producer.interrupt();
+            producer.join(5000);
+            wav.delete();
+        }
+
+        // 与最初的 BufferRecognitionManager.fileReadThread 相同的读法
+        private void legacyProducer() {
+            try {
+                while (true) {
+                    try (FileInputStream fis = new FileInputStream(wav)) {
+                        byte[] header = new byte[44];
+                        if (fis.read(header) != 44) return;
+                        byte[] buffer = new byte[BenchmarkFixtures.CHUNK_SIZE];
+                        int len;
+                        while ((len = fis.read(buffer)) > 0) {
+                            byte[] actual = new byte[len];
+                            System.arraycopy(buffer, 0, actual, 0, len);
+                            legacyQueue.put(actual);
+                        }
+                    }
+                }
+            } catch (InterruptedException | IOException ignore) {
+                // 基准结束
+            }
+        }
+
+        private void ringProducer() {
+            try (WavFileSource source = new WavFileSource(wav.getPath())) {
+                while (true) {
+                    PcmChunkRing.Chunk chunk = ring.acquire();
+                    int len = source.read(chunk.data, 0, chunk.data.length);
+                    if (len < 0) {
+                        source.rewind();
+                        continue;
+                    }
+                    chunk.length = len;
+                    ring.publish();
+                }
+            } catch (InterruptedException | IOException ignore) {
+                // 基准结束
+            }
+        }
+    }
+
+    @Benchmark
+    public int consumeChunk(Pipeline pipeline, Throughput throughput) throws InterruptedException {
+        int len;
+        if (pipeline.ring != null) {
+            PcmChunkRing.Chunk chunk = pipeline.ring.peek();
+            len = chunk.length;
+            pipeline.recognizer.recognizeBuffer(chunk.data, len);
+            pipeline.ring.release();
+        } else {
+            byte[] buffer = pipeline.legacyQueue.take();
+            len = buffer.length;
+            pipeline.recognizer.recognizeBuffer(buffer, len);
+        }
+        throughput.add(len);
+        return len;
+    }
+}
@@ -0,0 +1,39 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.PipelineMetrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * PipelineMetrics 在热路径上的开销：一次阶段计时（start + recordSince）加一次计数，关闭与开启对比。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsOverheadBenchmark {
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private final PipelineMetrics.Histogram histogram = PipelineMetrics.histogram("bench.stage");
+    private final PipelineMetrics.Counter counter = PipelineMetrics.counter("bench.bytes");
+
+    @Setup
+    public void setUp() {
+        PipelineMetrics.setEnabled(enabled);
+    }
+
+    @Benchmark
+    public void stageTiming() {
+        long start = PipelineMetrics.start();
+        histogram.recordSince(start);
+        counter.add(BenchmarkFixtures.CHUNK_SIZE);
+    }
+}
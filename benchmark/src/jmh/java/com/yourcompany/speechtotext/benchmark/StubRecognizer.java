@@ -0,0 +1,77 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.RecognitionEvent;
+import java.nio.ByteBuffer;
+
+/**
+ * 不依赖 Speech SDK、不访问网络的识别器替身，接口形状与 AzureSpeechRecognizer.BufferRecognizer 一致。
+ *
+ * recognizeBuffer 把数据复制到 direct buffer（SDK 的 PushAudioInputStream.write 同样会复制到 native 内存），
+ * 并按音频时长模拟服务端事件：每 100ms 一个 Recognizing，每 3 秒一个 Recognized。
+ */
+final class StubRecognizer {
+    private static final int BYTES_PER_MS = 32;
+    private static final int RECOGNIZING_BYTES = 100 * BYTES_PER_MS;
+    private static final int RECOGNIZED_BYTES = 3000 * BYTES_PER_MS;
+    private static final String SESSION_ID = "stub-session";
+
+    /** 与 AzureSpeechRecognizer.ResultCallback 相同的签名。 */
+    interface ResultCallback {
+        void onResult(String type, String text);
+
+        default void onEvent(RecognitionEvent event) {
+            onResult(event.type.legacyName, event.text);
+        }
+    }
+
+    private final ByteBuffer nativeBuffer;
+    private final ResultCallback callback;
+    private final String[] partials;
+    private long pushedBytes = 0;
+    private long nextRecognizing = RECOGNIZING_BYTES;
+    private long nextRecognized = RECOGNIZED_BYTES;
+    private int partialIndex = 0;
+    private long utteranceStartMs = 0;
+
+    StubRecognizer(int chunkSize, ResultCallback callback) {
+        this.nativeBuffer = ByteBuffer.allocateDirect(chunkSize);
+        this.callback = callback;
+        this.partials = partialTexts(RECOGNIZED_BYTES / RECOGNIZING_BYTES);
+    }
+
+    void recognizeBuffer(byte[] buffer, int length) {
+        nativeBuffer.clear();
+        nativeBuffer.put(buffer, 0, length);
+        pushedBytes += length;
+        while (pushedBytes >= nextRecognizing) {
+            nextRecognizing += RECOGNIZING_BYTES;
+            long endMs = nextRecognizing / BYTES_PER_MS;
+            if (nextRecognizing > nextRecognized) {
+                nextRecognized += RECOGNIZED_BYTES;
+                callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.RECOGNIZED, partials[partials.length - 1],
+                        utteranceStartMs, endMs - utteranceStartMs, SESSION_ID));
+                utteranceStartMs = endMs;
+                partialIndex = 0;
+            } else {
+                callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.RECOGNIZING, partials[partialIndex++ % partials.length],
+                        utteranceStartMs, endMs - utteranceStartMs, SESSION_ID));
+            }
+        }
+    }
+
+    long getPushedBytes() {
+        return pushedBytes;
+    }
+
+    // 逐步变长的中间结果，和服务端 recognizing 文本的增长方式一致
+    static String[] partialTexts(int count) {
+        String[] words = {"今天", "我们", "来", "讨论", "一下", "语音", "识别", "的", "性能", "问题"};
+        String[] texts = new String[count];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(words[i % words.length]);
+            texts[i] = sb.toString();
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,25 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 附加计数器：按处理的 PCM 字节数累加，JMH 报告为 pcmMB 每秒（MB/s）。
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Throughput {
+    public double pcmMB;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        pcmMB = 0;
+    }
+
+    void add(int bytes) {
+        pcmMB += bytes / BenchmarkFixtures.BYTES_PER_MB;
+    }
+}
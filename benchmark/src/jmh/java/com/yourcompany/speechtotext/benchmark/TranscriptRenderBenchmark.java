@@ -0,0 +1,87 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.TranscriptModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 长文本渲染：已有 utterances 条终稿时，处理一个识别事件（9 个 Recognizing 后跟 1 个 Recognized）并渲染。
+ * fullRebuild 与原 MainActivity.renderRecognitionText 相同，每次用 StringBuilder 重建全文；
+ * incrementalModel 用 TranscriptModel 只把变化写入目标文本（StringBuilder 代替 TextView 的 Editable）。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TranscriptRenderBenchmark {
+
+    @Param({"10000"})
+    public int utterances;
+
+    private final String[] partials = StubRecognizer.partialTexts(10);
+
+    private List<String> recognizedList;
+    private String recognizingDraft;
+
+    private TranscriptModel transcript;
+    private StringBuilder rendered;
+    private TranscriptModel.TextSink sink;
+
+    private int step;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        recognizedList = new ArrayList<>();
+        recognizingDraft = "";
+        transcript = new TranscriptModel();
+        rendered = new StringBuilder();
+        sink = (start, end, text) -> rendered.replace(start, end, text.toString());
+        for (int i = 0; i < utterances; i++) {
+            String line = partials[partials.length - 1] + i;
+            recognizedList.add(line);
+            transcript.commit(line);
+        }
+        transcript.render(sink);
+        step = 0;
+    }
+
+    @Benchmark
+    public String fullRebuild() {
+        int i = step++ % partials.length;
+        if (i == partials.length - 1) {
+            recognizedList.add(partials[i]);
+            recognizingDraft = "";
+        } else {
+            recognizingDraft = partials[i];
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String line : recognizedList) {
+            sb.append(line).append("\n");
+        }
+        if (!recognizingDraft.isEmpty()) {
+            sb.append(recognizingDraft);
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public int incrementalModel() {
+        int i = step++ % partials.length;
+        if (i == partials.length - 1) {
+            transcript.commit(partials[i]);
+        } else {
+            transcript.setDraft(partials[i]);
+        }
+        transcript.render(sink);
+        return rendered.length();
+    }
+}
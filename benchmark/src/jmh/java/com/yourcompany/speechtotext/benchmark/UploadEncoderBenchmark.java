@@ -0,0 +1,61 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.UploadEncoder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 上传格式转换的 CPU 开销：一次操作 = 按 4KB chunk 转换 1 秒 16kHz PCM，得分即每秒音频的转换耗时（µs）。
+ * 每秒音频的上传字节数为 format.bytesPerSecond()：PCM_16K 32000、PCM_8K / MULAW_16K 16000、MULAW_8K 8000。
+ * PCM_16K 不经过 UploadEncoder（BufferRecognizer 直接推原始数据），这里作为拷贝开销的基线。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UploadEncoderBenchmark {
+    private static final int SECOND_BYTES = 32_000;
+
+    @Param({"PCM_16K", "PCM_8K", "MULAW_16K", "MULAW_8K"})
+    public String format;
+
+    private final byte[] audio = new byte[SECOND_BYTES];
+    private final byte[] out = new byte[BenchmarkFixtures.CHUNK_SIZE];
+    private UploadEncoder encoder;
+
+    @Setup
+    public void setUp() {
+        // 语音频段的正弦叠加噪声，μ-law 各段都会用到
+        Random random = new Random(42);
+        for (int i = 0; i < SECOND_BYTES / 2; i++) {
+            double t = i / 16000.0;
+            double v = 8000 * Math.sin(2 * Math.PI * 440 * t) + 3000 * Math.sin(2 * Math.PI * 2300 * t) + 1500 * random.nextGaussian();
+            short s = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(v)));
+            audio[2 * i] = (byte) s;
+            audio[2 * i + 1] = (byte) (s >> 8);
+        }
+        encoder = new UploadEncoder(UploadEncoder.Format.valueOf(format));
+    }
+
+    @Benchmark
+    public int encodeOneSecond() {
+        int uploaded = 0;
+        for (int off = 0; off < SECOND_BYTES; off += BenchmarkFixtures.CHUNK_SIZE) {
+            int len = Math.min(BenchmarkFixtures.CHUNK_SIZE, SECOND_BYTES - off);
+            if (encoder.getFormat() == UploadEncoder.Format.PCM_16K) {
+                System.arraycopy(audio, off, out, 0, len);
+                uploaded += len;
+            } else {
+                uploaded += encoder.encode(audio, off, len, out);
+            }
+        }
+        return uploaded;
+    }
+}
@@ -0,0 +1,56 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.WavFileSource;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * WAV 头解析：旧实现固定读 44 字节 vs WavFileSource 按 RIFF 块解析并校验格式。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WavHeaderBenchmark {
+
+    @Param({"false", "true"})
+    public boolean listChunk;
+
+    private File wav;
+
+    @Setup
+    public void setUp() throws IOException {
+        wav = BenchmarkFixtures.createWav(1024 * 1024, listChunk);
+    }
+
+    @TearDown
+    public void tearDown() {
+        wav.delete();
+    }
+
+    @Benchmark
+    public byte[] legacyFixedHeader() throws IOException {
+        try (FileInputStream fis = new FileInputStream(wav)) {
+            byte[] header = new byte[44];
+            if (fis.read(header) != 44) throw new IOException("WAV header too short");
+            return header;
+        }
+    }
+
+    @Benchmark
+    public long wavFileSource() throws IOException {
+        try (WavFileSource source = new WavFileSource(wav.getPath())) {
+            return source.dataLength();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package android.util;
+
+/**
+ * JVM 下运行基准测试用的 android.util.Log 替身，所有日志直接丢弃。
+ */
+public final class Log {
+    private Log() {}
+
+    public static int d(String tag, String msg) { return 0; }
+
+    public static int i(String tag, String msg) { return 0; }
+
+    public static int w(String tag, String msg) { return 0; }
+
+    public static int e(String tag, String msg) { return 0; }
+}
@@ -0,0 +1,177 @@
+package com.yourcompany.speechtotext.benchmark;
+
+import com.yourcompany.speechtotext.NetworkPcmListener;
+import com.yourcompany.speechtotext.RecognitionHandle;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NetworkPcmListener 的本机负载测试：一个合成发送线程按实时节奏为每路流发送 20ms 的 UDP PCM 包
+ * （可按比例乱序、丢包），每路流由一个模拟识别端的线程按 chunk 读取。
+ * 结束时输出每路流的接收延迟（包到达到被读走）、丢包 / 乱序统计，以及接收线程的 CPU 占用换算出的单核可承载流数。
+ * 只衡量接收线程；每路流接真实识别 session 的端到端负载见 soak 模块的 NetworkSessionLoad。
+ *
+ * 运行：./gradlew :benchmark:ingestLoad -Pstreams=200 -PdurationSec=30 -Preorder=0.02 -Ploss=0.01
+ */
+public class NetworkIngestLoad {
+    private static final int PACKET_MS = 20;
+    private static final int PACKET_BYTES = PACKET_MS * 32;
+
+    public static void main(String[] args) throws Exception {
+        int streams = Integer.parseInt(arg(args, 0, "100"));
+        int durationSec = Integer.parseInt(arg(args, 1, "20"));
+        double reorder = Double.parseDouble(arg(args, 2, "0"));
+        double loss = Double.parseDouble(arg(args, 3, "0"));
+        int chunkMs = Integer.parseInt(arg(args, 4, "128"));
+
+        List<NetworkPcmListener.Stream> opened = new ArrayList<>();
+        NetworkPcmListener listener = new NetworkPcmListener(0, stream -> {
+            synchronized (opened) {
+                opened.add(stream);
+            }
+            return new Consumer(stream, chunkMs * 32);
+        });
+        listener.start();
+        Thread receiver = findThread("NetworkPcmListener");
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+
+        InetSocketAddress target = new InetSocketAddress("127.0.0.1", listener.getLocalPort());
+        DatagramChannel[] senders = new DatagramChannel[streams];
+        for (int i = 0; i < streams; i++) {
+            senders[i] = DatagramChannel.open();
+            senders[i].connect(target);
+        }
+        Random random = new Random(1);
+        ByteBuffer packet = ByteBuffer.allocate(NetworkPcmListener.HEADER_BYTES + PACKET_BYTES);
+        byte[] pcm = new byte[PACKET_BYTES];
+        int[] seq = new int[streams];
+        // 每路流最多暂存一个包，与下一个包交换顺序发出
+        ByteBuffer[] held = new ByteBuffer[streams];
+
+        long receiverCpuStart = mx.getThreadCpuTime(receiver.getId());
+        long start = System.nanoTime();
+        long packets = (long) durationSec * 1000 / PACKET_MS;
+        for (long p = 0; p < packets; p++) {
+            long due = start + p * PACKET_MS * 1_000_000L;
+            long wait = due - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            for (int i = 0; i < streams; i++) {
+                random.nextBytes(pcm);
+                packet.clear();
+                packet.putInt(seq[i]++).put(pcm).flip();
+                if (random.nextDouble() < loss) continue;
+                if (held[i] == null && random.nextDouble() < reorder) {
+                    held[i] = ByteBuffer.allocate(packet.remaining()).put(packet);
+                    held[i].flip();
+                    continue;
+                }
+                senders[i].write(packet);
+                if (held[i] != null) {
+                    senders[i].write(held[i]);
+                    held[i] = null;
+                }
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long receiverCpu = mx.getThreadCpuTime(receiver.getId()) - receiverCpuStart;
+        // 只有序号的包：流结束
+        for (int i = 0; i < streams; i++) {
+            packet.clear();
+            packet.putInt(seq[i]).flip();
+            senders[i].write(packet);
+            senders[i].close();
+        }
+        listener.drain();
+        if (!listener.awaitTermination(30, TimeUnit.SECONDS)) {
+            System.out.println("listener did not terminate");
+        }
+
+        double meanSum = 0;
+        double worst = 0;
+        long lost = 0;
+        long reordered = 0;
+        long dropped = 0;
+        synchronized (opened) {
+            for (NetworkPcmListener.Stream s : opened) {
+                meanSum += s.getMeanLatencyMs();
+                worst = Math.max(worst, s.getMaxLatencyMs());
+                lost += s.getJitterBuffer().lostPackets();
+                reordered += s.getJitterBuffer().reorderedPackets();
+                dropped += s.getDroppedBytes();
+            }
+        }
+        int n = Math.max(1, opened.size());
+        double cpuPerStream = (double) receiverCpu / elapsedNanos / streams;
+        System.out.println(String.format(Locale.US,
+                "streams=%d (opened %d, rejected %d) duration=%ds chunk=%dms",
+                streams, opened.size(), listener.getRejectedStreams(), durationSec, chunkMs));
+        System.out.println(String.format(Locale.US,
+                "latency per stream: mean of means=%.1fms worst max=%.1fms", meanSum / n, worst));
+        System.out.println(String.format(Locale.US,
+                "packets: reordered=%d lost(concealed)=%d droppedBytes=%d", reordered, lost, dropped));
+        System.out.println(String.format(Locale.US,
+                "receiver thread CPU=%.2f%% of one core, %.4f%% per stream, ~%.0f streams per core",
+                100.0 * receiverCpu / elapsedNanos, 100.0 * cpuPerStream, cpuPerStream > 0 ? 1.0 / cpuPerStream : 0));
+    }
+
+    // 模拟识别端：按 chunk 读完整路流
+    private static final class Consumer implements RecognitionHandle {
+        private final Thread thread;
+        private final NetworkPcmListener.Stream stream;
+
+        Consumer(NetworkPcmListener.Stream stream, int chunkBytes) {
+            this.stream = stream;
+            thread = new Thread(() -> {
+                byte[] chunk = new byte[chunkBytes];
+                try {
+                    while (stream.read(chunk, 0, chunk.length) > 0) {
+                        // 丢弃
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }, "Consumer-" + stream.getName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void stop() {
+            stream.close();
+        }
+
+        @Override
+        public void drain() {
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            thread.join(unit.toMillis(timeout));
+            return !thread.isAlive();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return !thread.isAlive();
+        }
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.getName().equals(name)) return t;
+        }
+        throw new IllegalStateException("Thread not found: " + name);
+    }
+
+    private static String arg(String[] args, int i, String def) {
+        return args.length > i ? args[i] : def;
+    }
+}
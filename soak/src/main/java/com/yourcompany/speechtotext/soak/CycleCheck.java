@@ -0,0 +1,145 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.yourcompany.speechtotext.AzureSpeechRecognizer;
+import com.yourcompany.speechtotext.AzureTokenManager;
+import com.yourcompany.speechtotext.BufferRecognitionManager;
+import com.yourcompany.speechtotext.PushPacer;
+import com.yourcompany.speechtotext.RecognitionEventDispatcher;
+import com.yourcompany.speechtotext.RecognitionExecutors;
+import com.yourcompany.speechtotext.RecognitionHandle;
+import com.yourcompany.speechtotext.StartupOrchestrator;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 反复启停检查：与 MainActivity 一样所有识别共用一个 AzureTokenManager，每轮新建 StartupOrchestrator、
+ * RecognitionEventDispatcher（经 dispatchTo 接入回调）和 BufferRecognitionManager，识别一段时间后结束，
+ * 等识别结束后关闭分发器。结束方式轮流为：start 后立即 stop、识别中 stop、识别中 drain、只 prepare() 不 start 就 stop。
+ *
+ * 通过条件：每轮都在 awaitTermination 超时前结束；全部轮次结束后没有未关闭的 session（FaultyRecognizer.LIVE == 0）、
+ * 没有未归还的线程名额，TokenRefreshThread 只有一个、ResultDispatchThread 和 StartupThread 一个都不剩，
+ * 线程池的线程数不超过名额上限，线程池之外的线程数不超过预热（前四分之一轮次）结束时的数量。
+ *
+ * 运行：./gradlew :soak:cycleCheck -Pcycles=200 -PrunMs=300 -PresultIntervalMs=100
+ */
+public class CycleCheck {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        int cycles = Integer.parseInt(opts.getOrDefault("cycles", "200"));
+        long runMs = Long.parseLong(opts.getOrDefault("runMs", "300"));
+        long resultIntervalMs = Long.parseLong(opts.getOrDefault("resultIntervalMs", String.valueOf(RecognitionEventDispatcher.DEFAULT_INTERVAL_MS)));
+        FaultPlan plan = new FaultPlan();
+        // 保留取消 / 401 / 启动变慢，启停正好落在重启途中的情况也要覆盖
+        plan.cancelsPerHour = Double.parseDouble(opts.getOrDefault("cancelsPerHour", "600"));
+        plan.unauthorizedPerHour = Double.parseDouble(opts.getOrDefault("unauthorizedPerHour", "120"));
+        plan.stallsPerHour = 0;
+        plan.slowStartRate = Double.parseDouble(opts.getOrDefault("slowStartRate", "0.2"));
+        plan.slowStartMs = 200;
+        plan.resultLatencyMs = 50;
+        System.out.println(String.format(Locale.US, "cycleCheck: cycles=%d runMs=%d resultIntervalMs=%d %s",
+                cycles, runMs, resultIntervalMs, plan));
+
+        TokenServiceStandIn tokens = new TokenServiceStandIn(plan);
+        tokens.start();
+        AzureTokenManager tokenManager = new AzureTokenManager(null, "local", tokens.endpoint());
+        AzureSpeechRecognizer.RecognizerFactory factory = FaultyRecognizer.factory(plan, tokens);
+        Random random = new Random(7);
+        int hung = 0;
+        int baselineThreads = -1;
+        int warmup = Math.max(4, cycles / 4);
+        int maxPoolThreads = 0;
+        int[] endings = new int[4];
+        long wallStart = System.nanoTime();
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            // 与 MainActivity.startRecognition 相同的每次启动的接线
+            StartupOrchestrator startup = new StartupOrchestrator();
+            RecognitionEventDispatcher dispatcher = new RecognitionEventDispatcher(events -> {
+            }, resultIntervalMs);
+            AzureSpeechRecognizer.ResultCallback callback = startup.timeResults(AzureSpeechRecognizer.dispatchTo(dispatcher), report -> {
+            });
+            BufferRecognitionManager manager = new BufferRecognitionManager(new SyntheticAudioSource(3_600_000), tokenManager, "local",
+                    callback, new PushPacer(PushPacer.Mode.MULTIPLE, 20));
+            manager.setRecognizerFactory(factory);
+            int ending = cycle % 4;
+            endings[ending]++;
+            RecognitionHandle handle;
+            if (ending == 3) {
+                startup.run("warmup", () -> manager.prepare().get());
+                Thread.sleep(random.nextInt((int) runMs + 1));
+                handle = manager;
+                handle.stop();
+            } else {
+                handle = manager.start();
+                if (ending != 0) Thread.sleep(runMs / 2 + random.nextInt((int) runMs + 1));
+                if (ending == 2) handle.drain(); else handle.stop();
+            }
+            startup.shutdown();
+            if (!handle.awaitTermination(15, TimeUnit.SECONDS)) {
+                hung++;
+                System.out.println("cycle " + cycle + " (ending " + ending + ") did not terminate");
+            }
+            dispatcher.close();
+            maxPoolThreads = Math.max(maxPoolThreads, RecognitionExecutors.workerThreads());
+            // 调度线程、替身服务等固定大小的线程池都是按需建线程的，预热之后应已建满，作为基线；
+            // 识别线程池的线程按需建到名额上限，单独检查
+            if (cycle == warmup - 1) {
+                settle();
+                baselineThreads = Thread.activeCount() - RecognitionExecutors.workerThreads();
+            }
+        }
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+        settle();
+        int threadsEnd = Thread.activeCount() - RecognitionExecutors.workerThreads();
+        int refreshThreads = countThreads("TokenRefreshThread");
+        int dispatchThreads = countThreads("ResultDispatchThread");
+        int startupThreads = countThreads("StartupThread-");
+        int live = FaultyRecognizer.LIVE.get();
+        int reserved = RecognitionExecutors.reservedWorkers();
+        tokenManager.shutdown();
+        tokens.stop();
+
+        System.out.println(String.format(Locale.US,
+                "cycles=%d (stopAtStart=%d stopRunning=%d drain=%d stopPrepared=%d) hung=%d wall=%.1fs",
+                cycles, endings[0], endings[1], endings[2], endings[3], hung, wallMs / 1000.0));
+        System.out.println(String.format(Locale.US,
+                "after: liveSessions=%d reservedWorkers=%d poolThreads(max)=%d/%d tokenRefreshThreads=%d dispatchThreads=%d startupThreads=%d otherThreads=%d (after warm-up %d)",
+                live, reserved, maxPoolThreads, RecognitionExecutors.maxWorkers(), refreshThreads, dispatchThreads, startupThreads,
+                threadsEnd, baselineThreads));
+        System.out.println(String.format(Locale.US,
+                "faults: cancels=%d unauthorized=%d slowStarts=%d",
+                FaultyRecognizer.CANCELS.get(), FaultyRecognizer.UNAUTHORIZED.get(), FaultyRecognizer.SLOW_STARTS.get()));
+        boolean ok = hung == 0 && live == 0 && reserved == 0 && refreshThreads == 1 && dispatchThreads == 0 && startupThreads == 0
+                && maxPoolThreads <= RecognitionExecutors.maxWorkers() && threadsEnd <= baselineThreads;
+        System.out.println(ok ? "PASS" : "FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // 等已取消 session 的回调和备用 session 的后台关闭完成
+    private static void settle() throws InterruptedException {
+        Thread.sleep(500);
+    }
+
+    // 名字以 "-" 结尾时按前缀匹配（线程池的线程带序号）
+    private static int countThreads(String name) {
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            boolean match = name.endsWith("-") ? t.getName().startsWith(name) : t.getName().equals(name);
+            if (match && t.isAlive()) n++;
+        }
+        return n;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return opts;
+    }
+}
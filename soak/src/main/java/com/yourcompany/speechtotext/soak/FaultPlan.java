@@ -0,0 +1,33 @@
+package com.yourcompany.speechtotext.soak;
+
+/**
+ * soak 的故障注入参数。频率按每小时推送的音频（含重放）计，与推送速度无关；持续时间和延迟是实际时间，不随倍速缩短。
+ */
+final class FaultPlan {
+    // 识别服务取消 session（断网、服务端 1011 等）
+    double cancelsPerHour = 30;
+    // 识别服务以 401 取消 session，同时作废当前 token
+    double unauthorizedPerHour = 6;
+    // 推送阻塞（网络卡顿）
+    double stallsPerHour = 30;
+    long stallMs = 2000;
+    // 新建 session 时启动变慢的比例
+    double slowStartRate = 0.1;
+    long slowStartMs = 1500;
+    // 识别结果相对推送的回调延迟
+    long resultLatencyMs = 300;
+    // token 服务返回 503 的比例与响应延迟上限
+    double tokenFailureRate = 0.05;
+    long tokenLatencyMs = 50;
+    // token 在“服务端”的有效期，超过后使用它的新 session 被 401 拒绝
+    long tokenTtlMs = 10 * 60 * 1000;
+
+    @Override
+    public String toString() {
+        return "cancelsPerHour=" + cancelsPerHour + " unauthorizedPerHour=" + unauthorizedPerHour
+                + " stallsPerHour=" + stallsPerHour + " stallMs=" + stallMs
+                + " slowStartRate=" + slowStartRate + " slowStartMs=" + slowStartMs
+                + " resultLatencyMs=" + resultLatencyMs + " tokenFailureRate=" + tokenFailureRate
+                + " tokenTtlMs=" + tokenTtlMs;
+    }
+}
@@ -0,0 +1,222 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.yourcompany.speechtotext.AzureSpeechRecognizer;
+import com.yourcompany.speechtotext.AzureTokenManager;
+import com.yourcompany.speechtotext.RecognitionEvent;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 替代 BufferRecognizer 的识别 session 替身，不依赖 Speech SDK、不访问网络，按 FaultPlan 注入故障。
+ *
+ * 行为与 BufferRecognizer 的约定一致：创建时取 token 并“启动连续识别”；结果在单独的服务线程上延迟 resultLatencyMs 回调；
+ * 被取消后下一次推送抛异常（401 取消抛 TokenExpiredException）；closePushStream 后出完剩余结果再发 sessionStopped。
+ *
+ * 识别内容：SyntheticAudioSource 的每个样本值是它所在 100ms 块的块号，每 UTTERANCE_MS 的 session 音频输出一条
+ * Recognized，文本为首尾样本的块号（"b12-b31"），offset / duration 相对本 session 推送的第一个字节，与 SDK 相同。
+ */
+final class FaultyRecognizer implements AzureSpeechRecognizer.StreamRecognizer {
+    static final int UTTERANCE_MS = 2000;
+    private static final int PARTIAL_MS = 500;
+    private static final int BYTES_PER_MS = 32;
+
+    // 替身服务端的事件线程，所有 session 共用，保证同一 session 的事件按顺序到达
+    private static final ScheduledThreadPoolExecutor SERVICE = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "FakeSpeechService");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicInteger SESSION_IDS = new AtomicInteger();
+    // 未 close 的 session 数，soak 结束时应回到 0
+    static final AtomicInteger LIVE = new AtomicInteger();
+    static final AtomicInteger CANCELS = new AtomicInteger();
+    static final AtomicInteger UNAUTHORIZED = new AtomicInteger();
+    static final AtomicInteger STALLS = new AtomicInteger();
+    static final AtomicInteger SLOW_STARTS = new AtomicInteger();
+
+    static AzureSpeechRecognizer.RecognizerFactory factory(FaultPlan plan, TokenServiceStandIn tokens) {
+        return (tokenManager, region, language, callback) -> new FaultyRecognizer(plan, tokens, tokenManager, language, callback);
+    }
+
+    private final FaultPlan plan;
+    private final TokenServiceStandIn tokens;
+    private final AzureSpeechRecognizer.ResultCallback callback;
+    private final String language;
+    private final String sessionId = "fake-" + SESSION_IDS.incrementAndGet();
+    private volatile String token;
+
+    private volatile boolean initFailed = false;
+    private volatile boolean sessionShouldRestart = false;
+    private volatile boolean tokenRejected = false;
+    // 已取消或已停止，之后不再回调
+    private volatile boolean stopped = false;
+    private volatile boolean pushClosed = false;
+    private volatile boolean closed = false;
+    private volatile long recognizedUpToMs = 0;
+
+    // 以下仅推送线程访问
+    private long pushedBytes = 0;
+    private long utteranceStart = 0;
+    private long nextPartial = PARTIAL_MS * BYTES_PER_MS;
+    private int firstBlock = -1;
+    private int lastBlock = -1;
+
+    private FaultyRecognizer(FaultPlan plan, TokenServiceStandIn tokens, AzureTokenManager tokenManager, String language,
+                             AzureSpeechRecognizer.ResultCallback callback) {
+        this.plan = plan;
+        this.tokens = tokens;
+        this.language = language;
+        this.callback = callback;
+        LIVE.incrementAndGet();
+        try {
+            token = tokenManager.getValidToken();
+            if (chance(plan.slowStartRate)) {
+                SLOW_STARTS.incrementAndGet();
+                sleep(plan.slowStartMs);
+            }
+        } catch (Exception e) {
+            initFailed = true;
+            callback.onResult("Error", "BufferRecognizer init failed: " + e.getMessage());
+            return;
+        }
+        if (!tokens.isValid(token)) {
+            // 服务端拒绝过期 / 吊销的 token：连接建立后异步取消
+            cancel(true, "WebSocket upgrade failed with HTTP status code: 401");
+        }
+    }
+
+    @Override
+    public boolean isAlive() {
+        return !initFailed && !sessionShouldRestart;
+    }
+
+    @Override
+    public long getRecognizedUpToMs() {
+        return recognizedUpToMs;
+    }
+
+    @Override
+    public String getToken() {
+        return token;
+    }
+
+    @Override
+    public void recognizeBuffer(byte[] buffer, int length) throws AzureSpeechRecognizer.TokenExpiredException {
+        if (initFailed) throw new RuntimeException("Recognizer not initialized");
+        if (sessionShouldRestart) {
+            sessionShouldRestart = false;
+            if (tokenRejected) throw new AzureSpeechRecognizer.TokenExpiredException("Session canceled with 401");
+            throw new RuntimeException("SessionRestartForStoppedOrCanceled");
+        }
+        if (pushClosed) throw new IllegalStateException("Push stream closed");
+        double audioHours = length / (double) BYTES_PER_MS / 3_600_000.0;
+        if (chance(plan.stallsPerHour * audioHours)) {
+            // 网络卡顿：write 阻塞
+            STALLS.incrementAndGet();
+            sleep(plan.stallMs);
+        }
+        consume(buffer, length);
+        if (chance(plan.cancelsPerHour * audioHours)) {
+            CANCELS.incrementAndGet();
+            cancel(false, "Connection was closed by the remote host. Error code: 1011 (injected)");
+        } else if (chance(plan.unauthorizedPerHour * audioHours)) {
+            UNAUTHORIZED.incrementAndGet();
+            tokens.revoke(token);
+            cancel(true, "Unauthorized. Please check your credentials. HTTP status code: 401 (injected)");
+        }
+    }
+
+    // 逐样本解析块号，到句子边界时输出 Recognized，期间按间隔输出 Recognizing
+    private void consume(byte[] buffer, int length) {
+        for (int i = 0; i + 1 < length; i += 2) {
+            int block = (buffer[i] & 0xff) | ((buffer[i + 1] & 0x7f) << 8);
+            if (firstBlock < 0) firstBlock = block;
+            lastBlock = block;
+            pushedBytes += 2;
+            if (pushedBytes - utteranceStart >= UTTERANCE_MS * BYTES_PER_MS) {
+                emitUtterance(RecognitionEvent.Type.RECOGNIZED);
+            } else if (pushedBytes - utteranceStart >= nextPartial) {
+                nextPartial += PARTIAL_MS * BYTES_PER_MS;
+                emitUtterance(RecognitionEvent.Type.RECOGNIZING);
+            }
+        }
+    }
+
+    private void emitUtterance(RecognitionEvent.Type type) {
+        long offsetMs = utteranceStart / BYTES_PER_MS;
+        long durationMs = (pushedBytes - utteranceStart) / BYTES_PER_MS;
+        RecognitionEvent event = new RecognitionEvent(type, "b" + firstBlock + "-b" + lastBlock, offsetMs, durationMs, sessionId, language);
+        if (type == RecognitionEvent.Type.RECOGNIZED) {
+            utteranceStart = pushedBytes;
+            nextPartial = PARTIAL_MS * BYTES_PER_MS;
+            firstBlock = -1;
+        }
+        deliver(() -> {
+            long end = event.offsetMs + event.durationMs;
+            if (end > recognizedUpToMs) recognizedUpToMs = end;
+            callback.onEvent(event);
+        });
+    }
+
+    // canceled 事件，随后是 sessionStopped
+    private void cancel(boolean unauthorized, String details) {
+        deliver(() -> {
+            stopped = true;
+            if (unauthorized) tokenRejected = true;
+            sessionShouldRestart = true;
+            if (unauthorized) {
+                callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.TOKEN_EXPIRED,
+                        "Token expired during buffer recognition", -1, -1, sessionId, language));
+            } else {
+                callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.ERROR,
+                        "Recognition canceled: " + details, -1, -1, sessionId, language));
+            }
+            callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.ALL_RECOGNIZED, "识别全部完成", -1, -1, sessionId, language));
+        });
+    }
+
+    @Override
+    public void closePushStream() {
+        if (pushClosed) return;
+        pushClosed = true;
+        if (pushedBytes > utteranceStart) emitUtterance(RecognitionEvent.Type.RECOGNIZED);
+        deliver(() -> {
+            stopped = true;
+            sessionShouldRestart = true;
+            callback.onEvent(new RecognitionEvent(RecognitionEvent.Type.ALL_RECOGNIZED, "识别全部完成", -1, -1, sessionId, language));
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        pushClosed = true;
+        LIVE.decrementAndGet();
+    }
+
+    // 在服务线程上延迟回调；session 已停止或已关闭时丢弃
+    private void deliver(Runnable event) {
+        SERVICE.schedule(() -> {
+            if (stopped || closed) return;
+            event.run();
+        }, plan.resultLatencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static boolean chance(double probability) {
+        return probability > 0 && ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    // 故障持续时间在 0.5 ~ 1.5 倍之间随机
+    private static void sleep(long ms) {
+        if (ms <= 0) return;
+        try {
+            Thread.sleep(ms / 2 + ThreadLocalRandom.current().nextLong(ms + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
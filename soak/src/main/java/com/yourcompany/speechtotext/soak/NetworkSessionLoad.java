@@ -0,0 +1,178 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.yourcompany.speechtotext.AzureSpeechRecognizer;
+import com.yourcompany.speechtotext.AzureTokenManager;
+import com.yourcompany.speechtotext.BufferRecognitionManager;
+import com.yourcompany.speechtotext.NetworkPcmListener;
+import com.yourcompany.speechtotext.PipelineMetrics;
+import com.yourcompany.speechtotext.PushPacer;
+import com.yourcompany.speechtotext.RecognitionEvent;
+import com.yourcompany.speechtotext.RecognitionExecutors;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 网络接收的端到端负载：与 MainActivity.startNetwork 相同，每路 UDP 流由一个真实的 BufferRecognitionManager 识别，
+ * 识别服务换成 FaultyRecognizer（默认不注入故障），token 来自本机替身。合成发送线程按实时节奏为每路流发送 20ms 的包，
+ * 样本值为所在 100ms 块的块号。
+ *
+ * 输出每路流的接收延迟（包到达到被 session 读走）、结果延迟（推送完成到 Recognized 到达，含替身的 resultLatencyMs），
+ * 以及除发送线程外整个进程的 CPU 占用换算的单核可承载流数。
+ * 被拒绝的流、结果覆盖的音频比发送的少一秒以上、结束后仍有未关闭的 session 或未归还的线程名额时退出码为 1。
+ *
+ * 运行：./gradlew :soak:networkLoad -Pstreams=50 -PdurationSec=30
+ */
+public class NetworkSessionLoad {
+    private static final int PACKET_MS = 20;
+    private static final int PACKET_BYTES = PACKET_MS * 32;
+    private static final int BLOCK_BYTES = SyntheticAudioSource.BLOCK_BYTES;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        int streams = Integer.parseInt(opts.getOrDefault("streams", "50"));
+        int durationSec = Integer.parseInt(opts.getOrDefault("durationSec", "30"));
+        FaultPlan plan = new FaultPlan();
+        plan.cancelsPerHour = Double.parseDouble(opts.getOrDefault("cancelsPerHour", "0"));
+        plan.unauthorizedPerHour = Double.parseDouble(opts.getOrDefault("unauthorizedPerHour", "0"));
+        plan.stallsPerHour = Double.parseDouble(opts.getOrDefault("stallsPerHour", "0"));
+        plan.slowStartRate = Double.parseDouble(opts.getOrDefault("slowStartRate", "0"));
+        plan.tokenFailureRate = Double.parseDouble(opts.getOrDefault("tokenFailureRate", "0"));
+        plan.resultLatencyMs = Long.parseLong(opts.getOrDefault("resultLatencyMs", String.valueOf(plan.resultLatencyMs)));
+        // 每个 session 一个读线程、一个推送线程
+        int maxWorkers = Integer.parseInt(opts.getOrDefault("maxWorkers", String.valueOf(2 * streams)));
+        System.out.println(String.format(Locale.US, "networkLoad: streams=%d duration=%ds maxWorkers=%d %s",
+                streams, durationSec, maxWorkers, plan));
+
+        PipelineMetrics.setEnabled(true);
+        RecognitionExecutors.setMaxWorkers(maxWorkers);
+        TokenServiceStandIn tokens = new TokenServiceStandIn(plan);
+        tokens.start();
+        AzureTokenManager tokenManager = new AzureTokenManager(null, "local", tokens.endpoint());
+        AzureSpeechRecognizer.RecognizerFactory factory = FaultyRecognizer.factory(plan, tokens);
+        Map<String, AtomicLong> coveredMs = new ConcurrentHashMap<>();
+        Map<String, NetworkPcmListener.Stream> opened = new ConcurrentHashMap<>();
+        NetworkPcmListener listener = new NetworkPcmListener(0, stream -> {
+            AtomicLong covered = new AtomicLong();
+            coveredMs.put(stream.getName(), covered);
+            opened.put(stream.getName(), stream);
+            BufferRecognitionManager manager = new BufferRecognitionManager(stream, tokenManager, "local",
+                    new AzureSpeechRecognizer.ResultCallback() {
+                        @Override
+                        public void onResult(String type, String text) {
+                        }
+
+                        @Override
+                        public void onEvent(RecognitionEvent event) {
+                            if (event.type == RecognitionEvent.Type.RECOGNIZED) covered.addAndGet(event.durationMs);
+                        }
+                    }, new PushPacer(PushPacer.Mode.AS_FAST_AS_ACCEPTED));
+            manager.setRecognizerFactory(factory);
+            manager.setMetricsName(stream.getName());
+            return manager.start();
+        });
+        listener.start();
+
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        InetSocketAddress target = new InetSocketAddress("127.0.0.1", listener.getLocalPort());
+        DatagramChannel[] senders = new DatagramChannel[streams];
+        for (int i = 0; i < streams; i++) {
+            senders[i] = DatagramChannel.open();
+            senders[i].connect(target);
+        }
+        ByteBuffer packet = ByteBuffer.allocate(NetworkPcmListener.HEADER_BYTES + PACKET_BYTES);
+
+        long senderCpuStart = mx.getCurrentThreadCpuTime();
+        long processCpuStart = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        long packets = (long) durationSec * 1000 / PACKET_MS;
+        for (long p = 0; p < packets; p++) {
+            long due = start + p * PACKET_MS * 1_000_000L;
+            long wait = due - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            for (int i = 0; i < streams; i++) {
+                packet.clear();
+                packet.putInt((int) p);
+                long position = p * PACKET_BYTES;
+                for (int b = 0; b < PACKET_BYTES; b += 2) {
+                    int block = (int) ((position + b) / BLOCK_BYTES) & 0x7fff;
+                    packet.put((byte) block).put((byte) (block >> 8));
+                }
+                packet.flip();
+                senders[i].write(packet);
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long processCpu = os.getProcessCpuTime() - processCpuStart - (mx.getCurrentThreadCpuTime() - senderCpuStart);
+        int peakWorkers = RecognitionExecutors.workerThreads();
+        // 只有序号的包：流结束
+        for (int i = 0; i < streams; i++) {
+            packet.clear();
+            packet.putInt((int) packets).flip();
+            senders[i].write(packet);
+            senders[i].close();
+        }
+        listener.drain();
+        boolean terminated = listener.awaitTermination(60, TimeUnit.SECONDS);
+        tokenManager.shutdown();
+        tokens.stop();
+
+        double meanSum = 0;
+        double worst = 0;
+        long dropped = 0;
+        int shortStreams = 0;
+        long sentMs = packets * PACKET_MS;
+        for (NetworkPcmListener.Stream s : opened.values()) {
+            meanSum += s.getMeanLatencyMs();
+            worst = Math.max(worst, s.getMaxLatencyMs());
+            dropped += s.getDroppedBytes();
+            long covered = coveredMs.get(s.getName()).get();
+            if (covered < sentMs - 1000) {
+                if (shortStreams < 5) System.out.println("stream " + s.getName() + ": results cover " + covered + "ms of " + sentMs + "ms");
+                shortStreams++;
+            }
+        }
+        int n = Math.max(1, opened.size());
+        double cores = (double) processCpu / elapsedNanos;
+        PipelineMetrics.Histogram resultLatency = PipelineMetrics.histogram("result.latency");
+        System.out.println(String.format(Locale.US,
+                "streams=%d (opened %d, rejected %d) duration=%ds terminated=%b",
+                streams, opened.size(), listener.getRejectedStreams(), durationSec, terminated));
+        System.out.println(String.format(Locale.US,
+                "ingest latency per stream: mean of means=%.1fms worst max=%.1fms droppedBytes=%d", meanSum / n, worst, dropped));
+        System.out.println(String.format(Locale.US,
+                "result latency: p50=%.0fms p99=%.0fms max=%.0fms (resultLatencyMs=%d) shortStreams=%d",
+                resultLatency.percentileMicros(50) / 1000, resultLatency.percentileMicros(99) / 1000,
+                resultLatency.maxMicros() / 1000, plan.resultLatencyMs, shortStreams));
+        System.out.println(String.format(Locale.US,
+                "process CPU excluding sender=%.2f cores, %.3f%% of a core per stream, ~%.0f streams per core",
+                cores, 100.0 * cores / streams, cores > 0 ? streams / cores : 0));
+        System.out.println(String.format(Locale.US,
+                "workers: peak threads=%d reserved after drain=%d liveSessions=%d",
+                peakWorkers, RecognitionExecutors.reservedWorkers(), FaultyRecognizer.LIVE.get()));
+        boolean ok = terminated && listener.getRejectedStreams() == 0 && opened.size() == streams && shortStreams == 0
+                && RecognitionExecutors.reservedWorkers() == 0 && FaultyRecognizer.LIVE.get() == 0;
+        System.out.println(ok ? "PASS" : "FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return opts;
+    }
+}
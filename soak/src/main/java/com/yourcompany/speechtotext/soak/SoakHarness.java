@@ -0,0 +1,219 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.yourcompany.speechtotext.AzureSpeechRecognizer;
+import com.yourcompany.speechtotext.AzureTokenManager;
+import com.yourcompany.speechtotext.BufferRecognitionManager;
+import com.yourcompany.speechtotext.PipelineMetrics;
+import com.yourcompany.speechtotext.PushPacer;
+import com.yourcompany.speechtotext.RecognitionEvent;
+import com.yourcompany.speechtotext.RecognitionHandle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BufferRecognitionManager 的加速 soak：合成音频按 speed 倍速推给 FaultyRecognizer，token 从本机 TokenServiceStandIn 获取，
+ * 期间按 FaultPlan 注入取消、401、启动变慢、推送阻塞和 token 服务故障。
+ *
+ * 结束时根据 Recognized 结果核对音频丢失 / 重复、输出重启恢复耗时分位数、token 请求统计和内存增长。
+ *
+ * 运行：./gradlew :soak:run -PaudioHours=4 -Pspeed=120 -PcancelsPerHour=60 -PunauthorizedPerHour=10
+ */
+public class SoakHarness {
+    private static final int BYTES_PER_MS = 32;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        double audioHours = Double.parseDouble(opts.getOrDefault("audioHours", "1"));
+        double speed = Double.parseDouble(opts.getOrDefault("speed", "120"));
+        long reportIntervalSec = Long.parseLong(opts.getOrDefault("reportIntervalSec", "30"));
+        FaultPlan plan = new FaultPlan();
+        plan.cancelsPerHour = Double.parseDouble(opts.getOrDefault("cancelsPerHour", String.valueOf(plan.cancelsPerHour)));
+        plan.unauthorizedPerHour = Double.parseDouble(opts.getOrDefault("unauthorizedPerHour", String.valueOf(plan.unauthorizedPerHour)));
+        plan.stallsPerHour = Double.parseDouble(opts.getOrDefault("stallsPerHour", String.valueOf(plan.stallsPerHour)));
+        plan.stallMs = Long.parseLong(opts.getOrDefault("stallMs", String.valueOf(plan.stallMs)));
+        plan.slowStartRate = Double.parseDouble(opts.getOrDefault("slowStartRate", String.valueOf(plan.slowStartRate)));
+        plan.slowStartMs = Long.parseLong(opts.getOrDefault("slowStartMs", String.valueOf(plan.slowStartMs)));
+        plan.resultLatencyMs = Long.parseLong(opts.getOrDefault("resultLatencyMs", String.valueOf(plan.resultLatencyMs)));
+        plan.tokenFailureRate = Double.parseDouble(opts.getOrDefault("tokenFailureRate", String.valueOf(plan.tokenFailureRate)));
+        plan.tokenTtlMs = Long.parseLong(opts.getOrDefault("tokenTtlMs", String.valueOf(plan.tokenTtlMs)));
+
+        long totalMs = (long) (audioHours * 3_600_000);
+        System.out.println(String.format(Locale.US, "soak: audio=%.2fh speed=%.0fx %s", audioHours, speed, plan));
+
+        PipelineMetrics.setEnabled(true);
+        TokenServiceStandIn tokens = new TokenServiceStandIn(plan);
+        tokens.start();
+        AzureTokenManager tokenManager = new AzureTokenManager(null, "local", tokens.endpoint());
+        SyntheticAudioSource source = new SyntheticAudioSource(totalMs);
+        Auditor auditor = new Auditor();
+        BufferRecognitionManager manager = new BufferRecognitionManager(source, tokenManager, "local", auditor,
+                new PushPacer(PushPacer.Mode.MULTIPLE, speed));
+        manager.setRecognizerFactory(FaultyRecognizer.factory(plan, tokens));
+
+        int threadsBefore = Thread.activeCount();
+        long heapStart = usedHeapAfterGc();
+        List<double[]> heapSamples = new ArrayList<>();
+        long wallStart = System.nanoTime();
+        RecognitionHandle handle = manager.start();
+        // 音频读完后 manager 推完剩余音频、等最后的结果到达后自行结束
+        long expectedWallMs = (long) (totalMs / speed);
+        while (!handle.awaitTermination(reportIntervalSec, TimeUnit.SECONDS)) {
+            double doneHours = source.position() / (double) BYTES_PER_MS / 3_600_000;
+            long heap = usedHeapAfterGc();
+            heapSamples.add(new double[]{doneHours, heap});
+            System.out.println(String.format(Locale.US,
+                    "progress: audio=%.2fh wall=%ds (expected %ds) results=%d restarts=%d heap=%dKB liveSessions=%d",
+                    doneHours, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - wallStart), expectedWallMs / 1000,
+                    auditor.count(), manager.getRestartCount(), heap / 1024, FaultyRecognizer.LIVE.get()));
+        }
+        long wallMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart);
+        tokenManager.shutdown();
+        tokens.stop();
+        // 给已取消 session 的线程一点时间退出
+        Thread.sleep(500);
+        long heapEnd = usedHeapAfterGc();
+
+        auditor.report(totalMs);
+        System.out.println(String.format(Locale.US,
+                "faults: cancels=%d unauthorized=%d stalls=%d slowStarts=%d tokenRequests=%d tokenFailures=%d tokensRevoked=%d",
+                FaultyRecognizer.CANCELS.get(), FaultyRecognizer.UNAUTHORIZED.get(), FaultyRecognizer.STALLS.get(),
+                FaultyRecognizer.SLOW_STARTS.get(), tokens.requests(), tokens.failures(), tokens.revoked()));
+        System.out.println(String.format(Locale.US,
+                "restarts: total=%d tokenExpired=%d stoppedOrCanceled=%d error=%d tokenForceRefresh=%d",
+                manager.getRestartCount(), counter("session.restart.tokenExpired"), counter("session.restart.stoppedOrCanceled"),
+                counter("session.restart.error"), counter("token.forceRefresh")));
+        System.out.println("restart recovery (" + percentiles(PipelineMetrics.histogram("session.restartGap")) + ")");
+        System.out.println("result gap, wall (" + percentiles(auditor.gaps) + ")");
+        System.out.println(String.format(Locale.US,
+                "memory: heapStart=%dKB heapEnd=%dKB slope=%.1fKB/audio-hour threads=%d->%d liveSessions=%d wall=%.1fs",
+                heapStart / 1024, heapEnd / 1024, slope(heapSamples) / 1024, threadsBefore, Thread.activeCount(),
+                FaultyRecognizer.LIVE.get(), wallMs / 1000.0));
+        System.exit(auditor.lostMs > 0 || auditor.mismatched > 0 ? 1 : 0);
+    }
+
+    /**
+     * 收集 Recognized 结果：offset / duration 已由 manager 换算为原始音频位置，
+     * 文本是 FaultyRecognizer 从样本中读出的首尾块号，两者对不上说明重放或 offset 换算出错。
+     */
+    private static final class Auditor implements AzureSpeechRecognizer.ResultCallback {
+        final PipelineMetrics.Histogram gaps = PipelineMetrics.histogram("soak.resultGap");
+        private final List<long[]> intervals = new ArrayList<>();
+        private final Map<String, Integer> texts = new HashMap<>();
+        private long lastResultNanos = 0;
+        long lostMs = 0;
+        long duplicatedMs = 0;
+        int duplicateTexts = 0;
+        int mismatched = 0;
+
+        @Override
+        public void onResult(String type, String text) {
+        }
+
+        @Override
+        public synchronized void onEvent(RecognitionEvent event) {
+            if (event.type != RecognitionEvent.Type.RECOGNIZED) return;
+            long now = System.nanoTime();
+            if (lastResultNanos != 0) gaps.recordNanos(now - lastResultNanos);
+            lastResultNanos = now;
+            intervals.add(new long[]{event.offsetMs, event.offsetMs + event.durationMs});
+            if (texts.merge(event.text + "@" + event.offsetMs, 1, Integer::sum) > 1) duplicateTexts++;
+            if (!matches(event)) {
+                if (mismatched < 10) System.out.println("mismatch: " + event);
+                mismatched++;
+            }
+        }
+
+        synchronized int count() {
+            return intervals.size();
+        }
+
+        // 文本中的首尾块号与 offset 推算的块号相差不超过一块（offset 取整到毫秒）
+        private static boolean matches(RecognitionEvent event) {
+            String[] parts = event.text.split("-");
+            if (parts.length != 2) return false;
+            int first = Integer.parseInt(parts[0].substring(1));
+            int last = Integer.parseInt(parts[1].substring(1));
+            long end = event.offsetMs + Math.max(1, event.durationMs) - 1;
+            return near(first, event.offsetMs / SyntheticAudioSource.BLOCK_MS)
+                    && near(last, end / SyntheticAudioSource.BLOCK_MS);
+        }
+
+        private int gapsPrinted = 0;
+
+        private void printGap(long fromMs, long toMs) {
+            if (gapsPrinted++ < 10) System.out.println("lost: " + fromMs + "ms - " + toMs + "ms");
+        }
+
+        private static boolean near(int block, long expected) {
+            int diff = Math.abs(block - (int) (expected & 0x7fff));
+            return Math.min(diff, 0x8000 - diff) <= 1;
+        }
+
+        synchronized void report(long totalMs) {
+            long[][] sorted = intervals.toArray(new long[0][]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+            long covered = 0;
+            for (long[] iv : sorted) {
+                if (iv[0] > covered) {
+                    printGap(covered, iv[0]);
+                    lostMs += iv[0] - covered;
+                } else {
+                    duplicatedMs += Math.min(covered, iv[1]) - iv[0];
+                }
+                covered = Math.max(covered, iv[1]);
+            }
+            if (covered < totalMs) {
+                printGap(covered, totalMs);
+                lostMs += totalMs - covered;
+            }
+            System.out.println(String.format(Locale.US,
+                    "audit: results=%d lostMs=%d duplicatedMs=%d duplicateResults=%d mismatched=%d",
+                    sorted.length, lostMs, duplicatedMs, duplicateTexts, mismatched));
+        }
+    }
+
+    private static long counter(String name) {
+        return PipelineMetrics.counter(name).get();
+    }
+
+    private static String percentiles(PipelineMetrics.Histogram h) {
+        return String.format(Locale.US, "n=%d p50=%.0fms p90=%.0fms p99=%.0fms max=%.0fms", h.count(),
+                h.percentileMicros(50) / 1000, h.percentileMicros(90) / 1000, h.percentileMicros(99) / 1000, h.maxMicros() / 1000);
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime rt = Runtime.getRuntime();
+        System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // 最小二乘斜率：每小时音频的堆增长字节数，样本太少时为 0
+    private static double slope(List<double[]> samples) {
+        int n = samples.size();
+        if (n < 3) return 0;
+        double sx = 0, sy = 0, sxx = 0, sxy = 0;
+        for (double[] s : samples) {
+            sx += s[0];
+            sy += s[1];
+            sxx += s[0] * s[0];
+            sxy += s[0] * s[1];
+        }
+        double denominator = n * sxx - sx * sx;
+        return denominator == 0 ? 0 : (n * sxy - sx * sy) / denominator;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return opts;
+    }
+}
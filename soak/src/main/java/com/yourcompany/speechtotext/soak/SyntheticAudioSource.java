@@ -0,0 +1,42 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.yourcompany.speechtotext.AudioSource;
+
+/**
+ * 可校验的合成 PCM 音频源：每个样本的值是它所在 100ms 块的块号（对 32768 取模），
+ * 识别替身据此还原出每条结果实际覆盖的原始音频，soak 结束后核对丢失与重复。不按实时节奏，读多快给多快。
+ */
+final class SyntheticAudioSource implements AudioSource {
+    static final int BLOCK_MS = 100;
+    static final int BLOCK_BYTES = BLOCK_MS * 32;
+
+    private final long totalBytes;
+    private long position = 0;
+    private volatile boolean closed = false;
+
+    SyntheticAudioSource(long totalMs) {
+        this.totalBytes = totalMs * 32;
+    }
+
+    @Override
+    public int read(byte[] dst, int off, int len) {
+        if (closed || position >= totalBytes) return -1;
+        int n = (int) Math.min(len & ~1, totalBytes - position);
+        for (int i = 0; i < n; i += 2) {
+            int block = (int) ((position + i) / BLOCK_BYTES) & 0x7fff;
+            dst[off + i] = (byte) block;
+            dst[off + i + 1] = (byte) (block >> 8);
+        }
+        position += n;
+        return n;
+    }
+
+    long position() {
+        return position;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
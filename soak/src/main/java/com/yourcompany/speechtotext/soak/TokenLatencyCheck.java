@@ -0,0 +1,154 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.yourcompany.speechtotext.AzureTokenManager;
+import com.yourcompany.speechtotext.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AzureTokenManager 稳态下不阻塞调用方的检查：token 服务替身每次响应前随机延迟最多 tokenLatencyMs，并按比例返回 503。
+ *
+ * 多个调用方线程持续调用 getValidToken（相当于不断新建 session），同时周期性地模拟一批 session 同时收到 401：
+ * 替身作废当前 token，这些 session 各自以被拒绝的 token 调用 forceRefreshToken。
+ * 使用期限缩短为 refreshIntervalSec，token 使用约 refreshIntervalSec - 60 秒后由后台主动刷新，
+ * 所以 burstIntervalMs 要大于 refreshIntervalSec - 45 秒，两批 401 之间才会发生主动刷新。
+ *
+ * 通过条件：首个 token 之后 getValidToken 的最大耗时低于 maxBlockMs（远小于替身的响应延迟），
+ * 每批 401 最多触发一次成功的 token 请求、刷新成功后不再返回被拒绝的 token，且期间至少发生过一次主动刷新。
+ *
+ * 运行：./gradlew :soak:tokenCheck -PdurationSec=180 -PtokenLatencyMs=500
+ */
+public class TokenLatencyCheck {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = parse(args);
+        long durationSec = Long.parseLong(opts.getOrDefault("durationSec", "150"));
+        int callers = Integer.parseInt(opts.getOrDefault("callers", "8"));
+        int burstSize = Integer.parseInt(opts.getOrDefault("burstSize", "6"));
+        long burstIntervalMs = Long.parseLong(opts.getOrDefault("burstIntervalMs", "40000"));
+        long refreshIntervalSec = Long.parseLong(opts.getOrDefault("refreshIntervalSec", "80"));
+        long maxBlockMs = Long.parseLong(opts.getOrDefault("maxBlockMs", "50"));
+        FaultPlan plan = new FaultPlan();
+        plan.tokenLatencyMs = Long.parseLong(opts.getOrDefault("tokenLatencyMs", "300"));
+        plan.tokenFailureRate = Double.parseDouble(opts.getOrDefault("tokenFailureRate", "0.1"));
+        System.out.println(String.format(Locale.US,
+                "tokenCheck: duration=%ds callers=%d burstSize=%d burstInterval=%dms refreshInterval=%ds tokenLatencyMs=%d tokenFailureRate=%.2f",
+                durationSec, callers, burstSize, burstIntervalMs, refreshIntervalSec, plan.tokenLatencyMs, plan.tokenFailureRate));
+
+        PipelineMetrics.setEnabled(true);
+        TokenServiceStandIn tokens = new TokenServiceStandIn(plan);
+        tokens.start();
+        AzureTokenManager tokenManager = new AzureTokenManager(null, "local", tokens.endpoint());
+        tokenManager.setRefreshInterval(TimeUnit.SECONDS.toMillis(refreshIntervalSec));
+        // 首个 token 必须等待网络，不计入
+        long firstStart = System.nanoTime();
+        tokenManager.getValidToken();
+        System.out.println("first token: " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - firstStart) + "ms");
+
+        PipelineMetrics.Histogram latency = PipelineMetrics.histogram("soak.getValidToken");
+        AtomicLong maxNanos = new AtomicLong();
+        AtomicInteger slowCalls = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSec);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            Thread t = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        tokenManager.getValidToken();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    long nanos = System.nanoTime() - start;
+                    latency.recordNanos(nanos);
+                    maxNanos.accumulateAndGet(nanos, Math::max);
+                    if (nanos > TimeUnit.MILLISECONDS.toNanos(maxBlockMs)) slowCalls.incrementAndGet();
+                    sleep(5);
+                }
+            }, "TokenCaller-" + i);
+            threads.add(t);
+            t.start();
+        }
+
+        int bursts = 0;
+        int overFetchedBursts = 0;
+        int burstFetches = 0;
+        int staleBursts = 0;
+        while (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(burstIntervalMs) < deadline) {
+            sleep(burstIntervalMs);
+            String rejected = tokenManager.getValidToken();
+            tokens.revoke(rejected);
+            int fetchedBefore = tokens.requests() - tokens.failures();
+            CountDownLatch done = new CountDownLatch(burstSize);
+            AtomicInteger refreshFailures = new AtomicInteger();
+            for (int i = 0; i < burstSize; i++) {
+                new Thread(() -> {
+                    try {
+                        tokenManager.forceRefreshToken(rejected);
+                    } catch (Exception e) {
+                        // 替身连续返回 503，session 照常重启，下一批再刷新
+                        refreshFailures.incrementAndGet();
+                    }
+                    done.countDown();
+                }, "Unauthorized-" + i).start();
+            }
+            done.await();
+            int fetched = tokens.requests() - tokens.failures() - fetchedBefore;
+            bursts++;
+            burstFetches += fetched;
+            if (refreshFailures.get() == 0 && rejected.equals(tokenManager.getValidToken())) {
+                staleBursts++;
+                System.out.println("burst " + bursts + ": still returning the rejected token");
+            }
+            if (fetched > 1) {
+                overFetchedBursts++;
+                System.out.println("burst " + bursts + ": " + fetched + " successful token requests");
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        tokenManager.shutdown();
+        tokens.stop();
+        // 除首个 token 和 401 触发的刷新之外都是后台主动刷新
+        int proactive = tokens.requests() - tokens.failures() - 1 - burstFetches;
+
+        System.out.println(String.format(Locale.US,
+                "getValidToken: n=%d p50=%.3fms p99=%.3fms max=%.3fms slow(>%dms)=%d errors=%d",
+                latency.count(), latency.percentileMicros(50) / 1000, latency.percentileMicros(99) / 1000,
+                maxNanos.get() / 1e6, maxBlockMs, slowCalls.get(), errors.get()));
+        System.out.println(String.format(Locale.US,
+                "token service: requests=%d failures=%d revoked=%d forceRefresh=%d bursts=%d overFetchedBursts=%d staleBursts=%d proactiveRefreshes=%d",
+                tokens.requests(), tokens.failures(), tokens.revoked(), PipelineMetrics.counter("token.forceRefresh").get(),
+                bursts, overFetchedBursts, staleBursts, proactive));
+        boolean ok = slowCalls.get() == 0 && errors.get() == 0 && overFetchedBursts == 0 && staleBursts == 0 && proactive > 0;
+        System.out.println(ok ? "PASS" : "FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) opts.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return opts;
+    }
+}
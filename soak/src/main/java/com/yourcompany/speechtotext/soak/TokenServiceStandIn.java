@@ -0,0 +1,104 @@
+package com.yourcompany.speechtotext.soak;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AzureTokenManager tokenEndpoint 的本机替身：GET /token 返回一个新 token（纯文本），与真实 endpoint 的返回格式相同。
+ *
+ * 按 FaultPlan 以一定比例返回 503、在响应前加延迟；记录签发的每个 token，
+ * 由 FaultyRecognizer 校验（过期或被吊销的 token 会被“服务端”以 401 拒绝）。
+ */
+final class TokenServiceStandIn {
+    private final FaultPlan plan;
+    private final HttpServer server;
+    // token -> 签发时间
+    private final Map<String, Long> issued = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger revoked = new AtomicInteger();
+
+    TokenServiceStandIn(FaultPlan plan) throws IOException {
+        this.plan = plan;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/token", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(2, r -> {
+            Thread t = new Thread(r, "TokenServiceStandIn");
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/token";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (plan.tokenLatencyMs > 0) {
+                Thread.sleep(random.nextLong(plan.tokenLatencyMs + 1));
+            }
+            if (random.nextDouble() < plan.tokenFailureRate) {
+                failures.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String token = "tok-" + sequence.incrementAndGet();
+            issued.put(token, System.currentTimeMillis());
+            byte[] body = token.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // 由本服务签发、未被吊销且未超过 tokenTtlMs
+    boolean isValid(String token) {
+        Long issuedAt = token != null ? issued.get(token) : null;
+        return issuedAt != null && System.currentTimeMillis() - issuedAt <= plan.tokenTtlMs;
+    }
+
+    // 模拟服务端提前作废 token（之后使用它的 session 会收到 401）
+    void revoke(String token) {
+        if (token != null && issued.remove(token) != null) revoked.incrementAndGet();
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int failures() {
+        return failures.get();
+    }
+
+    int revoked() {
+        return revoked.get();
+    }
+}